@@ -0,0 +1,19 @@
+package dev.mccue.log.alpha.allocations;
+
+import dev.mccue.log.alpha.Logger;
+import dev.mccue.log.alpha.LoggerFactory;
+
+/**
+ * Makes loggers which keep only the last log, so that logging does everything up to handing the
+ * log off, and the log can't be optimized away.
+ */
+public final class BlackholeLoggerFactory implements LoggerFactory {
+    static volatile Object sink;
+
+    static final Logger LOGGER = log -> sink = log;
+
+    @Override
+    public Logger createLogger() {
+        return LOGGER;
+    }
+}
@@ -0,0 +1,11 @@
+import dev.mccue.log.alpha.LoggerFactory;
+import dev.mccue.log.alpha.allocations.BlackholeLoggerFactory;
+
+module dev.mccue.log.alpha.allocations {
+    requires dev.mccue.log.alpha;
+    requires dev.mccue.log.alpha.slf4j;
+    requires org.slf4j;
+    requires jdk.management;
+
+    provides LoggerFactory with BlackholeLoggerFactory;
+}
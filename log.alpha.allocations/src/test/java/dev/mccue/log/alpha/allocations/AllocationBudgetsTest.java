@@ -0,0 +1,170 @@
+package dev.mccue.log.alpha.allocations;
+
+import dev.mccue.log.alpha.Flake;
+import dev.mccue.log.alpha.Log;
+import dev.mccue.log.alpha.Logger;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Measures the bytes allocated by each entry point of the logging API and checks them against a
+ * budget.
+ *
+ * <p>Each entry point is warmed up so that it is compiled, then run in several trials. The least
+ * bytes per call of any trial is compared to the entry point's budget. Taking the least keeps the
+ * occasional allocation by the JIT or a TLAB refill from failing the check.</p>
+ */
+public class AllocationBudgetsTest {
+    private static final int WARMUP_CALLS = 50_000;
+    private static final int TRIALS = 5;
+    private static final int CALLS_PER_TRIAL = 20_000;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /**
+     * @param name What is being measured.
+     * @param budget The most bytes one call may allocate.
+     * @param call One call of the entry point.
+     */
+    record Budget(String name, long budget, Runnable call) {}
+
+    @TestFactory
+    public List<DynamicTest> everyEntryPointIsWithinItsBudget() {
+        assertTrue(THREADS.isThreadAllocatedMemorySupported(), "thread allocated memory is not supported by this JVM");
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+
+        var tests = new ArrayList<DynamicTest>();
+        for (var budget : budgets()) {
+            tests.add(DynamicTest.dynamicTest(budget.name(), () -> {
+                long bytesPerCall = measure(budget.call());
+                assertTrue(
+                        bytesPerCall <= budget.budget(),
+                        budget.name() + " allocated " + bytesPerCall + " bytes per call, over its budget of " + budget.budget()
+                );
+            }));
+        }
+        return tests;
+    }
+
+    static long measure(Runnable call) {
+        for (int i = 0; i < WARMUP_CALLS; i++) {
+            call.run();
+        }
+        long least = Long.MAX_VALUE;
+        for (int trial = 0; trial < TRIALS; trial++) {
+            long before = THREADS.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < CALLS_PER_TRIAL; i++) {
+                call.run();
+            }
+            long after = THREADS.getCurrentThreadAllocatedBytes();
+            least = Math.min(least, (after - before) / CALLS_PER_TRIAL);
+        }
+        return least;
+    }
+
+    static void consume(Object o) {
+        BlackholeLoggerFactory.sink = o;
+    }
+
+    /**
+     * The budgets are the most each entry point allocated over several runs on JDK 17.0.9, the
+     * release these modules are compiled for, with compressed oops, plus an eighth (at least 16
+     * bytes) of slack. Other JDKs can allocate differently, so measure on 17 when changing them, and
+     * lower them when an entry point gets cheaper.
+     */
+    static List<Budget> budgets() {
+        var budgets = new ArrayList<Budget>();
+        Logger logger = BlackholeLoggerFactory.LOGGER;
+        Logger.Namespaced namespaced = logger.namespaced("dev.mccue.log.alpha.allocations");
+        var category = new Log.Category("dev.mccue.log.alpha.allocations", "event");
+        var e = Log.Entry.of("key", "value");
+        var level = Log.Level.INFO;
+
+        // Every Logger.log arity. The other levels share these through their defaults.
+        budgets.add(new Budget("Logger.log(level, category, List)", 168, () -> logger.log(level, category, List.of(e))));
+        budgets.add(new Budget("Logger.log(level, category, varargs)", 192, () -> logger.log(level, category, new Log.Entry[] { e })));
+        budgets.add(new Budget("Logger.log(level, category, e1)", 168, () -> logger.log(level, category, e)));
+        budgets.add(new Budget("Logger.log(level, category, e1..e2)", 168, () -> logger.log(level, category, e, e)));
+        budgets.add(new Budget("Logger.log(level, category, e1..e3)", 200, () -> logger.log(level, category, e, e, e)));
+        budgets.add(new Budget("Logger.log(level, category, e1..e4)", 200, () -> logger.log(level, category, e, e, e, e)));
+        budgets.add(new Budget("Logger.log(level, category, e1..e5)", 208, () -> logger.log(level, category, e, e, e, e, e)));
+        budgets.add(new Budget("Logger.log(level, category, e1..e6)", 208, () -> logger.log(level, category, e, e, e, e, e, e)));
+        budgets.add(new Budget("Logger.log(level, category, e1..e7)", 216, () -> logger.log(level, category, e, e, e, e, e, e, e)));
+        budgets.add(new Budget("Logger.log(level, category, e1..e8)", 216, () -> logger.log(level, category, e, e, e, e, e, e, e, e)));
+        budgets.add(new Budget("Logger.log(level, category, e1..e9)", 232, () -> logger.log(level, category, e, e, e, e, e, e, e, e, e)));
+        budgets.add(new Budget("Logger.log(level, category, e1..e10)", 232, () -> logger.log(level, category, e, e, e, e, e, e, e, e, e, e)));
+
+        // Each level once.
+        budgets.add(new Budget("Logger.trace(category, e1)", 168, () -> logger.trace(category, e)));
+        budgets.add(new Budget("Logger.debug(category, e1)", 168, () -> logger.debug(category, e)));
+        budgets.add(new Budget("Logger.info(category, e1)", 168, () -> logger.info(category, e)));
+        budgets.add(new Budget("Logger.warn(category, e1)", 168, () -> logger.warn(category, e)));
+        budgets.add(new Budget("Logger.error(category, e1)", 168, () -> logger.error(category, e)));
+
+        // Namespaced loggers also make a category.
+        budgets.add(new Budget("Logger.Namespaced.log(level, name, List)", 192, () -> namespaced.log(level, "event", List.of(e))));
+        budgets.add(new Budget("Logger.Namespaced.info(name, e1)", 192, () -> namespaced.info("event", e)));
+        budgets.add(new Budget("Logger.Namespaced.info(name, e1..e5)", 240, () -> namespaced.info("event", e, e, e, e, e)));
+        budgets.add(new Budget("Logger.Namespaced.info(name, e1..e10)", 256, () -> namespaced.info("event", e, e, e, e, e, e, e, e, e, e)));
+        budgets.add(new Budget("Logger.Namespaced.error(name, e1)", 192, () -> namespaced.error("event", e)));
+        budgets.add(new Budget("Logger.Namespaced.span(name, e1)", 344, () -> {
+            try (var __ = namespaced.span("span", e)) {
+                consume(__);
+            }
+        }));
+
+        // Context and ids.
+        var contextEntries = List.of(e);
+        Runnable inContext = () -> consume(contextEntries);
+        budgets.add(new Budget("Log.withContext(List, Runnable)", 64, () -> Log.withContext(contextEntries, inContext)));
+        budgets.add(new Budget("Flake.create()", 56, () -> consume(Flake.create())));
+
+        // Entries.
+        var uuid = UUID.randomUUID();
+        var uri = URI.create("https://example.com");
+        var instant = Instant.now();
+        var duration = Duration.ofMillis(5);
+        var throwable = new RuntimeException();
+        var list = List.<Log.Entry.Value>of(new Log.Entry.Value.Integer(1));
+        var map = Map.<Log.Entry.Value, Log.Entry.Value>of(
+                new Log.Entry.Value.String("key"), new Log.Entry.Value.Integer(1)
+        );
+        budgets.add(new Budget("Log.Entry.of(key, String)", 56, () -> consume(Log.Entry.of("key", "value"))));
+        budgets.add(new Budget("Log.Entry.of(key, boolean)", 56, () -> consume(Log.Entry.of("key", true))));
+        budgets.add(new Budget("Log.Entry.of(key, int)", 56, () -> consume(Log.Entry.of("key", 1))));
+        budgets.add(new Budget("Log.Entry.of(key, long)", 64, () -> consume(Log.Entry.of("key", 1L))));
+        budgets.add(new Budget("Log.Entry.of(key, double)", 64, () -> consume(Log.Entry.of("key", 1.0))));
+        budgets.add(new Budget("Log.Entry.of(key, UUID)", 56, () -> consume(Log.Entry.of("key", uuid))));
+        budgets.add(new Budget("Log.Entry.of(key, URI)", 56, () -> consume(Log.Entry.of("key", uri))));
+        budgets.add(new Budget("Log.Entry.of(key, Instant)", 56, () -> consume(Log.Entry.of("key", instant))));
+        budgets.add(new Budget("Log.Entry.of(key, Duration)", 56, () -> consume(Log.Entry.of("key", duration))));
+        budgets.add(new Budget("Log.Entry.of(key, Throwable)", 56, () -> consume(Log.Entry.of("key", throwable))));
+        budgets.add(new Budget("Log.Entry.of(key, List)", 328, () -> consume(Log.Entry.of("key", list))));
+        budgets.add(new Budget("Log.Entry.of(key, Map)", 752, () -> consume(Log.Entry.of("key", map))));
+        budgets.add(new Budget("Log.Entry.ofLazy(key, Supplier)", 64, () -> consume(Log.Entry.ofLazy("key", () -> Log.Entry.Value.Null.INSTANCE))));
+
+        // The SLF4J adapter, which logs through the blackhole factory.
+        var slf4j = org.slf4j.LoggerFactory.getLogger("dev.mccue.log.alpha.allocations");
+        Object argument = "argument";
+        budgets.add(new Budget("slf4j Logger.isInfoEnabled()", 0, () -> consume(slf4j.isInfoEnabled())));
+        budgets.add(new Budget("slf4j Logger.info(String)", 672, () -> slf4j.info("message")));
+        budgets.add(new Budget("slf4j Logger.info(String, Object)", 1072, () -> slf4j.info("message {}", argument)));
+        budgets.add(new Budget("slf4j Logger.info(String, Object, Object)", 1128, () -> slf4j.info("message {} {}", argument, argument)));
+        budgets.add(new Budget("slf4j Logger.info(String, Object...)", 816, () -> slf4j.info("message {} {} {}", argument, argument, argument)));
+        budgets.add(new Budget("slf4j Logger.info(String, Throwable)", 1072, () -> slf4j.info("message", throwable)));
+
+        return budgets;
+    }
+}
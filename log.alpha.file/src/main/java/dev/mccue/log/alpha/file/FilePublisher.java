@@ -0,0 +1,336 @@
+package dev.mccue.log.alpha.file;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import dev.mccue.log.alpha.Flake;
+import dev.mccue.log.alpha.Log;
+import dev.mccue.log.alpha.jackson.LogSerializer;
+import dev.mccue.log.alpha.publisher.LogBuffer;
+import dev.mccue.log.alpha.publisher.ParallelEncoder;
+import dev.mccue.log.alpha.publisher.Publisher;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.Deflater;
+
+/**
+ * A publisher which writes logs as newline delimited JSON into a directory of segment files.
+ *
+ * <p>Segments are rolled over once they reach {@link Options#maxSegmentBytes()}. When compression
+ * is on each segment is a {@link SegmentWriter} file of deflated blocks, with a preset dictionary
+ * built from the first batch of logs written to it. Otherwise segments are plain NDJSON.</p>
+ *
+ * <p>Logs are serialized in chunks by a {@link ParallelEncoder}. With
+ * {@link Options#parallelSerialization()} on, large batches, like those of a backfill, are
+ * serialized on all cores. Blocks are cut on chunk boundaries.</p>
+ *
+ * <p>Each block, or each chunk of a plain segment, is flushed as it is written. When a write fails
+ * the segment is cut back to what was last flushed and closed, and only the logs after that are
+ * kept in the buffer, so the retry on the next publish doesn't write any log twice.</p>
+ */
+public final class FilePublisher implements Publisher {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    static {
+        var module = new SimpleModule();
+        module.addSerializer(Log.class, new LogSerializer());
+        OBJECT_MAPPER.registerModule(module);
+    }
+
+    private static final int DICTIONARY_SAMPLE_SIZE = 1000;
+
+    private final Path directory;
+    private final Options options;
+    private final ByteArrayOutputStream block;
+    private final ParallelEncoder encoder;
+
+    private volatile long bytesPublished;
+
+    private SegmentWriter compressedSegment;
+    private OutputStream plainSegment;
+    private long plainSegmentSize;
+    private Path segmentPath;
+    private long flushedBytes;
+
+    // The offset of the last log of the current publish which has been flushed.
+    private long writtenThrough;
+
+    public FilePublisher(Path directory, Options options) {
+        this.directory = Objects.requireNonNull(directory, "directory must not be null");
+        this.options = Objects.requireNonNull(options, "options must not be null");
+        this.block = new ByteArrayOutputStream(options.blockBytes);
+        this.encoder = new ParallelEncoder(
+                (log, out) -> {
+                    OBJECT_MAPPER.writeValue(out, log);
+                    out.write('\n');
+                },
+                options.parallelSerialization
+                        ? ParallelEncoder.Options.DEFAULT
+                        : ParallelEncoder.Options.DEFAULT.withParallelThreshold(Integer.MAX_VALUE)
+        );
+    }
+
+    public FilePublisher(Path directory) {
+        this(directory, Options.DEFAULT);
+    }
+
+    @Override
+    public synchronized LogBuffer publish(LogBuffer logs) {
+        var items = new ArrayList<LogBuffer.OffsetLogPair>();
+        var batch = new ArrayList<Log>();
+        for (var item : logs.items()) {
+            if (item != null) {
+                items.add(item);
+                batch.add(item.log());
+            }
+        }
+        if (batch.isEmpty()) {
+            return logs.clear();
+        }
+
+        writtenThrough = 0;
+        try {
+            if (options.compress) {
+                writeCompressed(items, batch);
+            } else {
+                writePlain(items, batch);
+            }
+        } catch (IOException e) {
+            // Keep the logs which weren't flushed so they are retried on the next publish.
+            System.err.printf("Failed to write logs to %s: %s%n", directory, e);
+            abandonSegment();
+            return logs.dequeue(writtenThrough);
+        }
+        return logs.clear();
+    }
+
+    private void writeCompressed(List<LogBuffer.OffsetLogPair> items, List<Log> batch) throws IOException {
+        if (compressedSegment == null || compressedSegment.size() >= options.maxSegmentBytes) {
+            closeSegment();
+            var sample = batch.subList(0, Math.min(batch.size(), DICTIONARY_SAMPLE_SIZE));
+            Files.createDirectories(directory);
+            segmentPath = directory.resolve(options.prefix + "-" + Flake.create() + ".seg");
+            flushedBytes = 0;
+            compressedSegment = SegmentWriter.create(
+                    segmentPath,
+                    SegmentDictionary.build(sample),
+                    options.compressionLevel
+            );
+        }
+
+        block.reset();
+        Flake first = null;
+        Flake last = null;
+        int records = 0;
+        for (var chunk : encoder.encode(batch)) {
+            block.write(chunk.bytes());
+            bytesPublished += chunk.bytes().length;
+            for (int i = chunk.from(); i < chunk.to(); i++) {
+                var flake = batch.get(i).flake();
+                first = first == null || flake.compareTo(first) < 0 ? flake : first;
+                last = last == null || flake.compareTo(last) > 0 ? flake : last;
+            }
+            records += chunk.to() - chunk.from();
+            if (block.size() >= options.blockBytes) {
+                writeBlock(first, last, records, items.get(chunk.to() - 1).offset());
+                first = null;
+                last = null;
+                records = 0;
+            }
+        }
+        if (records > 0) {
+            writeBlock(first, last, records, items.get(items.size() - 1).offset());
+        }
+    }
+
+    private void writeBlock(Flake first, Flake last, int records, long lastOffset) throws IOException {
+        compressedSegment.writeBlock(first, last, records, block.toByteArray(), block.size());
+        compressedSegment.flush();
+        block.reset();
+        flushedBytes = compressedSegment.size();
+        writtenThrough = lastOffset;
+    }
+
+    private void writePlain(List<LogBuffer.OffsetLogPair> items, List<Log> batch) throws IOException {
+        if (plainSegment == null || plainSegmentSize >= options.maxSegmentBytes) {
+            closeSegment();
+            Files.createDirectories(directory);
+            segmentPath = directory.resolve(options.prefix + "-" + Flake.create() + ".ndjson");
+            flushedBytes = 0;
+            plainSegment = new BufferedOutputStream(Files.newOutputStream(
+                    segmentPath,
+                    StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.WRITE
+            ));
+            plainSegmentSize = 0;
+        }
+
+        for (var chunk : encoder.encode(batch)) {
+            plainSegment.write(chunk.bytes());
+            plainSegmentSize += chunk.bytes().length;
+            bytesPublished += chunk.bytes().length;
+            plainSegment.flush();
+            flushedBytes = plainSegmentSize;
+            writtenThrough = items.get(chunk.to() - 1).offset();
+        }
+    }
+
+    /*
+     * Closes the segment after a failed write and cuts it back to what was last flushed, so that
+     * a block or line which was partly written, or still buffered, isn't left behind to be read
+     * alongside the copy the retry writes.
+     */
+    private void abandonSegment() {
+        var path = segmentPath;
+        long flushed = flushedBytes;
+        closeSegment();
+        if (path == null) {
+            return;
+        }
+        try {
+            if (flushed == 0) {
+                Files.deleteIfExists(path);
+            } else {
+                try (var channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                    channel.truncate(flushed);
+                }
+            }
+        } catch (IOException e) {
+            System.err.printf("Failed to cut back %s after a failed write: %s%n", path, e);
+        }
+    }
+
+    private void closeSegment() {
+        try {
+            if (compressedSegment != null) {
+                compressedSegment.close();
+            }
+            if (plainSegment != null) {
+                plainSegment.close();
+            }
+        } catch (IOException e) {
+            System.err.printf("Failed to close segment in %s: %s%n", directory, e);
+        } finally {
+            compressedSegment = null;
+            plainSegment = null;
+            segmentPath = null;
+        }
+    }
+
+    /**
+     * @return The bytes of NDJSON written, before compression.
+     */
+    @Override
+    public long bytesPublished() {
+        return bytesPublished;
+    }
+
+    /**
+     * Closes the current segment. The next publish starts a new one.
+     */
+    public synchronized void close() {
+        closeSegment();
+    }
+
+    @Override
+    public String toString() {
+        return "FilePublisher[directory=" + directory + ", options=" + options + "]";
+    }
+
+    /**
+     * @param prefix The prefix of segment file names.
+     * @param compress Whether to write block compressed segments instead of plain NDJSON.
+     * @param maxSegmentBytes The size after which a new segment is started.
+     * @param blockBytes The uncompressed size after which a block is compressed and written.
+     * @param compressionLevel The {@link Deflater} compression level.
+     * @param parallelSerialization Whether to serialize large batches in parallel.
+     */
+    public record Options(
+            String prefix,
+            boolean compress,
+            long maxSegmentBytes,
+            int blockBytes,
+            int compressionLevel,
+            boolean parallelSerialization
+    ) {
+        public static final Options DEFAULT = new Options(
+                "log",
+                true,
+                64L * 1024 * 1024,
+                256 * 1024,
+                Deflater.DEFAULT_COMPRESSION,
+                false
+        );
+
+        public Options withPrefix(String prefix) {
+            return new Options(
+                    prefix,
+                    this.compress,
+                    this.maxSegmentBytes,
+                    this.blockBytes,
+                    this.compressionLevel,
+                    this.parallelSerialization
+            );
+        }
+
+        public Options withCompress(boolean compress) {
+            return new Options(
+                    this.prefix,
+                    compress,
+                    this.maxSegmentBytes,
+                    this.blockBytes,
+                    this.compressionLevel,
+                    this.parallelSerialization
+            );
+        }
+
+        public Options withMaxSegmentBytes(long maxSegmentBytes) {
+            return new Options(
+                    this.prefix,
+                    this.compress,
+                    maxSegmentBytes,
+                    this.blockBytes,
+                    this.compressionLevel,
+                    this.parallelSerialization
+            );
+        }
+
+        public Options withBlockBytes(int blockBytes) {
+            return new Options(
+                    this.prefix,
+                    this.compress,
+                    this.maxSegmentBytes,
+                    blockBytes,
+                    this.compressionLevel,
+                    this.parallelSerialization
+            );
+        }
+
+        public Options withCompressionLevel(int compressionLevel) {
+            return new Options(
+                    this.prefix,
+                    this.compress,
+                    this.maxSegmentBytes,
+                    this.blockBytes,
+                    compressionLevel,
+                    this.parallelSerialization
+            );
+        }
+
+        public Options withParallelSerialization(boolean parallelSerialization) {
+            return new Options(
+                    this.prefix,
+                    this.compress,
+                    this.maxSegmentBytes,
+                    this.blockBytes,
+                    this.compressionLevel,
+                    parallelSerialization
+            );
+        }
+    }
+}
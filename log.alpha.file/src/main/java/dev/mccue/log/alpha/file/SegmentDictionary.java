@@ -0,0 +1,72 @@
+package dev.mccue.log.alpha.file;
+
+import dev.mccue.log.alpha.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Builds the preset dictionary a segment's blocks are compressed with.
+ *
+ * <p>Deflate can refer back into a preset dictionary from the very first byte of a block, so
+ * small blocks compress almost as well as large ones. The dictionary is seeded with the entry
+ * keys and category names which are most frequent in a sample of logs, followed by the field
+ * names every serialized log has. Deflate finds matches closer to the end of the dictionary more
+ * cheaply, so the most frequent strings are placed last.</p>
+ */
+final class SegmentDictionary {
+    static final int MAX_SIZE = 32 * 1024;
+
+    private static final List<String> BOILERPLATE = List.of(
+            "{\"log.alpha/namespace\":\"",
+            "\",\"log.alpha/name\":\"",
+            "\",\"log.alpha/level\":\"",
+            "\",\"log.alpha/flake\":\"",
+            "\",\"log.alpha/timestamp\":\"",
+            "\",\"log.alpha/duration\":",
+            "trace", "debug", "info", "warn", "error"
+    );
+
+    private SegmentDictionary() {
+    }
+
+    static byte[] build(List<Log> sample) {
+        var frequencies = new HashMap<String, Integer>();
+        for (var log : sample) {
+            frequencies.merge("\"" + log.category().namespace() + "\"", 1, Integer::sum);
+            frequencies.merge("\"" + log.category().name() + "\"", 1, Integer::sum);
+            for (var entry : log) {
+                frequencies.merge(",\"" + entry.key() + "\":", 1, Integer::sum);
+            }
+        }
+
+        var byFrequency = new ArrayList<>(frequencies.entrySet());
+        // Least frequent first, so the most frequent end up closest to the data.
+        byFrequency.sort(Map.Entry.<String, Integer>comparingByValue()
+                .thenComparing(Map.Entry.comparingByKey()));
+
+        var strings = new ArrayList<String>();
+        for (var entry : byFrequency) {
+            strings.add(entry.getKey());
+        }
+        strings.addAll(BOILERPLATE);
+
+        var out = new ByteArrayOutputStream();
+        int budget = MAX_SIZE;
+        var chosen = new ArrayDeque<byte[]>();
+        // Keep the most frequent strings when the dictionary would be too large.
+        for (int i = strings.size() - 1; i >= 0; i--) {
+            var bytes = strings.get(i).getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > budget) {
+                continue;
+            }
+            budget -= bytes.length;
+            chosen.addFirst(bytes);
+        }
+        for (var bytes : chosen) {
+            out.writeBytes(bytes);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,184 @@
+package dev.mccue.log.alpha.file;
+
+import dev.mccue.log.alpha.Flake;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads a segment file written by {@link SegmentWriter}.
+ *
+ * <p>Listing the blocks only reads their headers, so a reader looking for a range of flakes
+ * can skip every block outside of it without inflating anything.</p>
+ */
+public final class SegmentReader implements Closeable {
+    private final Path path;
+    private final FileChannel channel;
+    private final byte[] dictionary;
+    private final long firstBlockPosition;
+    private final Inflater inflater;
+
+    private SegmentReader(Path path, FileChannel channel, byte[] dictionary, long firstBlockPosition) {
+        this.path = path;
+        this.channel = channel;
+        this.dictionary = dictionary;
+        this.firstBlockPosition = firstBlockPosition;
+        this.inflater = new Inflater();
+    }
+
+    public static SegmentReader open(Path path) throws IOException {
+        var channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            var header = readFully(channel, 0, 12);
+            if (header.getInt() != SegmentWriter.MAGIC) {
+                throw new IOException("Not a segment file: " + path);
+            }
+            int version = header.getInt();
+            if (version != SegmentWriter.VERSION) {
+                throw new IOException("Unsupported segment version " + version + ": " + path);
+            }
+            int dictionaryLength = header.getInt();
+            if (dictionaryLength < 0 || dictionaryLength > SegmentDictionary.MAX_SIZE) {
+                throw new IOException("Corrupt segment header: " + path);
+            }
+            var dictionary = new byte[dictionaryLength];
+            readFully(channel, 12, dictionaryLength).get(dictionary);
+            return new SegmentReader(path, channel, dictionary, 12 + dictionaryLength);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return Whether the file starts like a segment file.
+     */
+    public static boolean isSegment(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.size() >= 4 && readFully(channel, 0, 4).getInt() == SegmentWriter.MAGIC;
+        }
+    }
+
+    /**
+     * Lists every complete block in the segment by reading only their headers.
+     *
+     * <p>A block which was only partially written, because the writer was interrupted, ends
+     * the listing.</p>
+     */
+    public List<Block> blocks() throws IOException {
+        var blocks = new ArrayList<Block>();
+        long position = firstBlockPosition;
+        long end = channel.size();
+        var flake = new byte[24];
+        while (position + SegmentWriter.BLOCK_HEADER_SIZE <= end) {
+            var header = readFully(channel, position, SegmentWriter.BLOCK_HEADER_SIZE);
+            if (header.getInt() != SegmentWriter.BLOCK_MAGIC) {
+                throw new IOException("Corrupt block at " + position + ": " + path);
+            }
+            header.get(flake);
+            var first = Flake.makeFlake(flake);
+            header.get(flake);
+            var last = Flake.makeFlake(flake);
+            int records = header.getInt();
+            int uncompressedLength = header.getInt();
+            int compressedLength = header.getInt();
+            long dataPosition = position + SegmentWriter.BLOCK_HEADER_SIZE;
+            if (dataPosition + compressedLength > end) {
+                break;
+            }
+            blocks.add(new Block(first, last, records, uncompressedLength, dataPosition, compressedLength));
+            position = dataPosition + compressedLength;
+        }
+        return List.copyOf(blocks);
+    }
+
+    /**
+     * Lists the blocks which may contain flakes between from and to, inclusive.
+     */
+    public List<Block> blocksBetween(Flake from, Flake to) throws IOException {
+        return blocks().stream()
+                .filter(block -> block.last().compareTo(from) >= 0 && block.first().compareTo(to) <= 0)
+                .toList();
+    }
+
+    /**
+     * Inflates a block.
+     *
+     * @return The block's uncompressed contents.
+     */
+    public byte[] read(Block block) throws IOException {
+        var compressed = new byte[block.compressedLength()];
+        readFully(channel, block.position(), compressed.length).get(compressed);
+        var uncompressed = new byte[block.uncompressedLength()];
+        inflater.reset();
+        inflater.setInput(compressed);
+        try {
+            int read = 0;
+            while (read < uncompressed.length) {
+                int n = inflater.inflate(uncompressed, read, uncompressed.length - read);
+                if (n == 0) {
+                    if (inflater.needsDictionary()) {
+                        inflater.setDictionary(dictionary);
+                    } else if (inflater.finished() || inflater.needsInput()) {
+                        throw new IOException("Block ended early at " + block.position() + ": " + path);
+                    }
+                }
+                read += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt block at " + block.position() + ": " + path, e);
+        }
+        return uncompressed;
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        var buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        return buffer.flip();
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            channel.close();
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * The header of a block.
+     *
+     * @param first The smallest flake in the block.
+     * @param last The largest flake in the block.
+     * @param records How many records the block holds.
+     * @param uncompressedLength The length of the block once inflated.
+     * @param position Where the compressed bytes start in the file.
+     * @param compressedLength The length of the compressed bytes.
+     */
+    public record Block(
+            Flake first,
+            Flake last,
+            int records,
+            int uncompressedLength,
+            long position,
+            int compressedLength
+    ) {}
+}
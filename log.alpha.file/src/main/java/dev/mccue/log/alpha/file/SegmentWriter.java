@@ -0,0 +1,139 @@
+package dev.mccue.log.alpha.file;
+
+import dev.mccue.log.alpha.Flake;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a segment file made of independently compressed blocks.
+ *
+ * <p>A segment starts with a header holding the preset dictionary every block is compressed
+ * with. Each block is a small header with the range of flakes it contains, how many records it
+ * holds and its compressed and uncompressed lengths, followed by the block itself compressed with
+ * {@link Deflater} using that dictionary. Readers can use the headers to skip blocks outside of
+ * the flakes they are interested in without inflating them.</p>
+ *
+ * <pre>
+ * segment := MAGIC VERSION dictionary-length dictionary block*
+ * block   := BLOCK_MAGIC first-flake last-flake record-count uncompressed-length compressed-length bytes
+ * </pre>
+ *
+ * <p>All numbers are big endian ints and flakes are their 24 byte representation.</p>
+ */
+public final class SegmentWriter implements Closeable {
+    static final int MAGIC = 0x4C4F4753;
+    static final int VERSION = 1;
+    static final int BLOCK_MAGIC = 0x424C4B31;
+    static final int BLOCK_HEADER_SIZE = 4 + 24 + 24 + 4 + 4 + 4;
+
+    private final Path path;
+    private final DataOutputStream out;
+    private final byte[] dictionary;
+    private final Deflater deflater;
+    private byte[] compressed;
+    private long size;
+
+    private SegmentWriter(Path path, DataOutputStream out, byte[] dictionary, int level) {
+        this.path = path;
+        this.out = out;
+        this.dictionary = dictionary;
+        this.deflater = new Deflater(level);
+        this.compressed = new byte[64 * 1024];
+        this.size = 0;
+    }
+
+    /**
+     * Creates a new segment file, failing if it already exists.
+     *
+     * @param path Where to write the segment.
+     * @param dictionary The preset dictionary, see {@link SegmentDictionary}.
+     * @param level The {@link Deflater} compression level.
+     */
+    public static SegmentWriter create(Path path, byte[] dictionary, int level) throws IOException {
+        Objects.requireNonNull(path, "path must not be null");
+        Objects.requireNonNull(dictionary, "dictionary must not be null");
+        if (dictionary.length > SegmentDictionary.MAX_SIZE) {
+            throw new IllegalArgumentException("dictionary must be at most 32KiB");
+        }
+        var out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)
+        ));
+        var writer = new SegmentWriter(path, out, dictionary.clone(), level);
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(dictionary.length);
+            out.write(dictionary);
+            writer.size = 12 + dictionary.length;
+        } catch (IOException e) {
+            writer.close();
+            throw e;
+        }
+        return writer;
+    }
+
+    /**
+     * Compresses and appends one block.
+     *
+     * @param first The smallest flake in the block.
+     * @param last The largest flake in the block.
+     * @param records How many records the block holds.
+     * @param uncompressed The block's contents.
+     * @param length How many bytes of uncompressed to use.
+     */
+    public void writeBlock(Flake first, Flake last, int records, byte[] uncompressed, int length) throws IOException {
+        deflater.reset();
+        deflater.setDictionary(dictionary);
+        deflater.setInput(uncompressed, 0, length);
+        deflater.finish();
+        int compressedLength = 0;
+        while (!deflater.finished()) {
+            if (compressedLength == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+        }
+
+        out.writeInt(BLOCK_MAGIC);
+        out.write(first.getBytes());
+        out.write(last.getBytes());
+        out.writeInt(records);
+        out.writeInt(length);
+        out.writeInt(compressedLength);
+        out.write(compressed, 0, compressedLength);
+        size += BLOCK_HEADER_SIZE + compressedLength;
+    }
+
+    /**
+     * Makes everything written so far visible to readers of the file.
+     */
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * @return The number of bytes written to the segment so far.
+     */
+    public long size() {
+        return size;
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            out.close();
+        } finally {
+            deflater.end();
+        }
+    }
+}
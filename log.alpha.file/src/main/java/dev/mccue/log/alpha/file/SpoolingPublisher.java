@@ -0,0 +1,470 @@
+package dev.mccue.log.alpha.file;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import dev.mccue.log.alpha.Flake;
+import dev.mccue.log.alpha.Log;
+import dev.mccue.log.alpha.jackson.LogDeserializer;
+import dev.mccue.log.alpha.jackson.LogSerializer;
+import dev.mccue.log.alpha.publisher.LogBuffer;
+import dev.mccue.log.alpha.publisher.Publisher;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.Deflater;
+
+/**
+ * A publisher which spools logs to disk while the publisher it wraps is slow or unavailable.
+ *
+ * <p>Logs are handed to the wrapped publisher as usual. When more than
+ * {@link Options#memoryThreshold()} logs are left unpublished they are appended to spool segments,
+ * in offset order, and the buffer is cleared, so memory stays flat for as long as the sink is
+ * down. While anything is spooled, new logs are spooled behind it. On every publish the oldest
+ * spooled logs are replayed first, in the order they were spooled, and new logs are only handed
+ * over directly once the spool is empty.</p>
+ *
+ * <p>Spool segments are {@link SegmentWriter} files of deflated NDJSON and are read back with
+ * {@link LogDeserializer}, so replayed logs have the same JSON as the originals but not
+ * necessarily the same types of values. Segments left in the directory by an earlier process are
+ * replayed too. A segment is only deleted once all of it has been published, so logs can be
+ * published twice if the process stops partway through one.</p>
+ *
+ * <p>Once the spool would grow past {@link Options#maxDiskBytes()} the oldest segments are
+ * deleted, and the logs in them are lost. A segment which can't be read back is deleted the same
+ * way, and one which can't be closed is renamed to end in {@code .failed} and never replayed.</p>
+ */
+public final class SpoolingPublisher implements Publisher {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    static {
+        var module = new SimpleModule();
+        module.addSerializer(Log.class, new LogSerializer());
+        module.addDeserializer(Log.class, new LogDeserializer());
+        OBJECT_MAPPER.registerModule(module);
+    }
+
+    private static final int DICTIONARY_SAMPLE_SIZE = 1000;
+    private static final int BLOCK_BYTES = 256 * 1024;
+
+    private final Publisher delegate;
+    private final Path directory;
+    private final Options options;
+    private final ByteArrayOutputStream block;
+
+    // Guarded by this
+    private final ArrayDeque<Path> sealed;
+    private long sealedBytes;
+    private SegmentWriter writer;
+    private long writerRecords;
+    private SegmentReader replaying;
+    private final ArrayDeque<SegmentReader.Block> replayBlocks;
+    private final ArrayDeque<Log> replayPending;
+    private long droppedLogs;
+
+    public SpoolingPublisher(Publisher delegate, Path directory, Options options) {
+        this.delegate = Objects.requireNonNull(delegate, "delegate must not be null");
+        this.directory = Objects.requireNonNull(directory, "directory must not be null");
+        this.options = Objects.requireNonNull(options, "options must not be null");
+        this.block = new ByteArrayOutputStream(BLOCK_BYTES);
+        this.sealed = new ArrayDeque<>();
+        this.replayBlocks = new ArrayDeque<>();
+        this.replayPending = new ArrayDeque<>();
+        recover();
+    }
+
+    public SpoolingPublisher(Publisher delegate, Path directory) {
+        this(delegate, directory, Options.DEFAULT);
+    }
+
+    private void recover() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (var files = Files.list(directory)) {
+            // Segment names end in a flake, so sorting by name sorts by when they were started.
+            var existing = files
+                    .filter(path -> {
+                        var fileName = path.getFileName().toString();
+                        return fileName.startsWith(options.prefix + "-") && fileName.endsWith(".seg");
+                    })
+                    .sorted()
+                    .toList();
+            for (var path : existing) {
+                sealed.add(path);
+                sealedBytes += Files.size(path);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list spool segments in " + directory, e);
+        }
+    }
+
+    @Override
+    public synchronized LogBuffer publish(LogBuffer logs) {
+        if (!replay()) {
+            spool(logs.items());
+            return logs.clear();
+        }
+
+        var remaining = delegate.publish(logs);
+        if (remaining.size() > options.memoryThreshold) {
+            spool(remaining.items());
+            return remaining.clear();
+        }
+        return remaining;
+    }
+
+    /**
+     * Hands spooled logs to the wrapped publisher, oldest first, for as long as it takes all of them.
+     *
+     * @return Whether the spool is now empty.
+     */
+    private boolean replay() {
+        while (true) {
+            if (replayPending.isEmpty() && !fillReplayPending()) {
+                return true;
+            }
+
+            int count = Math.min(replayPending.size(), options.replayBatchSize);
+            var batch = LogBuffer.create(count);
+            var iterator = replayPending.iterator();
+            for (int i = 0; i < count; i++) {
+                batch = batch.enqueue(iterator.next());
+            }
+
+            var remaining = delegate.publish(batch);
+            int published = count - remaining.size();
+            for (int i = 0; i < published; i++) {
+                replayPending.poll();
+            }
+            if (remaining.size() > 0) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Reads the next block of the oldest spool segment into the pending logs, deleting segments
+     * which have been fully replayed.
+     *
+     * @return Whether there were any logs left to read.
+     */
+    private boolean fillReplayPending() {
+        while (true) {
+            try {
+                if (replaying != null && !replayBlocks.isEmpty()) {
+                    var bytes = replaying.read(replayBlocks.poll());
+                    readLogs(bytes);
+                    if (!replayPending.isEmpty()) {
+                        return true;
+                    }
+                    continue;
+                }
+
+                if (replaying != null) {
+                    deleteReplayed();
+                }
+
+                if (sealed.isEmpty()) {
+                    seal();
+                    if (sealed.isEmpty()) {
+                        return false;
+                    }
+                }
+
+                replaying = SegmentReader.open(sealed.peek());
+                replayBlocks.addAll(replaying.blocks());
+            } catch (IOException e) {
+                // Only the segment being read can fail here, and that is always the oldest.
+                System.err.printf("Failed to replay spooled logs from %s: %s%n", directory, e);
+                dropOldest();
+            }
+        }
+    }
+
+    private void deleteReplayed() {
+        var path = replaying.path();
+        sealed.remove(path);
+        try {
+            replaying.close();
+            sealedBytes -= Files.size(path);
+            Files.delete(path);
+        } catch (IOException e) {
+            System.err.printf("Failed to delete replayed spool segment %s: %s%n", path, e);
+        } finally {
+            replaying = null;
+        }
+    }
+
+    private void readLogs(byte[] bytes) throws IOException {
+        int start = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == '\n') {
+                if (i > start) {
+                    replayPending.add(OBJECT_MAPPER.readValue(bytes, start, i - start, Log.class));
+                }
+                start = i + 1;
+            }
+        }
+    }
+
+    /**
+     * Deletes the oldest spool segment, counting the logs in it which had not been replayed as
+     * dropped.
+     */
+    private void dropOldest() {
+        var oldest = sealed.poll();
+        if (oldest == null) {
+            return;
+        }
+
+        if (replaying != null && replaying.path().equals(oldest)) {
+            droppedLogs += replayPending.size();
+            for (var remaining : replayBlocks) {
+                droppedLogs += remaining.records();
+            }
+            try {
+                replaying.close();
+            } catch (IOException e) {
+                // Deleting it is all that is left to do.
+            }
+            replaying = null;
+            replayBlocks.clear();
+            replayPending.clear();
+        } else {
+            try (var reader = SegmentReader.open(oldest)) {
+                for (var b : reader.blocks()) {
+                    droppedLogs += b.records();
+                }
+            } catch (IOException e) {
+                // The count of dropped logs is only a best effort.
+            }
+        }
+
+        try {
+            sealedBytes -= Files.size(oldest);
+            Files.delete(oldest);
+        } catch (IOException e) {
+            System.err.printf("Failed to delete spool segment %s: %s%n", oldest, e);
+        }
+    }
+
+    private void spool(List<LogBuffer.OffsetLogPair> items) {
+        var batch = new ArrayList<Log>(items.size());
+        for (var item : items) {
+            if (item != null) {
+                batch.add(item.log());
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            if (writer == null || writer.size() >= options.maxSegmentBytes) {
+                seal();
+                Files.createDirectories(directory);
+                var sample = batch.subList(0, Math.min(batch.size(), DICTIONARY_SAMPLE_SIZE));
+                writer = SegmentWriter.create(
+                        directory.resolve(options.prefix + "-" + Flake.create() + ".seg"),
+                        SegmentDictionary.build(sample),
+                        Deflater.BEST_SPEED
+                );
+            }
+
+            block.reset();
+            int first = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                OBJECT_MAPPER.writeValue(block, batch.get(i));
+                block.write('\n');
+                if (block.size() >= BLOCK_BYTES || i == batch.size() - 1) {
+                    writer.writeBlock(
+                            batch.get(first).flake(),
+                            batch.get(i).flake(),
+                            i - first + 1,
+                            block.toByteArray(),
+                            block.size()
+                    );
+                    writerRecords += i - first + 1;
+                    block.reset();
+                    first = i + 1;
+                }
+            }
+            writer.flush();
+        } catch (IOException e) {
+            droppedLogs += batch.size();
+            System.err.printf("Failed to spool %d logs to %s: %s%n", batch.size(), directory, e);
+        }
+
+        enforceDiskCap();
+    }
+
+    /**
+     * Closes the segment being written and queues it for replay. If it can't be closed it is
+     * moved aside rather than replayed, since its end may be missing.
+     */
+    private void seal() {
+        if (writer == null) {
+            return;
+        }
+        var path = writer.path();
+        try {
+            writer.close();
+            long bytes = Files.size(path);
+            sealed.add(path);
+            sealedBytes += bytes;
+        } catch (IOException e) {
+            droppedLogs += writerRecords;
+            var failed = path.resolveSibling(path.getFileName() + ".failed");
+            System.err.printf("Failed to seal spool segment %s, moving it to %s: %s%n", path, failed, e);
+            try {
+                Files.move(path, failed, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException moveFailure) {
+                System.err.printf("Failed to move spool segment %s: %s%n", path, moveFailure);
+            }
+        } finally {
+            writer = null;
+            writerRecords = 0;
+        }
+    }
+
+    private void enforceDiskCap() {
+        long writing = writer == null ? 0 : writer.size();
+        while (sealedBytes + writing > options.maxDiskBytes && !sealed.isEmpty()) {
+            dropOldest();
+        }
+    }
+
+    @Override
+    public long bytesPublished() {
+        return delegate.bytesPublished();
+    }
+
+    @Override
+    public void tick() {
+        delegate.tick();
+    }
+
+    /**
+     * @return Roughly how many bytes of logs are spooled on disk.
+     */
+    public synchronized long spooledBytes() {
+        return sealedBytes + (writer == null ? 0 : writer.size());
+    }
+
+    /**
+     * @return How many logs have been lost because the spool was full or could not be written.
+     */
+    public synchronized long droppedLogs() {
+        return droppedLogs;
+    }
+
+    /**
+     * Closes the spool segments. Anything still spooled is replayed by the next publisher made
+     * for the same directory.
+     */
+    public synchronized void close() {
+        seal();
+        try {
+            if (replaying != null) {
+                replaying.close();
+                replaying = null;
+            }
+        } catch (IOException e) {
+            System.err.printf("Failed to close spool in %s: %s%n", directory, e);
+        }
+        replayBlocks.clear();
+        replayPending.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "SpoolingPublisher[delegate=" + delegate + ", directory=" + directory + ", options=" + options + "]";
+    }
+
+    /**
+     * @param prefix The prefix of spool segment file names.
+     * @param memoryThreshold How many logs can be left unpublished before they are spooled.
+     * @param maxDiskBytes How large the spool can grow before the oldest segments are dropped.
+     * @param maxSegmentBytes The size after which a new spool segment is started.
+     * @param replayBatchSize The most spooled logs to hand to the wrapped publisher at once.
+     */
+    public record Options(
+            String prefix,
+            int memoryThreshold,
+            long maxDiskBytes,
+            long maxSegmentBytes,
+            int replayBatchSize
+    ) {
+        public static final Options DEFAULT = new Options(
+                "spool",
+                1000,
+                1024L * 1024 * 1024,
+                16L * 1024 * 1024,
+                1000
+        );
+
+        public Options {
+            Objects.requireNonNull(prefix, "prefix must not be null");
+            if (replayBatchSize <= 0) {
+                throw new IllegalArgumentException("replayBatchSize must be positive");
+            }
+        }
+
+        public Options withPrefix(String prefix) {
+            return new Options(
+                    prefix,
+                    this.memoryThreshold,
+                    this.maxDiskBytes,
+                    this.maxSegmentBytes,
+                    this.replayBatchSize
+            );
+        }
+
+        public Options withMemoryThreshold(int memoryThreshold) {
+            return new Options(
+                    this.prefix,
+                    memoryThreshold,
+                    this.maxDiskBytes,
+                    this.maxSegmentBytes,
+                    this.replayBatchSize
+            );
+        }
+
+        public Options withMaxDiskBytes(long maxDiskBytes) {
+            return new Options(
+                    this.prefix,
+                    this.memoryThreshold,
+                    maxDiskBytes,
+                    this.maxSegmentBytes,
+                    this.replayBatchSize
+            );
+        }
+
+        public Options withMaxSegmentBytes(long maxSegmentBytes) {
+            return new Options(
+                    this.prefix,
+                    this.memoryThreshold,
+                    this.maxDiskBytes,
+                    maxSegmentBytes,
+                    this.replayBatchSize
+            );
+        }
+
+        public Options withReplayBatchSize(int replayBatchSize) {
+            return new Options(
+                    this.prefix,
+                    this.memoryThreshold,
+                    this.maxDiskBytes,
+                    this.maxSegmentBytes,
+                    replayBatchSize
+            );
+        }
+    }
+}
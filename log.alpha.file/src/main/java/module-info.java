@@ -0,0 +1,7 @@
+module dev.mccue.log.alpha.file {
+    requires transitive dev.mccue.log.alpha;
+    requires transitive dev.mccue.log.alpha.publisher;
+    requires dev.mccue.log.alpha.json;
+
+    exports dev.mccue.log.alpha.file;
+}
@@ -0,0 +1,111 @@
+package dev.mccue.log.alpha.file;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.mccue.log.alpha.Log;
+import dev.mccue.log.alpha.publisher.LogBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FilePublisherTest {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static LogBuffer logs(int from, int to) {
+        var buffer = LogBuffer.create(to - from);
+        for (int i = from; i < to; i++) {
+            buffer = buffer.enqueue(new Log(
+                    Log.Level.INFO,
+                    new Log.Category("test", "file"),
+                    List.of(Log.Entry.of("n", i), Log.Entry.of("message", "request handled in " + (i % 97) + "ms"))
+            ));
+        }
+        return buffer;
+    }
+
+    private static List<String> readLines(Path directory) throws IOException {
+        var lines = new ArrayList<String>();
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(directory)) {
+            segments = files.sorted().toList();
+        }
+        for (var segment : segments) {
+            if (SegmentReader.isSegment(segment)) {
+                try (var reader = SegmentReader.open(segment)) {
+                    for (var block : reader.blocks()) {
+                        var text = new String(reader.read(block), StandardCharsets.UTF_8);
+                        lines.addAll(text.lines().toList());
+                        assertEquals(block.records(), (int) text.lines().count());
+                    }
+                }
+            } else {
+                lines.addAll(Files.readAllLines(segment));
+            }
+        }
+        return lines;
+    }
+
+    private static void assertNumbered(List<String> lines, int count) throws IOException {
+        assertEquals(count, lines.size());
+        for (int i = 0; i < count; i++) {
+            var n = OBJECT_MAPPER.readTree(lines.get(i)).get("n").asInt();
+            assertEquals(i, n);
+        }
+    }
+
+    @Test
+    public void compressedSegmentsRoundTrip() throws IOException {
+        var directory = Files.createTempDirectory("file-publisher");
+        var publisher = new FilePublisher(
+                directory,
+                FilePublisher.Options.DEFAULT.withBlockBytes(16 * 1024).withMaxSegmentBytes(64 * 1024)
+        );
+        assertEquals(0, publisher.publish(logs(0, 3_000)).size());
+        assertEquals(0, publisher.publish(logs(3_000, 5_000)).size());
+        publisher.close();
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertTrue(files.count() > 1, "expected the segment to roll over");
+        }
+        assertNumbered(readLines(directory), 5_000);
+    }
+
+    @Test
+    public void parallelSerializationWritesTheSameLogs() throws IOException {
+        var sequentialDirectory = Files.createTempDirectory("file-publisher");
+        var parallelDirectory = Files.createTempDirectory("file-publisher");
+        var options = FilePublisher.Options.DEFAULT.withBlockBytes(16 * 1024);
+        var sequential = new FilePublisher(sequentialDirectory, options);
+        var parallel = new FilePublisher(parallelDirectory, options.withParallelSerialization(true));
+        var logs = logs(0, 20_000);
+        assertEquals(0, sequential.publish(logs).size());
+        assertEquals(0, parallel.publish(logs).size());
+        sequential.close();
+        parallel.close();
+
+        var lines = readLines(parallelDirectory);
+        assertNumbered(lines, 20_000);
+        assertEquals(readLines(sequentialDirectory), lines);
+    }
+
+    @Test
+    public void plainSegmentsRoundTrip() throws IOException {
+        var directory = Files.createTempDirectory("file-publisher");
+        var publisher = new FilePublisher(
+                directory,
+                FilePublisher.Options.DEFAULT.withCompress(false).withParallelSerialization(true)
+        );
+        assertEquals(0, publisher.publish(logs(0, 20_000)).size());
+        publisher.close();
+
+        assertNumbered(readLines(directory), 20_000);
+    }
+}
@@ -0,0 +1,113 @@
+package dev.mccue.log.alpha.file;
+
+import dev.mccue.log.alpha.Log;
+import dev.mccue.log.alpha.publisher.LogBuffer;
+import dev.mccue.log.alpha.publisher.Publisher;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SpoolingPublisherTest {
+    private static final SpoolingPublisher.Options OPTIONS = SpoolingPublisher.Options.DEFAULT
+            .withMemoryThreshold(10)
+            .withMaxSegmentBytes(1024)
+            .withReplayBatchSize(50);
+
+    private static final class Sink implements Publisher {
+        boolean up;
+        final List<Long> received = new ArrayList<>();
+
+        @Override
+        public LogBuffer publish(LogBuffer logs) {
+            if (!up) {
+                return logs;
+            }
+            for (var item : logs.items()) {
+                received.add(((Log.Entry.Value.Long) item.log().entries().get(0).value()).value());
+            }
+            return logs.clear();
+        }
+    }
+
+    private static LogBuffer logs(int from, int to) {
+        var buffer = LogBuffer.create(to - from);
+        for (int i = from; i < to; i++) {
+            buffer = buffer.enqueue(new Log(Log.Level.INFO, new Log.Category("test", "spool"), List.of(Log.Entry.of("n", (long) i))));
+        }
+        return buffer;
+    }
+
+    private static List<Long> numbers(int from, int to) {
+        var numbers = new ArrayList<Long>();
+        for (long i = from; i < to; i++) {
+            numbers.add(i);
+        }
+        return numbers;
+    }
+
+    private static List<Path> segments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+
+    @Test
+    public void replaysSpooledLogsInOrderBeforeNewOnes() throws IOException {
+        var directory = Files.createTempDirectory("spool");
+        var sink = new Sink();
+        var publisher = new SpoolingPublisher(sink, directory, OPTIONS);
+
+        assertEquals(0, publisher.publish(logs(0, 200)).size());
+        assertEquals(0, publisher.publish(logs(200, 400)).size());
+        assertTrue(segments(directory).size() > 1, "expected the spool to roll over");
+        assertTrue(sink.received.isEmpty());
+
+        sink.up = true;
+        assertEquals(0, publisher.publish(logs(400, 450)).size());
+        assertEquals(numbers(0, 450), sink.received);
+        assertEquals(0, publisher.droppedLogs());
+        assertEquals(List.of(), segments(directory));
+    }
+
+    @Test
+    public void aNewPublisherReplaysWhatAnEarlierOneSpooled() throws IOException {
+        var directory = Files.createTempDirectory("spool");
+        var first = new SpoolingPublisher(new Sink(), directory, OPTIONS);
+        first.publish(logs(0, 100));
+        first.close();
+
+        var sink = new Sink();
+        sink.up = true;
+        var second = new SpoolingPublisher(sink, directory, OPTIONS);
+        assertEquals(0, second.publish(LogBuffer.create(1)).size());
+        assertEquals(numbers(0, 100), sink.received);
+    }
+
+    @Test
+    public void anUnreadableSegmentIsDroppedWithoutLosingTheOthers() throws IOException {
+        var directory = Files.createTempDirectory("spool");
+        var first = new SpoolingPublisher(new Sink(), directory, OPTIONS);
+        first.publish(logs(0, 100));
+        first.publish(logs(100, 200));
+        first.close();
+
+        var segments = segments(directory);
+        assertEquals(2, segments.size());
+        Files.write(segments.get(0), new byte[] { 1, 2, 3, 4 });
+
+        var sink = new Sink();
+        sink.up = true;
+        var second = new SpoolingPublisher(sink, directory, OPTIONS);
+        assertEquals(0, second.publish(LogBuffer.create(1)).size());
+        assertEquals(numbers(100, 200), sink.received);
+        assertEquals(List.of(), segments(directory));
+    }
+}
@@ -0,0 +1,183 @@
+package dev.mccue.log.alpha.http;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import dev.mccue.log.alpha.Log;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * How a batch of logs is laid out in the body of a bulk request.
+ *
+ * <p>Each log is given to the format already serialized as JSON, so formats only add what goes
+ * around and between logs.</p>
+ */
+public interface BulkFormat {
+    /**
+     * @return The Content-Type of the body.
+     */
+    String contentType();
+
+    /**
+     * Writes what comes before the first log.
+     */
+    default void writeStart(OutputStream out) throws IOException {
+    }
+
+    /**
+     * Writes one log.
+     *
+     * @param json The log, serialized as JSON.
+     * @param first Whether this is the first log of the body.
+     */
+    void writeLog(Log log, byte[] json, boolean first, OutputStream out) throws IOException;
+
+    /**
+     * Writes what comes after the last log.
+     */
+    default void writeEnd(OutputStream out) throws IOException {
+    }
+
+    /**
+     * Reads how many logs a successful response says were not accepted after all.
+     *
+     * @param responseBody The body of a 2xx response.
+     * @return The logs that were rejected.
+     */
+    default Rejected rejectedLogs(String responseBody) throws IOException {
+        return Rejected.NONE;
+    }
+
+    /**
+     * The logs of a successful response which were not accepted after all.
+     *
+     * @param invalid Logs which will never be accepted, such as documents that don't fit the mapping.
+     * @param throttled Logs turned away because the server was overloaded, which might be accepted
+     *                  if sent again later.
+     */
+    record Rejected(int invalid, int throttled) {
+        public static final Rejected NONE = new Rejected(0, 0);
+    }
+
+    /**
+     * One log per line, as taken by most HTTP log collectors.
+     */
+    static BulkFormat ndjson() {
+        return new BulkFormat() {
+            @Override
+            public String contentType() {
+                return "application/x-ndjson";
+            }
+
+            @Override
+            public void writeLog(Log log, byte[] json, boolean first, OutputStream out) throws IOException {
+                out.write(json);
+                out.write('\n');
+            }
+
+            @Override
+            public String toString() {
+                return "BulkFormat.ndjson()";
+            }
+        };
+    }
+
+    /**
+     * The body of an Elasticsearch or OpenSearch {@code _bulk} request, which creates a document
+     * for each log in the index or data stream named in the request's URI.
+     *
+     * <p>A {@code _bulk} request succeeds even when some of its documents fail, so the items of a
+     * response with {@code "errors": true} are counted as rejected logs. Items which failed with a
+     * 429 status, because the cluster's write queue was full, are counted as throttled rather than
+     * invalid.</p>
+     */
+    static BulkFormat elasticsearch() {
+        var action = "{\"create\":{}}\n".getBytes(StandardCharsets.UTF_8);
+        return new BulkFormat() {
+            @Override
+            public String contentType() {
+                return "application/x-ndjson";
+            }
+
+            @Override
+            public void writeLog(Log log, byte[] json, boolean first, OutputStream out) throws IOException {
+                out.write(action);
+                out.write(json);
+                out.write('\n');
+            }
+
+            @Override
+            public Rejected rejectedLogs(String responseBody) throws IOException {
+                return BulkResponses.failedItems(responseBody);
+            }
+
+            @Override
+            public String toString() {
+                return "BulkFormat.elasticsearch()";
+            }
+        };
+    }
+
+    /**
+     * The body of a Loki push request, with every log as a line of a single stream.
+     *
+     * @param labels The labels of the stream.
+     */
+    static BulkFormat loki(Map<String, String> labels) {
+        Objects.requireNonNull(labels, "labels must not be null");
+        var encoder = JsonStringEncoder.getInstance();
+        var start = new StringBuilder("{\"streams\":[{\"stream\":{");
+        boolean firstLabel = true;
+        for (var label : labels.entrySet()) {
+            if (!firstLabel) {
+                start.append(',');
+            }
+            firstLabel = false;
+            start.append('"').append(encoder.quoteAsString(label.getKey())).append("\":\"")
+                    .append(encoder.quoteAsString(label.getValue())).append('"');
+        }
+        start.append("},\"values\":[");
+        var startBytes = start.toString().getBytes(StandardCharsets.UTF_8);
+        var endBytes = "]}]}".getBytes(StandardCharsets.UTF_8);
+
+        return new BulkFormat() {
+            @Override
+            public String contentType() {
+                return "application/json";
+            }
+
+            @Override
+            public void writeStart(OutputStream out) throws IOException {
+                out.write(startBytes);
+            }
+
+            @Override
+            public void writeLog(Log log, byte[] json, boolean first, OutputStream out) throws IOException {
+                var timestamp = switch (log.occurrence()) {
+                    case Log.Occurrence.PointInTime pointInTime -> pointInTime.happenedAt();
+                    case Log.Occurrence.SpanOfTime spanOfTime -> spanOfTime.startedAt();
+                };
+                long nanos = timestamp.getEpochSecond() * 1_000_000_000L + timestamp.getNano();
+                if (!first) {
+                    out.write(',');
+                }
+                out.write(("[\"" + nanos + "\",\"").getBytes(StandardCharsets.UTF_8));
+                out.write(encoder.quoteAsUTF8(new String(json, StandardCharsets.UTF_8)));
+                out.write("\"]".getBytes(StandardCharsets.UTF_8));
+            }
+
+            @Override
+            public void writeEnd(OutputStream out) throws IOException {
+                out.write(endBytes);
+            }
+
+            @Override
+            public String toString() {
+                return "BulkFormat.loki(" + labels + ")";
+            }
+        };
+    }
+}
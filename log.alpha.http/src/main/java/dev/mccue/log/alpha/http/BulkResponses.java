@@ -0,0 +1,40 @@
+package dev.mccue.log.alpha.http;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+
+/**
+ * Reads the responses to Elasticsearch and OpenSearch {@code _bulk} requests.
+ */
+final class BulkResponses {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private BulkResponses() {}
+
+    /**
+     * @return The items of the response which failed, with those that failed with a 429 status,
+     *         such as for an {@code es_rejected_execution_exception}, counted as throttled.
+     */
+    static BulkFormat.Rejected failedItems(String responseBody) throws IOException {
+        var response = OBJECT_MAPPER.readTree(responseBody);
+        if (!response.path("errors").asBoolean(false)) {
+            return BulkFormat.Rejected.NONE;
+        }
+        int invalid = 0;
+        int throttled = 0;
+        for (JsonNode item : response.path("items")) {
+            // Each item is an object with a single field named for its action, such as "create".
+            for (JsonNode result : item) {
+                int status = result.path("status").asInt(200);
+                if (status == 429) {
+                    throttled++;
+                } else if (result.has("error") || status >= 300) {
+                    invalid++;
+                }
+            }
+        }
+        return new BulkFormat.Rejected(invalid, throttled);
+    }
+}
@@ -0,0 +1,497 @@
+package dev.mccue.log.alpha.http;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import dev.mccue.log.alpha.Log;
+import dev.mccue.log.alpha.jackson.LogSerializer;
+import dev.mccue.log.alpha.publisher.AsyncPublisher;
+import dev.mccue.log.alpha.publisher.LogBuffer;
+import dev.mccue.log.alpha.publisher.PipelinedPublisher;
+import dev.mccue.log.alpha.publisher.Publisher;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A publisher which sends logs in bulk requests to an HTTP endpoint, such as the {@code _bulk}
+ * API of Elasticsearch or OpenSearch, or Loki's push API. The {@link BulkFormat} decides how the
+ * body is laid out.
+ *
+ * <p>Requests are sent with {@link HttpClient#sendAsync}, with up to
+ * {@link Options#maxConcurrentRequests()} in flight at once by way of a
+ * {@link PipelinedPublisher}. Logs stay in the {@link LogBuffer} until their request succeeds,
+ * and are sent again, after {@link Options#retryDelay()}, if it fails with a 408, 429 or 5xx status
+ * or doesn't get a response. Other statuses won't go any better on a retry, so those logs are
+ * dropped and counted in {@link #droppedLogs()}, as are logs a successful response says were
+ * rejected, such as the failed items of an Elasticsearch {@code _bulk} response.</p>
+ *
+ * <p>Logs a successful response says were throttled, such as {@code _bulk} items which failed with
+ * a 429 status, are handled like a 429 response when every log of the request was throttled, and
+ * sent again. When only some were, sending the request again would duplicate the logs which were
+ * accepted, so the throttled ones are dropped, and counted in {@link #throttledLogs()} as well as
+ * {@link #droppedLogs()} to tell them apart from invalid logs.</p>
+ *
+ * <p>Bodies are streamed: logs are serialized, and gzipped when compression is on, as the client
+ * asks for more of the body, so neither the uncompressed nor the compressed body is held in memory
+ * at once. A retried request serializes its logs again. Compressed bodies are sent with
+ * {@code Content-Encoding: gzip}.</p>
+ *
+ * <p>The number of logs in each request adapts to keep the uncompressed body near
+ * {@link Options#targetBodyBytes()}, going by the average size of the logs sent so far.</p>
+ */
+public final class HttpBulkPublisher implements Publisher {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    static {
+        var module = new SimpleModule();
+        module.addSerializer(Log.class, new LogSerializer());
+        OBJECT_MAPPER.registerModule(module);
+    }
+
+    // How much each request moves the average size of a log.
+    private static final double SIZE_SMOOTHING = 0.2;
+    // About how much body to hand the client at a time.
+    private static final int PIECE_BYTES = 64 * 1024;
+
+    private final HttpClient client;
+    private final URI uri;
+    private final BulkFormat format;
+    private final Options options;
+    private final PipelinedPublisher pipeline;
+    private final LongAdder droppedLogs;
+    private final LongAdder throttledLogs;
+    private final LongAdder bytesPublished;
+
+    // Written under this, since requests finish on the client's executor threads.
+    private volatile double bytesPerLog;
+
+    public HttpBulkPublisher(HttpClient client, URI uri, BulkFormat format, Options options) {
+        this.client = Objects.requireNonNull(client, "client must not be null");
+        this.uri = Objects.requireNonNull(uri, "uri must not be null");
+        this.format = Objects.requireNonNull(format, "format must not be null");
+        this.options = Objects.requireNonNull(options, "options must not be null");
+        this.pipeline = new PipelinedPublisher(
+                new Requests(),
+                PipelinedPublisher.Options.DEFAULT
+                        .withMaxInFlight(options.maxConcurrentRequests)
+                        .withBatchSize(options.maxBatchSize)
+                        .withBatchTimeout(options.requestTimeout)
+                        .withRetryDelay(options.retryDelay)
+        );
+        this.bytesPerLog = 0;
+        this.droppedLogs = new LongAdder();
+        this.throttledLogs = new LongAdder();
+        this.bytesPublished = new LongAdder();
+    }
+
+    public HttpBulkPublisher(URI uri, BulkFormat format, Options options) {
+        this(HttpClient.newHttpClient(), uri, format, options);
+    }
+
+    public HttpBulkPublisher(URI uri, BulkFormat format) {
+        this(uri, format, Options.DEFAULT);
+    }
+
+    @Override
+    public LogBuffer publish(LogBuffer logs) {
+        return pipeline.publish(logs);
+    }
+
+    /**
+     * Sends one request per batch the pipeline hands over.
+     */
+    private final class Requests implements AsyncPublisher {
+        @Override
+        public CompletableFuture<Long> publish(List<LogBuffer.OffsetLogPair> batch) {
+            long lastOffset = batch.get(batch.size() - 1).offset();
+            var body = new Body(batch);
+            var request = HttpRequest.newBuilder(uri)
+                    .timeout(options.requestTimeout)
+                    .header("Content-Type", format.contentType())
+                    .POST(body);
+            if (options.compress) {
+                request.header("Content-Encoding", "gzip");
+            }
+            options.headers.forEach(request::header);
+
+            return client.sendAsync(request.build(), HttpResponse.BodyHandlers.ofString())
+                    .handle((response, e) -> {
+                        if (body.failure != null) {
+                            // Serializing again won't go any better, so there is no use keeping the logs.
+                            System.err.printf("Failed to serialize logs for %s: %s%n", uri, body.failure);
+                            droppedLogs.add(batch.size());
+                            return lastOffset;
+                        }
+                        if (e != null) {
+                            System.err.printf("Failed to send logs to %s: %s%n", uri, e);
+                            throw new CompletionException(e);
+                        }
+                        return acknowledge(response, batch.size(), lastOffset);
+                    });
+        }
+
+        private long acknowledge(HttpResponse<String> response, int logs, long lastOffset) {
+            int status = response.statusCode();
+            if (status / 100 == 2) {
+                BulkFormat.Rejected rejected;
+                try {
+                    rejected = format.rejectedLogs(response.body());
+                } catch (IOException e) {
+                    System.err.printf("Failed to read the response from %s: %s%n", uri, e);
+                    rejected = BulkFormat.Rejected.NONE;
+                }
+                if (rejected.throttled() >= logs) {
+                    // Nothing was accepted, so sending every log again won't duplicate any of them.
+                    System.err.printf("Failed to send logs to %s: all %d were throttled%n", uri, logs);
+                    throw new IllegalStateException("All logs were throttled by " + uri);
+                }
+                if (rejected.invalid() > 0) {
+                    System.err.printf("%d of %d logs were rejected by %s%n", rejected.invalid(), logs, uri);
+                    droppedLogs.add(rejected.invalid());
+                }
+                if (rejected.throttled() > 0) {
+                    System.err.printf("%d of %d logs were throttled by %s%n", rejected.throttled(), logs, uri);
+                    droppedLogs.add(rejected.throttled());
+                    throttledLogs.add(rejected.throttled());
+                }
+                return lastOffset;
+            }
+            if (status == 408 || status == 429 || status / 100 == 5) {
+                System.err.printf("Failed to send logs to %s: got status %d%n", uri, status);
+                throw new IllegalStateException("Got status " + status + " from " + uri);
+            }
+            System.err.printf(
+                    "Dropping %d logs rejected by %s with status %d: %s%n",
+                    logs,
+                    uri,
+                    status,
+                    response.body()
+            );
+            droppedLogs.add(logs);
+            return lastOffset;
+        }
+
+        @Override
+        public int preferredBatchSize() {
+            double size = bytesPerLog;
+            return size <= 0 ? 0 : (int) Math.max(1, Math.min(Integer.MAX_VALUE, options.targetBodyBytes / size));
+        }
+
+        @Override
+        public String toString() {
+            return HttpBulkPublisher.this.toString();
+        }
+    }
+
+    /**
+     * The body of one request. Each subscriber gets the logs serialized afresh, a piece at a time
+     * as it asks for them.
+     */
+    private final class Body implements HttpRequest.BodyPublisher {
+        private final List<LogBuffer.OffsetLogPair> batch;
+        private volatile IOException failure;
+
+        Body(List<LogBuffer.OffsetLogPair> batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        public long contentLength() {
+            return -1;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            subscriber.onSubscribe(new Pieces(subscriber));
+        }
+
+        private final class Pieces implements Flow.Subscription {
+            private final Flow.Subscriber<? super ByteBuffer> subscriber;
+            private final ByteArrayOutputStream piece;
+
+            // Guarded by this
+            private CountingOutputStream out;
+            private int next;
+            private long demand;
+            private boolean draining;
+            private boolean done;
+
+            Pieces(Flow.Subscriber<? super ByteBuffer> subscriber) {
+                this.subscriber = subscriber;
+                this.piece = new ByteArrayOutputStream(PIECE_BYTES);
+            }
+
+            @Override
+            public synchronized void request(long n) {
+                if (done) {
+                    return;
+                }
+                if (n <= 0) {
+                    done = true;
+                    subscriber.onError(new IllegalArgumentException("Must request a positive number of pieces"));
+                    return;
+                }
+                demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                if (draining) {
+                    return;
+                }
+                draining = true;
+                try {
+                    while (demand > 0 && !done) {
+                        demand--;
+                        var bytes = nextPiece();
+                        if (bytes.length > 0) {
+                            subscriber.onNext(ByteBuffer.wrap(bytes));
+                        }
+                        if (next == batch.size() && out == null) {
+                            done = true;
+                            subscriber.onComplete();
+                        }
+                    }
+                } catch (IOException e) {
+                    done = true;
+                    failure = e;
+                    subscriber.onError(e);
+                } finally {
+                    draining = false;
+                }
+            }
+
+            /**
+             * Serializes logs until about a piece's worth of body has come out, or there are none
+             * left, in which case the body is finished.
+             */
+            private byte[] nextPiece() throws IOException {
+                if (out == null) {
+                    out = new CountingOutputStream(options.compress ? new GZIPOutputStream(piece, 8 * 1024) : piece);
+                    format.writeStart(out);
+                }
+                while (next < batch.size() && piece.size() < PIECE_BYTES) {
+                    var log = batch.get(next).log();
+                    format.writeLog(log, OBJECT_MAPPER.writeValueAsBytes(log), next == 0, out);
+                    next++;
+                }
+                if (next == batch.size()) {
+                    format.writeEnd(out);
+                    out.close();
+                    finished(out.count, batch.size());
+                    out = null;
+                }
+                var bytes = piece.toByteArray();
+                piece.reset();
+                return bytes;
+            }
+
+            @Override
+            public synchronized void cancel() {
+                done = true;
+            }
+        }
+    }
+
+    private void finished(long bodyBytes, int logs) {
+        bytesPublished.add(bodyBytes);
+        double size = (double) bodyBytes / logs;
+        synchronized (this) {
+            bytesPerLog = bytesPerLog <= 0 ? size : bytesPerLog + SIZE_SMOOTHING * (size - bytesPerLog);
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    /**
+     * @return The bytes of request bodies written, before compression.
+     */
+    @Override
+    public long bytesPublished() {
+        return bytesPublished.sum();
+    }
+
+    /**
+     * @return How many logs were dropped because they were rejected or couldn't be serialized.
+     */
+    public long droppedLogs() {
+        return droppedLogs.sum();
+    }
+
+    /**
+     * @return How many of the dropped logs were throttled by a server which accepted the rest of
+     *         their request, rather than being invalid.
+     */
+    public long throttledLogs() {
+        return throttledLogs.sum();
+    }
+
+    /**
+     * @return How many requests are in flight.
+     */
+    public int inFlight() {
+        return pipeline.inFlight();
+    }
+
+    @Override
+    public String toString() {
+        return "HttpBulkPublisher[uri=" + uri + ", format=" + format + ", options=" + options + "]";
+    }
+
+    /**
+     * @param maxConcurrentRequests The most requests in flight at once.
+     * @param targetBodyBytes The uncompressed size of body to aim for.
+     * @param maxBatchSize The most logs in one request, whatever their size.
+     * @param compress Whether to gzip request bodies.
+     * @param requestTimeout How long to wait for a response before sending the logs again.
+     * @param retryDelay How long to wait after a failed request before sending again.
+     * @param headers Headers to add to every request, such as for authorization.
+     */
+    public record Options(
+            int maxConcurrentRequests,
+            long targetBodyBytes,
+            int maxBatchSize,
+            boolean compress,
+            Duration requestTimeout,
+            Duration retryDelay,
+            Map<String, String> headers
+    ) {
+        public static final Options DEFAULT = new Options(
+                4,
+                5L * 1024 * 1024,
+                10_000,
+                true,
+                Duration.ofSeconds(30),
+                Duration.ofSeconds(1),
+                Map.of()
+        );
+
+        public Options {
+            Objects.requireNonNull(requestTimeout, "requestTimeout must not be null");
+            Objects.requireNonNull(retryDelay, "retryDelay must not be null");
+            headers = Map.copyOf(Objects.requireNonNull(headers, "headers must not be null"));
+            if (maxConcurrentRequests <= 0) {
+                throw new IllegalArgumentException("maxConcurrentRequests must be positive");
+            }
+            if (targetBodyBytes <= 0) {
+                throw new IllegalArgumentException("targetBodyBytes must be positive");
+            }
+            if (maxBatchSize <= 0) {
+                throw new IllegalArgumentException("maxBatchSize must be positive");
+            }
+        }
+
+        public Options withMaxConcurrentRequests(int maxConcurrentRequests) {
+            return new Options(
+                    maxConcurrentRequests,
+                    this.targetBodyBytes,
+                    this.maxBatchSize,
+                    this.compress,
+                    this.requestTimeout,
+                    this.retryDelay,
+                    this.headers
+            );
+        }
+
+        public Options withTargetBodyBytes(long targetBodyBytes) {
+            return new Options(
+                    this.maxConcurrentRequests,
+                    targetBodyBytes,
+                    this.maxBatchSize,
+                    this.compress,
+                    this.requestTimeout,
+                    this.retryDelay,
+                    this.headers
+            );
+        }
+
+        public Options withMaxBatchSize(int maxBatchSize) {
+            return new Options(
+                    this.maxConcurrentRequests,
+                    this.targetBodyBytes,
+                    maxBatchSize,
+                    this.compress,
+                    this.requestTimeout,
+                    this.retryDelay,
+                    this.headers
+            );
+        }
+
+        public Options withCompress(boolean compress) {
+            return new Options(
+                    this.maxConcurrentRequests,
+                    this.targetBodyBytes,
+                    this.maxBatchSize,
+                    compress,
+                    this.requestTimeout,
+                    this.retryDelay,
+                    this.headers
+            );
+        }
+
+        public Options withRequestTimeout(Duration requestTimeout) {
+            return new Options(
+                    this.maxConcurrentRequests,
+                    this.targetBodyBytes,
+                    this.maxBatchSize,
+                    this.compress,
+                    requestTimeout,
+                    this.retryDelay,
+                    this.headers
+            );
+        }
+
+        public Options withRetryDelay(Duration retryDelay) {
+            return new Options(
+                    this.maxConcurrentRequests,
+                    this.targetBodyBytes,
+                    this.maxBatchSize,
+                    this.compress,
+                    this.requestTimeout,
+                    retryDelay,
+                    this.headers
+            );
+        }
+
+        public Options withHeaders(Map<String, String> headers) {
+            return new Options(
+                    this.maxConcurrentRequests,
+                    this.targetBodyBytes,
+                    this.maxBatchSize,
+                    this.compress,
+                    this.requestTimeout,
+                    this.retryDelay,
+                    headers
+            );
+        }
+    }
+}
@@ -0,0 +1,8 @@
+module dev.mccue.log.alpha.http {
+    requires transitive dev.mccue.log.alpha;
+    requires transitive dev.mccue.log.alpha.publisher;
+    requires transitive java.net.http;
+    requires dev.mccue.log.alpha.json;
+
+    exports dev.mccue.log.alpha.http;
+}
@@ -0,0 +1,215 @@
+package dev.mccue.log.alpha.http;
+
+import com.sun.net.httpserver.HttpServer;
+import dev.mccue.log.alpha.Log;
+import dev.mccue.log.alpha.publisher.LogBuffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HttpBulkPublisherTest {
+    private record Response(int status, String body) {}
+
+    private record Request(String contentEncoding, String body) {}
+
+    private HttpServer server;
+    private final ConcurrentLinkedQueue<Response> responses = new ConcurrentLinkedQueue<>();
+    private final List<Request> requests = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            var encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+            InputStream in = exchange.getRequestBody();
+            if ("gzip".equals(encoding)) {
+                in = new GZIPInputStream(in);
+            }
+            requests.add(new Request(encoding, new String(in.readAllBytes(), StandardCharsets.UTF_8)));
+
+            var response = responses.poll();
+            if (response == null) {
+                response = new Response(200, "{}");
+            }
+            var body = response.body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(response.status, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    private HttpBulkPublisher publisher(BulkFormat format) {
+        return new HttpBulkPublisher(
+                URI.create("http://localhost:" + server.getAddress().getPort() + "/_bulk"),
+                format,
+                HttpBulkPublisher.Options.DEFAULT
+                        .withMaxConcurrentRequests(1)
+                        .withRetryDelay(Duration.ofMillis(10))
+        );
+    }
+
+    private static LogBuffer logs(int count) {
+        var buffer = LogBuffer.create(count);
+        for (int i = 0; i < count; i++) {
+            buffer = buffer.enqueue(new Log(
+                    Log.Level.INFO,
+                    new Log.Category("test", "http"),
+                    List.of(Log.Entry.of("i", i))
+            ));
+        }
+        return buffer;
+    }
+
+    private static LogBuffer drain(HttpBulkPublisher publisher, LogBuffer buffer) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        buffer = publisher.publish(buffer);
+        while ((buffer.size() > 0 || publisher.inFlight() > 0) && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+            buffer = publisher.publish(buffer);
+        }
+        return buffer;
+    }
+
+    @Test
+    public void sendsAGzippedBody() throws InterruptedException {
+        var publisher = publisher(BulkFormat.ndjson());
+        assertEquals(0, drain(publisher, logs(100)).size());
+
+        assertEquals(1, requests.size());
+        assertEquals("gzip", requests.get(0).contentEncoding());
+        var lines = requests.get(0).body().split("\n");
+        assertEquals(100, lines.length);
+        assertTrue(lines[99].contains("\"i\""), lines[99]);
+        assertEquals(requests.get(0).body().length(), publisher.bytesPublished());
+        assertEquals(0, publisher.droppedLogs());
+    }
+
+    @Test
+    public void streamsBodiesLargerThanOnePiece() throws InterruptedException {
+        var publisher = new HttpBulkPublisher(
+                URI.create("http://localhost:" + server.getAddress().getPort() + "/_bulk"),
+                BulkFormat.ndjson(),
+                HttpBulkPublisher.Options.DEFAULT.withCompress(false)
+        );
+        assertEquals(0, drain(publisher, logs(5_000)).size());
+
+        assertEquals(1, requests.size());
+        assertNull(requests.get(0).contentEncoding());
+        assertTrue(requests.get(0).body().length() > 64 * 1024);
+        assertEquals(5_000, requests.get(0).body().split("\n").length);
+    }
+
+    @Test
+    public void countsBytesOfConcurrentRequests() throws InterruptedException {
+        var publisher = new HttpBulkPublisher(
+                URI.create("http://localhost:" + server.getAddress().getPort() + "/_bulk"),
+                BulkFormat.ndjson(),
+                HttpBulkPublisher.Options.DEFAULT
+                        .withCompress(false)
+                        .withMaxBatchSize(10)
+        );
+        assertEquals(0, drain(publisher, logs(1_000)).size());
+
+        assertTrue(requests.size() >= 100, "only " + requests.size() + " requests");
+        long bytes = 0;
+        for (var request : requests) {
+            bytes += request.body().length();
+        }
+        assertEquals(bytes, publisher.bytesPublished());
+    }
+
+    @Test
+    public void retriesServerErrorsAndThrottling() throws InterruptedException {
+        responses.add(new Response(503, "unavailable"));
+        responses.add(new Response(429, "slow down"));
+        var publisher = publisher(BulkFormat.ndjson());
+        assertEquals(0, drain(publisher, logs(10)).size());
+
+        assertEquals(3, requests.size());
+        for (var request : requests) {
+            assertEquals(10, request.body().split("\n").length);
+        }
+        assertEquals(0, publisher.droppedLogs());
+    }
+
+    @Test
+    public void dropsLogsOnOtherClientErrors() throws InterruptedException {
+        responses.add(new Response(400, "bad request"));
+        var publisher = publisher(BulkFormat.ndjson());
+        assertEquals(0, drain(publisher, logs(10)).size());
+
+        assertEquals(1, requests.size());
+        assertEquals(10, publisher.droppedLogs());
+    }
+
+    @Test
+    public void countsDocumentsElasticsearchRejected() throws InterruptedException {
+        responses.add(new Response(200, """
+                {"took":3,"errors":true,"items":[
+                  {"create":{"status":201}},
+                  {"create":{"status":400,"error":{"type":"mapper_parsing_exception"}}},
+                  {"create":{"status":201}}
+                ]}"""));
+        var publisher = publisher(BulkFormat.elasticsearch());
+        assertEquals(0, drain(publisher, logs(3)).size());
+
+        var lines = requests.get(0).body().split("\n");
+        assertEquals(6, lines.length);
+        assertEquals("{\"create\":{}}", lines[0]);
+        assertEquals(1, publisher.droppedLogs());
+    }
+
+    @Test
+    public void retriesWhenElasticsearchThrottledEveryDocument() throws InterruptedException {
+        responses.add(new Response(200, """
+                {"took":3,"errors":true,"items":[
+                  {"create":{"status":429,"error":{"type":"es_rejected_execution_exception"}}},
+                  {"create":{"status":429,"error":{"type":"es_rejected_execution_exception"}}}
+                ]}"""));
+        var publisher = publisher(BulkFormat.elasticsearch());
+        assertEquals(0, drain(publisher, logs(2)).size());
+
+        assertEquals(2, requests.size());
+        assertEquals(requests.get(0).body(), requests.get(1).body());
+        assertEquals(0, publisher.droppedLogs());
+        assertEquals(0, publisher.throttledLogs());
+    }
+
+    @Test
+    public void countsDocumentsElasticsearchThrottledApartFromInvalidOnes() throws InterruptedException {
+        responses.add(new Response(200, """
+                {"took":3,"errors":true,"items":[
+                  {"create":{"status":201}},
+                  {"create":{"status":429,"error":{"type":"es_rejected_execution_exception"}}},
+                  {"create":{"status":400,"error":{"type":"mapper_parsing_exception"}}}
+                ]}"""));
+        var publisher = publisher(BulkFormat.elasticsearch());
+        assertEquals(0, drain(publisher, logs(3)).size());
+
+        assertEquals(1, requests.size());
+        assertEquals(2, publisher.droppedLogs());
+        assertEquals(1, publisher.throttledLogs());
+    }
+}
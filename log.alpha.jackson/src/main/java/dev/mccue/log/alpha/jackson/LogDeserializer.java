@@ -0,0 +1,129 @@
+package dev.mccue.log.alpha.jackson;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import dev.mccue.log.alpha.Flake;
+import dev.mccue.log.alpha.Log;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Reads logs back from the JSON written by {@link LogSerializer}.
+ *
+ * <p>JSON does not keep the types of entry values, so values come back as strings, longs,
+ * doubles, booleans, nulls, lists and maps. They serialize to the same JSON they were read from.
+ * Context entries come back as entries of the log itself, with an empty global context, and the
+ * thread of a log is the thread which read it.</p>
+ */
+public final class LogDeserializer extends JsonDeserializer<Log> {
+    public LogDeserializer() {
+    }
+
+    @Override
+    public Log deserialize(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException {
+        JsonNode tree = jsonParser.readValueAsTree();
+        if (!(tree instanceof ObjectNode node)) {
+            throw new IOException("Expected a log to be a JSON object, got " + tree);
+        }
+
+        var namespace = requiredText(node, "log.alpha/namespace");
+        var name = requiredText(node, "log.alpha/name");
+        Log.Level level;
+        try {
+            level = Log.Level.valueOf(requiredText(node, "log.alpha/level").toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unknown level in " + node, e);
+        }
+        var flake = Flake.parseFlake(requiredText(node, "log.alpha/flake"));
+        if (flake == null) {
+            throw new IOException("Malformed log.alpha/flake in " + node);
+        }
+        Instant timestamp;
+        try {
+            timestamp = Instant.parse(requiredText(node, "log.alpha/timestamp"));
+        } catch (DateTimeParseException e) {
+            throw new IOException("Malformed log.alpha/timestamp in " + node, e);
+        }
+        var duration = node.get("log.alpha/duration");
+        Log.Occurrence occurrence = duration == null
+                ? new Log.Occurrence.PointInTime(timestamp)
+                : new Log.Occurrence.SpanOfTime(timestamp, Duration.ofMillis(duration.asLong()));
+
+        var entries = new ArrayList<Log.Entry>(node.size());
+        var fields = node.fields();
+        while (fields.hasNext()) {
+            var field = fields.next();
+            if (!field.getKey().startsWith("log.alpha/") || isEntry(field.getKey())) {
+                entries.add(new Log.Entry(field.getKey(), readValue(field.getValue())));
+            }
+        }
+
+        return new Log(
+                new Log.Context.Global(List.of()),
+                Thread.currentThread(),
+                flake,
+                occurrence,
+                level,
+                new Log.Category(namespace, name),
+                entries
+        );
+    }
+
+    private static boolean isEntry(String key) {
+        return switch (key) {
+            case "log.alpha/namespace",
+                    "log.alpha/name",
+                    "log.alpha/level",
+                    "log.alpha/flake",
+                    "log.alpha/timestamp",
+                    "log.alpha/duration" -> false;
+            default -> true;
+        };
+    }
+
+    private static String requiredText(ObjectNode node, String field) throws IOException {
+        var value = node.get(field);
+        if (value == null || !value.isTextual()) {
+            throw new IOException("Expected " + field + " to be a string in " + node);
+        }
+        return value.textValue();
+    }
+
+    private static Log.Entry.Value readValue(JsonNode node) {
+        if (node.isTextual()) {
+            return new Log.Entry.Value.String(node.textValue());
+        } else if (node.isBoolean()) {
+            return new Log.Entry.Value.Boolean(node.booleanValue());
+        } else if (node.isIntegralNumber() && node.canConvertToLong()) {
+            return new Log.Entry.Value.Long(node.longValue());
+        } else if (node.isNumber()) {
+            return new Log.Entry.Value.Double(node.doubleValue());
+        } else if (node.isArray()) {
+            var values = new ArrayList<Log.Entry.Value>(node.size());
+            for (var element : node) {
+                values.add(readValue(element));
+            }
+            return new Log.Entry.Value.List(values);
+        } else if (node.isObject()) {
+            var values = new LinkedHashMap<Log.Entry.Value, Log.Entry.Value>();
+            var fields = node.fields();
+            while (fields.hasNext()) {
+                var field = fields.next();
+                values.put(new Log.Entry.Value.String(field.getKey()), readValue(field.getValue()));
+            }
+            return new Log.Entry.Value.Map(values);
+        } else {
+            return Log.Entry.Value.Null.INSTANCE;
+        }
+    }
+}
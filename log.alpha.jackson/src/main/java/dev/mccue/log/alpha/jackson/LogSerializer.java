@@ -10,8 +10,43 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
+import java.util.Objects;
 
+/**
+ * Serializes logs as JSON objects.
+ *
+ * <p>By default throwables are written as the text of their stack trace. See {@link Options} for
+ * writing them as structured objects instead.</p>
+ */
 public final class LogSerializer extends JsonSerializer<Log> {
+    private final Options options;
+    private final ThrowableEncoder throwableEncoder;
+
+    public LogSerializer(Options options) {
+        this.options = Objects.requireNonNull(options, "options must not be null");
+        this.throwableEncoder = switch (options.throwableFormat) {
+            case STRING -> null;
+            case STRUCTURED -> new ThrowableEncoder(
+                    options.maxFrames,
+                    options.elideCommonFrames,
+                    options.stackCacheSize,
+                    null
+            );
+            case REFERENCED -> new ThrowableEncoder(
+                    options.maxFrames,
+                    options.elideCommonFrames,
+                    options.stackCacheSize,
+                    options.stackTraceReferences == null
+                            ? new StackTraceReferences()
+                            : options.stackTraceReferences
+            );
+        };
+    }
+
+    public LogSerializer() {
+        this(Options.DEFAULT);
+    }
+
     private String throwableToString(Throwable t) {
         var sw = new StringWriter();
         t.printStackTrace(new PrintWriter(sw));
@@ -61,8 +96,13 @@ public final class LogSerializer extends JsonSerializer<Log> {
             case Log.Entry.Value.UUID uuid ->
                     jsonGenerator.writeString(uuid.value().toString());
 
-            case Log.Entry.Value.Throwable throwable ->
+            case Log.Entry.Value.Throwable throwable -> {
+                if (throwableEncoder == null) {
                     jsonGenerator.writeString(throwableToString(throwable.value()));
+                } else {
+                    throwableEncoder.write(jsonGenerator, throwable.value());
+                }
+            }
 
 
             case Log.Entry.Value.Lazy lazy ->
@@ -85,6 +125,7 @@ public final class LogSerializer extends JsonSerializer<Log> {
             }
 
             case Log.Entry.Value.Map m -> {
+                jsonGenerator.writeStartObject();
                 for (var entry : m.value().entrySet()) {
                     if (entry.getKey() instanceof Log.Entry.Value.String s) {
                         jsonGenerator.writeFieldName(s.value());
@@ -93,6 +134,7 @@ public final class LogSerializer extends JsonSerializer<Log> {
                     }
                     writeValue(jsonGenerator, entry.getValue());
                 }
+                jsonGenerator.writeEndObject();
             }
         }
     }
@@ -144,4 +186,109 @@ public final class LogSerializer extends JsonSerializer<Log> {
 
         jsonGenerator.writeEndObject();
     }
+
+    @Override
+    public String toString() {
+        return "LogSerializer[options=" + options + "]";
+    }
+
+    public enum ThrowableFormat {
+        /**
+         * The text {@link Throwable#printStackTrace()} would print.
+         */
+        STRING,
+
+        /**
+         * An object with the class, message, frames, suppressed throwables and cause.
+         */
+        STRUCTURED,
+
+        /**
+         * Like {@link #STRUCTURED}, but a stack trace which was recently written in full is
+         * written as only its class, message and {@code log.alpha/stack-id}.
+         *
+         * @see StackTraceReferences
+         */
+        REFERENCED
+    }
+
+    /**
+     * @param throwableFormat How to write throwables.
+     * @param maxFrames For structured throwables, the most frames to write for each throwable in
+     *                  the chain.
+     * @param elideCommonFrames For structured throwables, whether to leave out the frames causes
+     *                          share with the trace enclosing them.
+     * @param stackCacheSize For structured throwables, how many rendered stack traces to keep.
+     * @param stackTraceReferences For referenced throwables, which stack traces were recently
+     *                             written in full. When null, each serializer keeps its own.
+     */
+    public record Options(
+            ThrowableFormat throwableFormat,
+            int maxFrames,
+            boolean elideCommonFrames,
+            int stackCacheSize,
+            StackTraceReferences stackTraceReferences
+    ) {
+        public static final Options DEFAULT = new Options(
+                ThrowableFormat.STRING,
+                256,
+                true,
+                1024,
+                null
+        );
+
+        public Options {
+            Objects.requireNonNull(throwableFormat, "throwableFormat must not be null");
+        }
+
+        public Options withThrowableFormat(ThrowableFormat throwableFormat) {
+            return new Options(
+                    throwableFormat,
+                    this.maxFrames,
+                    this.elideCommonFrames,
+                    this.stackCacheSize,
+                    this.stackTraceReferences
+            );
+        }
+
+        public Options withMaxFrames(int maxFrames) {
+            return new Options(
+                    this.throwableFormat,
+                    maxFrames,
+                    this.elideCommonFrames,
+                    this.stackCacheSize,
+                    this.stackTraceReferences
+            );
+        }
+
+        public Options withElideCommonFrames(boolean elideCommonFrames) {
+            return new Options(
+                    this.throwableFormat,
+                    this.maxFrames,
+                    elideCommonFrames,
+                    this.stackCacheSize,
+                    this.stackTraceReferences
+            );
+        }
+
+        public Options withStackCacheSize(int stackCacheSize) {
+            return new Options(
+                    this.throwableFormat,
+                    this.maxFrames,
+                    this.elideCommonFrames,
+                    stackCacheSize,
+                    this.stackTraceReferences
+            );
+        }
+
+        public Options withStackTraceReferences(StackTraceReferences stackTraceReferences) {
+            return new Options(
+                    this.throwableFormat,
+                    this.maxFrames,
+                    this.elideCommonFrames,
+                    this.stackCacheSize,
+                    stackTraceReferences
+            );
+        }
+    }
 }
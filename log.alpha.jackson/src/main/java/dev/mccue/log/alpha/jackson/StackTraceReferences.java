@@ -0,0 +1,97 @@
+package dev.mccue.log.alpha.jackson;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Remembers which stack traces have recently been written in full, for
+ * {@link LogSerializer.ThrowableFormat#REFERENCED}.
+ *
+ * <p>Stack traces are remembered by their {@code log.alpha/stack-id} in a least recently used map
+ * of bounded size. A stack trace is written in full the first time its id is seen, and again once
+ * a window has passed since it was last written in full. In between only a reference is written.</p>
+ *
+ * <p>Serializers given the same instance share what has been written, so there should usually be
+ * one instance per sink. A serializer which isn't given one makes its own.</p>
+ *
+ * <p>A stack trace counts as written when it is serialized, not when the sink receives it. A
+ * publisher which serializes logs again after failing to deliver them should {@link #clear()} its
+ * instance first, so that the retry doesn't send references to traces which never arrived.</p>
+ */
+public final class StackTraceReferences {
+    private final Options options;
+    private final long windowNanos;
+
+    // Guarded by this
+    private final LinkedHashMap<Long, Long> writtenAt;
+
+    public StackTraceReferences(Options options) {
+        this.options = Objects.requireNonNull(options, "options must not be null");
+        if (options.maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.windowNanos = options.window.toNanos();
+        this.writtenAt = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+                return size() > options.maxSize;
+            }
+        };
+    }
+
+    public StackTraceReferences() {
+        this(Options.DEFAULT);
+    }
+
+    /**
+     * Records that a stack trace is about to be written, if it should be written in full.
+     *
+     * @param stackId The fingerprint of the stack trace.
+     * @return Whether it should be written in full, rather than as a reference.
+     */
+    public boolean shouldWriteFull(long stackId) {
+        long now = System.nanoTime();
+        synchronized (this) {
+            var last = writtenAt.get(stackId);
+            if (last != null && now - last < windowNanos) {
+                return false;
+            }
+            writtenAt.put(stackId, now);
+            return true;
+        }
+    }
+
+    /**
+     * Forgets every stack trace, so each is next written in full.
+     */
+    public synchronized void clear() {
+        writtenAt.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "StackTraceReferences[options=" + options + "]";
+    }
+
+    /**
+     * @param window How long after writing a stack trace in full to write only references to it.
+     * @param maxSize The most stack traces to remember.
+     */
+    public record Options(Duration window, int maxSize) {
+        public static final Options DEFAULT = new Options(Duration.ofMinutes(5), 4096);
+
+        public Options {
+            Objects.requireNonNull(window, "window must not be null");
+        }
+
+        public Options withWindow(Duration window) {
+            return new Options(window, this.maxSize);
+        }
+
+        public Options withMaxSize(int maxSize) {
+            return new Options(this.window, maxSize);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package dev.mccue.log.alpha.jackson;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes throwables as JSON objects instead of as the text of their stack trace.
+ *
+ * {@snippet lang=json :
+ * {
+ *   "class": "java.lang.IllegalStateException",
+ *   "message": "Connection closed",
+ *   "log.alpha/stack-id": "5f0c6e1d2a9b3c47",
+ *   "frames": ["com.example.Client.send(Client.java:42)", "..."],
+ *   "frames-omitted": 3,
+ *   "cause": {
+ *     "class": "java.io.IOException",
+ *     "message": "Broken pipe",
+ *     "frames": ["..."],
+ *     "frames-in-common": 20
+ *   }
+ * }
+ * }
+ *
+ * <p>Frames past the frame limit are counted in {@code frames-omitted}. When common frames are
+ * elided, the frames a cause or suppressed throwable shares with the end of the trace enclosing
+ * it are left out and counted in {@code frames-in-common}, as {@link Throwable#printStackTrace()}
+ * does with "... n more".</p>
+ *
+ * <p>The {@code log.alpha/stack-id} is a fingerprint of the classes and frames of the whole chain
+ * of causes, but not of the messages, so the same failure at the same place gets the same id. The
+ * rendered frames of each stack trace are cached by fingerprint, so an error which happens over
+ * and over is only rendered once. When the cache is full the least recently used trace is
+ * dropped.</p>
+ *
+ * <p>When given {@link StackTraceReferences}, a stack trace which has recently been written in
+ * full is written as just its class, message and {@code log.alpha/stack-id}.</p>
+ */
+final class ThrowableEncoder {
+    private static final int MAX_DEPTH = 64;
+
+    private final int maxFrames;
+    private final boolean elideCommonFrames;
+    private final int cacheSize;
+
+    // Guarded by itself
+    private final LinkedHashMap<Long, RenderedTrace> cache;
+    private final StackTraceReferences references;
+
+    ThrowableEncoder(int maxFrames, boolean elideCommonFrames, int cacheSize, StackTraceReferences references) {
+        if (maxFrames < 0) {
+            throw new IllegalArgumentException("maxFrames must not be negative");
+        }
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException("cacheSize must not be negative");
+        }
+        this.maxFrames = maxFrames;
+        this.elideCommonFrames = elideCommonFrames;
+        this.cacheSize = cacheSize;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, RenderedTrace> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        this.references = references;
+    }
+
+    /**
+     * The frames of one stack trace, rendered.
+     */
+    record RenderedTrace(Class<?> type, StackTraceElement[] trace, String[] frames, long fingerprint) {}
+
+    void write(JsonGenerator jsonGenerator, Throwable throwable) throws IOException {
+        var rendered = render(throwable);
+        long stackId = stackId(throwable, rendered);
+        if (references != null && !references.shouldWriteFull(stackId)) {
+            jsonGenerator.writeStartObject();
+            jsonGenerator.writeStringField("class", throwable.getClass().getName());
+            var message = throwable.getMessage();
+            if (message != null) {
+                jsonGenerator.writeStringField("message", message);
+            }
+            jsonGenerator.writeStringField("log.alpha/stack-id", formatStackId(stackId));
+            jsonGenerator.writeEndObject();
+            return;
+        }
+        var seen = Collections.<Throwable>newSetFromMap(new IdentityHashMap<>());
+        writeThrowable(jsonGenerator, throwable, rendered, null, stackId, seen, 0);
+    }
+
+    /**
+     * @return The fingerprint of the classes and frames of the throwable and its chain of causes.
+     */
+    long stackId(Throwable throwable) {
+        return stackId(throwable, render(throwable));
+    }
+
+    private long stackId(Throwable throwable, RenderedTrace rendered) {
+        long id = rendered.fingerprint;
+        var cause = throwable.getCause();
+        for (int depth = 0; cause != null && cause != throwable && depth < MAX_DEPTH; depth++) {
+            id = mix64(id * 31 + render(cause).fingerprint);
+            throwable = cause;
+            cause = cause.getCause();
+        }
+        return id;
+    }
+
+    static String formatStackId(long stackId) {
+        var hex = Long.toHexString(stackId);
+        return "0".repeat(16 - hex.length()) + hex;
+    }
+
+    private void writeThrowable(
+            JsonGenerator jsonGenerator,
+            Throwable throwable,
+            RenderedTrace rendered,
+            StackTraceElement[] enclosing,
+            long stackId,
+            Set<Throwable> seen,
+            int depth
+    ) throws IOException {
+        seen.add(throwable);
+        jsonGenerator.writeStartObject();
+        jsonGenerator.writeStringField("class", throwable.getClass().getName());
+        var message = throwable.getMessage();
+        if (message != null) {
+            jsonGenerator.writeStringField("message", message);
+        }
+        if (enclosing == null) {
+            jsonGenerator.writeStringField("log.alpha/stack-id", formatStackId(stackId));
+        }
+
+        var frames = rendered.frames;
+        int inCommon = elideCommonFrames && enclosing != null ? framesInCommon(rendered.trace, enclosing) : 0;
+        int shown = Math.min(frames.length - inCommon, maxFrames);
+        jsonGenerator.writeFieldName("frames");
+        jsonGenerator.writeStartArray();
+        for (int i = 0; i < shown; i++) {
+            jsonGenerator.writeString(frames[i]);
+        }
+        jsonGenerator.writeEndArray();
+        if (frames.length - inCommon > shown) {
+            jsonGenerator.writeNumberField("frames-omitted", frames.length - inCommon - shown);
+        }
+        if (inCommon > 0) {
+            jsonGenerator.writeNumberField("frames-in-common", inCommon);
+        }
+
+        if (depth < MAX_DEPTH) {
+            var suppressed = throwable.getSuppressed();
+            boolean wroteSuppressed = false;
+            for (var s : suppressed) {
+                if (seen.contains(s)) {
+                    continue;
+                }
+                if (!wroteSuppressed) {
+                    jsonGenerator.writeFieldName("suppressed");
+                    jsonGenerator.writeStartArray();
+                    wroteSuppressed = true;
+                }
+                writeThrowable(jsonGenerator, s, render(s), rendered.trace, stackId, seen, depth + 1);
+            }
+            if (wroteSuppressed) {
+                jsonGenerator.writeEndArray();
+            }
+
+            var cause = throwable.getCause();
+            if (cause != null && !seen.contains(cause)) {
+                jsonGenerator.writeFieldName("cause");
+                writeThrowable(jsonGenerator, cause, render(cause), rendered.trace, stackId, seen, depth + 1);
+            }
+        }
+        jsonGenerator.writeEndObject();
+    }
+
+    private static int framesInCommon(StackTraceElement[] trace, StackTraceElement[] enclosing) {
+        int m = trace.length - 1;
+        int n = enclosing.length - 1;
+        int inCommon = 0;
+        while (m >= 0 && n >= 0 && trace[m].equals(enclosing[n])) {
+            m--;
+            n--;
+            inCommon++;
+        }
+        return inCommon;
+    }
+
+    /**
+     * Renders the frames of the throwable's own stack trace, reusing a rendering of an identical
+     * stack trace if there is one in the cache.
+     */
+    RenderedTrace render(Throwable throwable) {
+        var trace = throwable.getStackTrace();
+        long fingerprint = fingerprint(throwable.getClass(), trace);
+        RenderedTrace cached;
+        synchronized (cache) {
+            cached = cache.get(fingerprint);
+        }
+        if (cached != null && cached.type == throwable.getClass() && Arrays.equals(cached.trace, trace)) {
+            return cached;
+        }
+
+        var frames = new String[trace.length];
+        for (int i = 0; i < trace.length; i++) {
+            frames[i] = trace[i].toString();
+        }
+        var rendered = new RenderedTrace(throwable.getClass(), trace, frames, fingerprint);
+        if (cacheSize > 0) {
+            synchronized (cache) {
+                cache.put(fingerprint, rendered);
+            }
+        }
+        return rendered;
+    }
+
+    private static long fingerprint(Class<?> type, StackTraceElement[] trace) {
+        long h = type.getName().hashCode();
+        for (var element : trace) {
+            h = h * 31 + element.getClassName().hashCode();
+            h = h * 31 + element.getMethodName().hashCode();
+            h = h * 31 + (element.getFileName() == null ? 0 : element.getFileName().hashCode());
+            h = h * 31 + element.getLineNumber();
+        }
+        return mix64(h);
+    }
+
+    // The finalizer of SplitMix64, as used for Flake's lazy randomness.
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -1,5 +1,5 @@
 module dev.mccue.log.alpha.json {
-    requires dev.mccue.log.alpha;
+    requires transitive dev.mccue.log.alpha;
     requires transitive com.fasterxml.jackson.core;
     requires transitive com.fasterxml.jackson.databind;
     exports dev.mccue.log.alpha.jackson;
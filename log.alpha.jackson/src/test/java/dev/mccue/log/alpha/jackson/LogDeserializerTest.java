@@ -0,0 +1,96 @@
+package dev.mccue.log.alpha.jackson;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import dev.mccue.log.alpha.Flake;
+import dev.mccue.log.alpha.Log;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class LogDeserializerTest {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    static {
+        var module = new SimpleModule();
+        module.addSerializer(Log.class, new LogSerializer());
+        module.addDeserializer(Log.class, new LogDeserializer());
+        OBJECT_MAPPER.registerModule(module);
+    }
+
+    private static Log.Entry.Value find(Log log, String key) {
+        for (var entry : log.entries()) {
+            if (entry.key().equals(key)) {
+                return entry.value();
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void readsBackWhatWasWritten() throws IOException {
+        var log = new Log(
+                Log.Level.WARN,
+                new Log.Category("test", "deserializer"),
+                List.of(
+                        Log.Entry.of("status", 503),
+                        Log.Entry.of("latency", 0.25),
+                        Log.Entry.of("retry", true),
+                        Log.Entry.of("user", "ada"),
+                        Log.Entry.of("tags", List.of(new Log.Entry.Value.String("a"), Log.Entry.Value.Null.INSTANCE)),
+                        Log.Entry.of("headers", Map.of(new Log.Entry.Value.String("host"), new Log.Entry.Value.String("example.com")))
+                )
+        );
+        var json = OBJECT_MAPPER.writeValueAsString(log);
+        var read = OBJECT_MAPPER.readValue(json, Log.class);
+
+        assertEquals(log.level(), read.level());
+        assertEquals(log.category(), read.category());
+        assertEquals(log.flake(), read.flake());
+        assertEquals(log.occurrence(), read.occurrence());
+        assertEquals(new Log.Entry.Value.Long(503), find(read, "status"));
+        assertEquals(new Log.Entry.Value.Double(0.25), find(read, "latency"));
+        assertEquals(new Log.Entry.Value.String("ada"), find(read, "user"));
+        assertEquals(json, OBJECT_MAPPER.writeValueAsString(read));
+    }
+
+    @Test
+    public void keepsTheDurationOfASpan() throws IOException {
+        var log = new Log(
+                Log.Context.current(),
+                Thread.currentThread(),
+                Flake.create(),
+                new Log.Occurrence.SpanOfTime(Instant.parse("2024-01-01T00:00:00Z"), Duration.ofMillis(1500)),
+                Log.Level.INFO,
+                new Log.Category("test", "deserializer"),
+                List.of()
+        );
+        var read = OBJECT_MAPPER.readValue(OBJECT_MAPPER.writeValueAsString(log), Log.class);
+        assertEquals(log.occurrence(), read.occurrence());
+    }
+
+    @Test
+    public void rejectsLogsWithoutTheirFields() {
+        assertThrows(IOException.class, () -> OBJECT_MAPPER.readValue("{\"log.alpha/level\":\"INFO\"}", Log.class));
+        assertThrows(IOException.class, () -> OBJECT_MAPPER.readValue("[1, 2]", Log.class));
+    }
+
+    @Test
+    public void rejectsAMalformedFlakeOrTimestamp() throws IOException {
+        var log = new Log(Log.Level.INFO, new Log.Category("test", "deserializer"), List.of());
+        var json = OBJECT_MAPPER.writeValueAsString(log);
+        var flake = log.flake().toString();
+        var timestamp = OBJECT_MAPPER.readTree(json).get("log.alpha/timestamp").asText();
+
+        for (var badFlake : List.of("!!!", "~".repeat(flake.length()), flake.substring(1) + "!")) {
+            assertThrows(IOException.class, () -> OBJECT_MAPPER.readValue(json.replace(flake, badFlake), Log.class));
+        }
+        assertThrows(IOException.class, () -> OBJECT_MAPPER.readValue(json.replace(timestamp, "yesterday"), Log.class));
+    }
+}
@@ -0,0 +1,144 @@
+package dev.mccue.log.alpha.jackson;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import dev.mccue.log.alpha.Log;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ThrowableEncodingTest {
+    private static ObjectMapper mapper(LogSerializer.Options options) {
+        var module = new SimpleModule();
+        module.addSerializer(Log.class, new LogSerializer(options));
+        return new ObjectMapper().registerModule(module);
+    }
+
+    private static JsonNode error(ObjectMapper mapper, Throwable t) throws IOException {
+        var log = new Log(Log.Level.ERROR, new Log.Category("test", "throwables"), List.of(Log.Entry.of("error", t)));
+        return mapper.readTree(mapper.writeValueAsBytes(log)).get("error");
+    }
+
+    private static Exception failure(String message) {
+        return new IllegalStateException(message, new java.io.IOException("broken pipe"));
+    }
+
+    @Test
+    public void structuredThrowablesShareAnIdAcrossMessages() throws IOException {
+        var mapper = mapper(LogSerializer.Options.DEFAULT.withThrowableFormat(LogSerializer.ThrowableFormat.STRUCTURED));
+        var errors = new Exception[2];
+        for (int i = 0; i < 2; i++) {
+            errors[i] = failure("attempt " + i);
+        }
+        var first = error(mapper, errors[0]);
+        var second = error(mapper, errors[1]);
+
+        assertEquals("java.lang.IllegalStateException", first.get("class").asText());
+        assertEquals("attempt 0", first.get("message").asText());
+        assertEquals(first.get("log.alpha/stack-id"), second.get("log.alpha/stack-id"));
+        assertEquals("java.io.IOException", first.get("cause").get("class").asText());
+        assertTrue(first.get("cause").get("frames-in-common").asInt() > 0);
+        assertNotEquals(first.get("log.alpha/stack-id"), error(mapper, new IllegalStateException()).get("log.alpha/stack-id"));
+    }
+
+    @Test
+    public void theDefaultFormatIsWhatPrintStackTracePrints() throws IOException {
+        var failure = failure("boom");
+        var printed = new StringWriter();
+        failure.printStackTrace(new PrintWriter(printed));
+        assertEquals(printed.toString(), error(mapper(LogSerializer.Options.DEFAULT), failure).asText());
+    }
+
+    @Test
+    public void structuredFramesAreLimitedAndElided() throws IOException {
+        var failure = failure("boom");
+        var trace = failure.getStackTrace();
+
+        var limited = error(mapper(LogSerializer.Options.DEFAULT
+                .withThrowableFormat(LogSerializer.ThrowableFormat.STRUCTURED)
+                .withMaxFrames(2)), failure);
+        assertEquals(2, limited.get("frames").size());
+        assertEquals(trace[0].toString(), limited.get("frames").get(0).asText());
+        assertEquals(trace.length - 2, limited.get("frames-omitted").asInt());
+
+        var unelided = error(mapper(LogSerializer.Options.DEFAULT
+                .withThrowableFormat(LogSerializer.ThrowableFormat.STRUCTURED)
+                .withElideCommonFrames(false)), failure);
+        assertFalse(unelided.get("cause").has("frames-in-common"));
+        assertEquals(failure.getCause().getStackTrace().length, unelided.get("cause").get("frames").size());
+    }
+
+    @Test
+    public void structuredThrowablesIncludeSuppressedAndStopAtCycles() throws IOException {
+        var mapper = mapper(LogSerializer.Options.DEFAULT.withThrowableFormat(LogSerializer.ThrowableFormat.STRUCTURED));
+        var closing = new IllegalStateException("closing");
+        var first = new RuntimeException("first");
+        var second = new RuntimeException("second", first);
+        first.initCause(second);
+        first.addSuppressed(closing);
+
+        var written = error(mapper, first);
+        assertEquals("closing", written.get("suppressed").get(0).get("message").asText());
+        assertEquals("second", written.get("cause").get("message").asText());
+        assertFalse(written.get("cause").has("cause"), "the cycle back to first is not followed");
+    }
+
+    @Test
+    public void referencedTracesAreWrittenInFullOncePerSerializer() throws IOException {
+        var options = LogSerializer.Options.DEFAULT.withThrowableFormat(LogSerializer.ThrowableFormat.REFERENCED);
+        var oneSink = mapper(options);
+        var otherSink = mapper(options);
+        var errors = new Exception[3];
+        for (int i = 0; i < 3; i++) {
+            errors[i] = failure("attempt " + i);
+        }
+
+        assertTrue(error(oneSink, errors[0]).has("frames"));
+        var reference = error(oneSink, errors[1]);
+        assertFalse(reference.has("frames"));
+        assertEquals("attempt 1", reference.get("message").asText());
+        assertTrue(error(otherSink, errors[2]).has("frames"), "another sink still gets the full trace");
+    }
+
+    @Test
+    public void clearingReferencesWritesTracesInFullAgain() throws IOException {
+        var references = new StackTraceReferences();
+        var mapper = mapper(LogSerializer.Options.DEFAULT
+                .withThrowableFormat(LogSerializer.ThrowableFormat.REFERENCED)
+                .withStackTraceReferences(references));
+        var errors = new Exception[2];
+        for (int i = 0; i < 2; i++) {
+            errors[i] = failure("attempt " + i);
+        }
+
+        assertTrue(error(mapper, errors[0]).has("frames"));
+        references.clear();
+        assertTrue(error(mapper, errors[1]).has("frames"));
+    }
+
+    @Test
+    public void aFullRenderCacheDropsTheLeastRecentlyUsedTrace() {
+        var encoder = new ThrowableEncoder(256, true, 2, null);
+        var a = new RuntimeException("a");
+        var b = new IllegalStateException("b");
+        var c = new IllegalArgumentException("c");
+
+        var renderedA = encoder.render(a);
+        var renderedB = encoder.render(b);
+        assertSame(renderedA, encoder.render(a));
+        encoder.render(c);
+
+        assertSame(renderedA, encoder.render(a));
+        assertFalse(renderedB == encoder.render(b), "b was the least recently used");
+    }
+}
@@ -0,0 +1,34 @@
+package dev.mccue.log.alpha.publisher;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A publisher which does not wait for a batch to be published before returning.
+ *
+ * <p>Use {@link PipelinedPublisher} to drive one from the usual publishing loop, with several
+ * batches in flight at once.</p>
+ */
+@FunctionalInterface
+public interface AsyncPublisher {
+    /**
+     * Starts publishing a batch of logs.
+     *
+     * <p>The future completes with the acknowledged offset. Every log in the batch with an offset
+     * at or below it has been published. Completing with an offset below the batch's last offset,
+     * or completing exceptionally, means the rest of the batch should be sent again.</p>
+     *
+     * @param batch The logs to publish, oldest offset first. Never empty.
+     * @return The acknowledged offset.
+     */
+    CompletableFuture<Long> publish(List<LogBuffer.OffsetLogPair> batch);
+
+    /**
+     * @return How many logs the publisher would like in its next batch, such as to keep requests
+     *         near a target size, or 0 to leave it to {@link PipelinedPublisher.Options#batchSize()}.
+     *         Never more than that is used.
+     */
+    default int preferredBatchSize() {
+        return 0;
+    }
+}
@@ -0,0 +1,29 @@
+package dev.mccue.log.alpha.publisher;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Recorded when a publisher's loop drains its mailbox into its {@link LogBuffer}.
+ */
+@Name("dev.mccue.log.alpha.BatchDrained")
+@Label("Batch Drained")
+@Category({"log.alpha", "Publishing"})
+@Description("Logs were taken from a publisher's mailbox")
+@Enabled(false)
+@StackTrace(false)
+final class BatchDrainedEvent extends jdk.jfr.Event {
+    @Label("Publisher")
+    String publisher;
+
+    @Label("Logs")
+    int logs;
+
+    @Label("Buffered")
+    @Description("How many logs are in the buffer after the drain")
+    int buffered;
+}
@@ -2,65 +2,343 @@ package dev.mccue.log.alpha.publisher;
 import dev.mccue.log.alpha.Log;
 import dev.mccue.log.alpha.LoggerFactory;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * A Logger which will fan out logs in batches to publishers.
+ *
+ * <p>Each publisher is registered with a {@link Route} and only receives the logs it routes. The
+ * routes are compiled into a {@link RoutingTable} whenever the set of publishers changes, so
+ * logging a log evaluates every route at once and only touches the mailboxes which want it.</p>
+ *
+ * <p>Every publisher's mailbox is drained into its {@link LogBuffer} and published once per
+ * publish delay. The loops for all publishers share one timer thread and a pool of workers,
+ * rather than having a thread each. {@link #shutdown(Duration)} stops all of them.</p>
+ *
+ * <p>Logs left in a mailbox are not thrown away when its publisher is deregistered or shut down.
+ * They are flushed, with every publisher flushing at once, until a deadline, and whatever could
+ * not be published by then is reported. {@link #installShutdownHook(Duration)} does this when the
+ * JVM exits.</p>
+ *
+ * <p>Each publisher gets {@link PublisherMetrics}, which can be read with {@link #metrics()} and
+ * are registered as MXBeans named {@code dev.mccue.log.alpha:type=Publisher,id=n}.</p>
+ *
+ * <p>The pipeline also records JFR events under the {@code dev.mccue.log.alpha} prefix, for logs
+ * enqueued, batches drained, publishes and mailbox overflows. They are disabled by default and can
+ * be enabled in a recording's settings.</p>
  */
 public final class GlobalFanOutLogger {
+    /**
+     * How long logs left in the mailbox of a deregistered publisher are given to be published.
+     */
+    public static final Duration DEREGISTER_FLUSH_TIMEOUT = Duration.ofSeconds(10);
+
     private static final List<PublisherWiring> WIRINGS = new ArrayList<>();
 
+    /*
+     * An immutable view of WIRINGS and their compiled routes, replaced whenever
+     * WIRINGS changes, so that logging doesn't have to take the lock.
+     */
+    private static final AtomicReference<Routing> ROUTING =
+            new AtomicReference<>(Routing.compile(List.of()));
+
+    // Guarded by WIRINGS. Made when the first publisher is registered after a shutdown.
+    private static PublisherScheduler scheduler = null;
+    private static long nextId = 0;
+    private static Thread shutdownHook = null;
+
     private GlobalFanOutLogger() {
     }
 
     public static void registerPublisher(Publisher publisher, BlockingQueue<Log> mailbox, Duration publishDelay) {
-        var wakeupThread = new Thread(() -> {
-            while (true) {
-                try {
-                    Thread.sleep(publishDelay.toMillis());
-                } catch (InterruptedException e) {
-                    break;
-                }
-            }
-        });
-        wakeupThread.setDaemon(true);
-        wakeupThread.start();
+        registerPublisher(publisher, mailbox, publishDelay, Route.ALL);
+    }
+
+    /**
+     * Registers a publisher which will only receive the logs matching its route.
+     *
+     * @throws IllegalStateException If there are already {@link RoutingTable#MAX_ROUTES} publishers.
+     */
+    public static void registerPublisher(Publisher publisher, BlockingQueue<Log> mailbox, Duration publishDelay, Route route) {
+        Objects.requireNonNull(publisher, "publisher must not be null");
+        Objects.requireNonNull(mailbox, "mailbox must not be null");
+        Objects.requireNonNull(publishDelay, "publishDelay must not be null");
+        Objects.requireNonNull(route, "route must not be null");
+        var loop = new PublisherLoop(publisher, mailbox);
         synchronized (WIRINGS) {
+            if (WIRINGS.size() >= RoutingTable.MAX_ROUTES) {
+                throw new IllegalStateException("At most " + RoutingTable.MAX_ROUTES + " publishers can be registered");
+            }
+            if (scheduler == null) {
+                scheduler = new PublisherScheduler();
+            }
+            loop.start(scheduler, publishDelay);
             WIRINGS.add(new PublisherWiring(
-                    wakeupThread,
+                    loop,
                     mailbox,
-                    publisher
+                    publisher,
+                    route,
+                    registerMBean(loop.metrics())
             ));
+            ROUTING.set(Routing.compile(WIRINGS));
         }
     }
 
+    /**
+     * Deregisters the publisher. Logs left in its mailbox are published in the background for up
+     * to {@link #DEREGISTER_FLUSH_TIMEOUT}.
+     */
     public static void deregisterPublisher(Publisher publisher) {
         synchronized (WIRINGS) {
-            WIRINGS.removeIf(wiring -> Objects.equals(wiring.publisher, publisher));
+            var removed = new ArrayList<PublisherWiring>();
+            WIRINGS.removeIf(wiring -> {
+                if (Objects.equals(wiring.publisher, publisher)) {
+                    removed.add(wiring);
+                    return true;
+                }
+                return false;
+            });
+            ROUTING.set(Routing.compile(WIRINGS));
+            retire(removed);
         }
     }
 
+    /**
+     * Deregisters every publisher. Logs left in their mailboxes are published in the background
+     * for up to {@link #DEREGISTER_FLUSH_TIMEOUT}.
+     */
     public static void deregisterAllPublishers() {
         synchronized (WIRINGS) {
-            for (var wiring : WIRINGS) {
-                wiring.wakeupThread.interrupt();
+            var removed = List.copyOf(WIRINGS);
+            WIRINGS.clear();
+            ROUTING.set(Routing.compile(WIRINGS));
+            retire(removed);
+        }
+    }
+
+    // Guarded by WIRINGS
+    private static void retire(List<PublisherWiring> wirings) {
+        long deadline = System.nanoTime() + DEREGISTER_FLUSH_TIMEOUT.toNanos();
+        for (var wiring : wirings) {
+            wiring.loop.stop();
+            unregisterMBean(wiring.mbeanName);
+            scheduler.submit(() -> reportLoss(wiring.loop.flush(deadline)));
+        }
+    }
+
+    /**
+     * What happened to the logs of one publisher when it was flushed.
+     *
+     * @param publisher The publisher.
+     * @param published How many logs were published by the flush. Only counted if the flush
+     *                  finished before the deadline.
+     * @param unpublished How many logs were still in the mailbox or buffer at the end.
+     * @param completed Whether the flush finished before the deadline.
+     */
+    public record FlushReport(Publisher publisher, long published, long unpublished, boolean completed) {
+        /**
+         * @return Whether every log was published.
+         */
+        public boolean flushed() {
+            return completed && unpublished == 0;
+        }
+    }
+
+    /**
+     * Publishes everything waiting in the mailboxes of every publisher, flushing all of them at
+     * once, until they are empty or the timeout passes.
+     *
+     * <p>The publishers stay registered, so logs which arrive while flushing may be flushed too.</p>
+     */
+    public static List<FlushReport> flush(Duration timeout) throws InterruptedException {
+        Objects.requireNonNull(timeout, "timeout must not be null");
+        long deadline = System.nanoTime() + timeout.toNanos();
+        List<PublisherWiring> wirings;
+        PublisherScheduler flushing;
+        synchronized (WIRINGS) {
+            wirings = List.copyOf(WIRINGS);
+            flushing = scheduler;
+        }
+        return flushing == null ? List.of() : flushAll(flushing, wirings, deadline);
+    }
+
+    private static List<FlushReport> flushAll(
+            PublisherScheduler scheduler,
+            List<PublisherWiring> wirings,
+            long deadline
+    ) throws InterruptedException {
+        var flushes = new ArrayList<Future<FlushReport>>(wirings.size());
+        for (var wiring : wirings) {
+            flushes.add(scheduler.submit(() -> wiring.loop.flush(deadline)));
+        }
+
+        var reports = new ArrayList<FlushReport>(wirings.size());
+        for (int i = 0; i < wirings.size(); i++) {
+            var wiring = wirings.get(i);
+            try {
+                reports.add(flushes.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                reports.add(new FlushReport(wiring.publisher, 0, wiring.loop.unpublished(), false));
+            } catch (ExecutionException e) {
+                System.err.printf("Failed to flush logs to %s: %s%n", wiring.publisher, e.getCause());
+                reports.add(new FlushReport(wiring.publisher, 0, wiring.loop.unpublished(), false));
             }
+        }
+        return reports;
+    }
+
+    private static FlushReport reportLoss(FlushReport report) {
+        if (!report.flushed()) {
+            System.err.printf(
+                    "%s %d logs not published to %s%n",
+                    report.completed() ? "Flushed, but" : "Ran out of time flushing,",
+                    report.unpublished(),
+                    report.publisher()
+            );
+        }
+        return report;
+    }
+
+    /**
+     * Deregisters every publisher, flushes what is left in their mailboxes, and stops the threads
+     * their loops ran on.
+     *
+     * <p>Every publisher is flushed at once, in batches as large as its buffer, until the timeout.
+     * Logs which could not be published in time are reported to {@link System#err}.</p>
+     *
+     * <p>Publishers can be registered again afterwards, which starts new threads.</p>
+     *
+     * @return Whether every log was published and every drain finished in time.
+     */
+    public static boolean shutdown(Duration timeout) throws InterruptedException {
+        Objects.requireNonNull(timeout, "timeout must not be null");
+        long deadline = System.nanoTime() + timeout.toNanos();
+        List<PublisherWiring> wirings;
+        PublisherScheduler stopping;
+        synchronized (WIRINGS) {
+            wirings = List.copyOf(WIRINGS);
             WIRINGS.clear();
+            ROUTING.set(Routing.compile(WIRINGS));
+            for (var wiring : wirings) {
+                wiring.loop.stop();
+                unregisterMBean(wiring.mbeanName);
+            }
+            stopping = scheduler;
+            scheduler = null;
         }
+        if (stopping == null) {
+            return true;
+        }
+
+        boolean flushed = true;
+        for (var report : flushAll(stopping, wirings, deadline)) {
+            flushed &= reportLoss(report).flushed();
+        }
+        return stopping.shutdown(Duration.ofNanos(Math.max(0, deadline - System.nanoTime()))) && flushed;
     }
 
-    public static void log(Log log) {
+    /**
+     * Calls {@link #shutdown(Duration)} when the JVM shuts down, replacing a hook installed
+     * before.
+     *
+     * <p>The timeout should fit in the time the JVM is given to exit, such as the grace period
+     * between a container's SIGTERM and SIGKILL.</p>
+     */
+    public static void installShutdownHook(Duration timeout) {
+        Objects.requireNonNull(timeout, "timeout must not be null");
         synchronized (WIRINGS) {
-            for (var wiring : WIRINGS) {
-                synchronized (wiring.mailbox) {
-                    wiring.mailbox.add(log);
+            if (shutdownHook != null) {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            }
+            shutdownHook = new Thread(() -> {
+                try {
+                    shutdown(timeout);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "log.alpha-shutdown");
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+        }
+    }
+
+    public static void log(Log log) {
+        var routing = ROUTING.get();
+        long mask = routing.table.route(log);
+        var enqueuedEvent = new LogEnqueuedEvent();
+        if (enqueuedEvent.isEnabled()) {
+            enqueuedEvent.namespace = log.category().namespace();
+            enqueuedEvent.name = log.category().name();
+            enqueuedEvent.level = log.level().name();
+            enqueuedEvent.mailboxes = Long.bitCount(mask);
+            enqueuedEvent.commit();
+        }
+        while (mask != 0) {
+            var wiring = routing.wirings[Long.numberOfTrailingZeros(mask)];
+            boolean offered;
+            int depth;
+            synchronized (wiring.mailbox) {
+                offered = wiring.mailbox.offer(log);
+                depth = wiring.mailbox.size();
+            }
+            var metrics = wiring.loop.metrics();
+            if (offered) {
+                metrics.enqueued(depth);
+            } else {
+                metrics.drop(PublisherMetrics.DropReason.MAILBOX_FULL);
+                var overflowEvent = new MailboxOverflowEvent();
+                if (overflowEvent.isEnabled()) {
+                    overflowEvent.publisher = wiring.publisher.toString();
+                    overflowEvent.namespace = log.category().namespace();
+                    overflowEvent.name = log.category().name();
+                    overflowEvent.level = log.level().name();
+                    overflowEvent.commit();
                 }
             }
+            mask &= mask - 1;
+        }
+    }
+
+    /**
+     * @return The metrics of every registered publisher.
+     */
+    public static List<PublisherMetrics> metrics() {
+        synchronized (WIRINGS) {
+            return WIRINGS.stream().map(wiring -> wiring.loop.metrics()).toList();
+        }
+    }
+
+    // Guarded by WIRINGS
+    private static ObjectName registerMBean(PublisherMetrics metrics) {
+        try {
+            var name = new ObjectName("dev.mccue.log.alpha:type=Publisher,id=" + nextId++);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, name);
+            return name;
+        } catch (JMException | RuntimeException e) {
+            System.err.printf("Failed to register metrics MBean for %s: %s%n", metrics.publisher(), e);
+            return null;
+        }
+    }
+
+    private static void unregisterMBean(ObjectName name) {
+        if (name == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException | RuntimeException e) {
+            System.err.printf("Failed to unregister metrics MBean %s: %s%n", name, e);
         }
     }
 
@@ -69,11 +347,22 @@ public final class GlobalFanOutLogger {
     }
 
     private record PublisherWiring(
-            Thread wakeupThread,
+            PublisherLoop loop,
             BlockingQueue<Log> mailbox,
-            Publisher publisher
+            Publisher publisher,
+            Route route,
+            ObjectName mbeanName
     ) {}
 
+    private record Routing(PublisherWiring[] wirings, RoutingTable table) {
+        static Routing compile(List<PublisherWiring> wirings) {
+            return new Routing(
+                    wirings.toArray(PublisherWiring[]::new),
+                    RoutingTable.compile(wirings.stream().map(PublisherWiring::route).toList())
+            );
+        }
+    }
+
     @Override
     public String toString() {
         synchronized (WIRINGS) {
@@ -11,6 +11,9 @@ public interface LogBuffer {
     LogBuffer dequeue(long offset);
     LogBuffer clear();
 
+    /**
+     * @return The logs in the buffer, oldest offset first.
+     */
     List<OffsetLogPair> items();
 
     record OffsetLogPair(long offset, Log log) {}
@@ -3,6 +3,7 @@ package dev.mccue.log.alpha.publisher;
 import dev.mccue.log.alpha.Log;
 import io.vavr.collection.Vector;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Predicate;
 
@@ -27,7 +28,7 @@ final class LogBufferImpl implements LogBuffer {
     }
 
     OffsetLogPair peek() {
-        return buffer.get((int) (start % buffer.length()));
+        return length == 0 ? null : buffer.get((int) start);
     }
 
     LogBufferImpl pop() {
@@ -37,7 +38,7 @@ final class LogBufferImpl implements LogBuffer {
         else {
             return new LogBufferImpl(
                     counter,
-                    start + 1 % buffer.length(),
+                    (start + 1) % buffer.length(),
                     length - 1,
                     buffer.update((int) start, (OffsetLogPair) null)
             );
@@ -47,9 +48,9 @@ final class LogBufferImpl implements LogBuffer {
     LogBufferImpl popWhile(Predicate<OffsetLogPair> predicate) {
         LogBufferImpl self = this;
         while (true) {
-            var peeked = peek();
+            var peeked = self.peek();
             if (peeked != null && predicate.test(peeked)) {
-                self = pop();
+                self = self.pop();
             }
             else {
                 break;
@@ -60,7 +61,7 @@ final class LogBufferImpl implements LogBuffer {
 
     @Override
     public int size() {
-        return 0;
+        return (int) length;
     }
 
     @Override
@@ -108,7 +109,11 @@ final class LogBufferImpl implements LogBuffer {
 
     @Override
     public List<OffsetLogPair> items() {
-        return buffer.asJava();
+        var items = new ArrayList<OffsetLogPair>((int) length);
+        for (long i = 0; i < length; i++) {
+            items.add(buffer.get((int) ((start + i) % buffer.length())));
+        }
+        return items;
     }
 
     @Override
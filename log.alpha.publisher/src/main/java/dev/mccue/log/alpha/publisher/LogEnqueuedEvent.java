@@ -0,0 +1,33 @@
+package dev.mccue.log.alpha.publisher;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Recorded when {@link GlobalFanOutLogger} puts a log into the mailboxes of the publishers it
+ * routes to.
+ */
+@Name("dev.mccue.log.alpha.LogEnqueued")
+@Label("Log Enqueued")
+@Category({"log.alpha", "Publishing"})
+@Description("A log was put into publisher mailboxes")
+@Enabled(false)
+@StackTrace(false)
+final class LogEnqueuedEvent extends jdk.jfr.Event {
+    @Label("Namespace")
+    String namespace;
+
+    @Label("Name")
+    String name;
+
+    @Label("Level")
+    String level;
+
+    @Label("Mailboxes")
+    @Description("How many mailboxes the log was put into")
+    int mailboxes;
+}
@@ -0,0 +1,152 @@
+package dev.mccue.log.alpha.publisher;
+
+import java.util.Arrays;
+
+/**
+ * A histogram of non-negative longs with log-linear buckets, in the style of HdrHistogram.
+ *
+ * <p>Values below 2^significantBits each get their own bucket. Above that every power of two is
+ * split into 2^(significantBits - 1) equally sized buckets, so any recorded value is known to within
+ * a relative error of 2^-(significantBits - 1) regardless of its magnitude. With the default of
+ * 8 bits that is better than 1%, using 7424 buckets to cover the whole range of a long.</p>
+ *
+ * <p>Not thread safe.</p>
+ */
+public final class LogLinearHistogram {
+    private final int significantBits;
+    private final long[] counts;
+    private long totalCount;
+    private long min;
+    private long max;
+    private long sum;
+
+    public LogLinearHistogram(int significantBits) {
+        if (significantBits < 2 || significantBits > 16) {
+            throw new IllegalArgumentException("significantBits must be between 2 and 16");
+        }
+        this.significantBits = significantBits;
+        int half = 1 << (significantBits - 1);
+        this.counts = new long[(1 << significantBits) + (64 - significantBits) * half];
+        reset();
+    }
+
+    public LogLinearHistogram() {
+        this(8);
+    }
+
+    /**
+     * Records a value. Negative values are recorded as zero.
+     */
+    public void record(long value) {
+        value = Math.max(value, 0);
+        counts[indexOf(value)]++;
+        totalCount++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        sum += value;
+    }
+
+    private int indexOf(long value) {
+        if (value < (1L << significantBits)) {
+            return (int) value;
+        }
+        int half = 1 << (significantBits - 1);
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - (significantBits - 1);
+        int sub = (int) (value >>> shift);
+        return (1 << significantBits) + (shift - 1) * half + (sub - half);
+    }
+
+    private long lowestValueAt(int index) {
+        if (index < (1 << significantBits)) {
+            return index;
+        }
+        int half = 1 << (significantBits - 1);
+        int offset = index - (1 << significantBits);
+        int shift = offset / half + 1;
+        long sub = offset % half + half;
+        return sub << shift;
+    }
+
+    private long highestValueAt(int index) {
+        if (index < (1 << significantBits)) {
+            return index;
+        }
+        int half = 1 << (significantBits - 1);
+        int shift = (index - (1 << significantBits)) / half + 1;
+        return lowestValueAt(index) + (1L << shift) - 1;
+    }
+
+    /**
+     * @param percentile A percentile between 0 and 100.
+     * @return A value such that at least that percentage of recorded values are less than or
+     * equivalent to it, or 0 if nothing has been recorded.
+     */
+    public long valueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        double clamped = Math.min(Math.max(percentile, 0), 100);
+        long target = Math.max(1, (long) Math.ceil(clamped / 100 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(highestValueAt(i), max);
+            }
+        }
+        return max;
+    }
+
+    public long totalCount() {
+        return totalCount;
+    }
+
+    public long min() {
+        return totalCount == 0 ? 0 : min;
+    }
+
+    public long max() {
+        return totalCount == 0 ? 0 : max;
+    }
+
+    public double mean() {
+        return totalCount == 0 ? 0 : (double) sum / totalCount;
+    }
+
+    /**
+     * Adds every value recorded in the other histogram to this one.
+     */
+    public void add(LogLinearHistogram other) {
+        if (other.significantBits != this.significantBits) {
+            throw new IllegalArgumentException("Histograms must have the same number of significant bits");
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        if (other.totalCount > 0) {
+            totalCount += other.totalCount;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+            sum += other.sum;
+        }
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+        sum = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "LogLinearHistogram[" +
+                "count=" + totalCount +
+                ", min=" + min() +
+                ", p50=" + valueAtPercentile(50) +
+                ", p99=" + valueAtPercentile(99) +
+                ", max=" + max() +
+                ']';
+    }
+}
@@ -0,0 +1,31 @@
+package dev.mccue.log.alpha.publisher;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Recorded when a log is dropped because a publisher's mailbox is full.
+ */
+@Name("dev.mccue.log.alpha.MailboxOverflow")
+@Label("Mailbox Overflow")
+@Category({"log.alpha", "Publishing"})
+@Description("A log was dropped because a publisher's mailbox was full")
+@Enabled(false)
+@StackTrace(false)
+final class MailboxOverflowEvent extends jdk.jfr.Event {
+    @Label("Publisher")
+    String publisher;
+
+    @Label("Namespace")
+    String namespace;
+
+    @Label("Name")
+    String name;
+
+    @Label("Level")
+    String level;
+}
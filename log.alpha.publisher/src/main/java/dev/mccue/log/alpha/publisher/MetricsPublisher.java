@@ -0,0 +1,259 @@
+package dev.mccue.log.alpha.publisher;
+
+import dev.mccue.log.alpha.Log;
+import dev.mccue.log.alpha.Logger;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * A publisher which turns logs into metrics instead of forwarding them.
+ *
+ * <p>Logs are aggregated per {@link Log.Category} into a count per level and a
+ * {@link LogLinearHistogram} of latencies. The latency of a log is how long its
+ * {@link Log.Occurrence.SpanOfTime} lasted, or otherwise the numeric value of the configured
+ * entry key. Once per interval one summary log per category is handed to the downstream logger,
+ * in place of every raw event.</p>
+ *
+ * <p>The interval is checked on every publish and every {@link #tick()}, so when registered with
+ * {@link GlobalFanOutLogger} summaries come out within a publish delay of the interval ending,
+ * even if nothing else is logged. Used on its own, call {@link #tick()} or {@link #flush()}
+ * periodically.</p>
+ *
+ * <p>Summaries are logged at {@link Log.Level#INFO} under the category they summarize with these
+ * entries.</p>
+ * <ul>
+ *     <li>{@code log.alpha.metrics/summary}: always true. Logs with this entry are never aggregated,
+ *     so summaries which find their way back to this publisher, such as through
+ *     {@link GlobalFanOutLogger}, are not counted as logs of their category.</li>
+ *     <li>{@code log.alpha.metrics/count}: the number of logs.</li>
+ *     <li>{@code log.alpha.metrics/levels}: the number of logs at each level.</li>
+ *     <li>{@code log.alpha.metrics/interval}: the time since the previous summary.</li>
+ *     <li>{@code log.alpha.metrics/min}, {@code p50}, {@code p90}, {@code p99}, {@code p999},
+ *     {@code max} and {@code mean}: the latency distribution, if any log had a latency. These are
+ *     durations when they came from spans and plain numbers otherwise.</li>
+ * </ul>
+ */
+public final class MetricsPublisher implements Publisher {
+    private static final String PREFIX = "log.alpha.metrics/";
+    private static final String SUMMARY_KEY = PREFIX + "summary";
+
+    private final Logger downstream;
+    private final Options options;
+    private final Map<Log.Category, Aggregate> aggregates;
+    private long intervalStartedAt;
+
+    public MetricsPublisher(Logger downstream, Options options) {
+        this.downstream = Objects.requireNonNull(downstream, "downstream must not be null");
+        this.options = Objects.requireNonNull(options, "options must not be null");
+        this.aggregates = new HashMap<>();
+        this.intervalStartedAt = System.nanoTime();
+    }
+
+    public MetricsPublisher(Logger downstream) {
+        this(downstream, Options.DEFAULT);
+    }
+
+    @Override
+    public synchronized LogBuffer publish(LogBuffer logs) {
+        for (var item : logs.items()) {
+            if (item != null) {
+                aggregate(item.log());
+            }
+        }
+        tick();
+        return logs.clear();
+    }
+
+    /**
+     * Flushes if the interval has passed.
+     */
+    @Override
+    public synchronized void tick() {
+        if (System.nanoTime() - intervalStartedAt >= options.interval.toNanos()) {
+            flush();
+        }
+    }
+
+    private void aggregate(Log log) {
+        for (var entry : log.entries()) {
+            if (SUMMARY_KEY.equals(entry.key())) {
+                return;
+            }
+        }
+
+        var aggregate = aggregates.computeIfAbsent(
+                log.category(),
+                __ -> new Aggregate(options.significantBits)
+        );
+        aggregate.levelCounts[log.level().ordinal()]++;
+
+        if (log.occurrence() instanceof Log.Occurrence.SpanOfTime spanOfTime) {
+            aggregate.latencies().record(spanOfTime.lasted().toNanos());
+            aggregate.durations = true;
+        } else if (options.latencyKey != null) {
+            for (var entry : log) {
+                if (options.latencyKey.equals(entry.key())) {
+                    recordValue(aggregate, entry.value());
+                    break;
+                }
+            }
+        }
+    }
+
+    private static void recordValue(Aggregate aggregate, Log.Entry.Value value) {
+        switch (value) {
+            case Log.Entry.Value.Byte b -> aggregate.latencies().record(b.value());
+            case Log.Entry.Value.Short s -> aggregate.latencies().record(s.value());
+            case Log.Entry.Value.Integer i -> aggregate.latencies().record(i.value());
+            case Log.Entry.Value.Long l -> aggregate.latencies().record(l.value());
+            case Log.Entry.Value.Float f -> aggregate.latencies().record(Math.round(f.value()));
+            case Log.Entry.Value.Double d -> aggregate.latencies().record(Math.round(d.value()));
+            case Log.Entry.Value.Duration d -> {
+                aggregate.latencies().record(d.value().toNanos());
+                aggregate.durations = true;
+            }
+            case Log.Entry.Value.Lazy lazy -> recordValue(aggregate, lazy.value());
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * Logs a summary for every category seen since the last flush and starts a new interval.
+     */
+    public synchronized void flush() {
+        var now = System.nanoTime();
+        var interval = Duration.ofNanos(now - intervalStartedAt);
+        intervalStartedAt = now;
+
+        for (var category : List.copyOf(aggregates.keySet())) {
+            var aggregate = aggregates.get(category);
+            if (aggregate.isEmpty()) {
+                // Nothing happened for a whole interval, so stop tracking the category.
+                aggregates.remove(category);
+                continue;
+            }
+            downstream.log(Log.Level.INFO, category, summarize(aggregate, interval));
+            aggregate.reset();
+        }
+    }
+
+    private static List<Log.Entry> summarize(Aggregate aggregate, Duration interval) {
+        var entries = new ArrayList<Log.Entry>();
+        entries.add(Log.Entry.of(SUMMARY_KEY, true));
+        long count = 0;
+        var levels = new LinkedHashMap<Log.Entry.Value, Log.Entry.Value>();
+        for (var level : Log.Level.values()) {
+            var levelCount = aggregate.levelCounts[level.ordinal()];
+            count += levelCount;
+            if (levelCount > 0) {
+                levels.put(
+                        new Log.Entry.Value.String(level.name().toLowerCase(Locale.ROOT)),
+                        new Log.Entry.Value.Long(levelCount)
+                );
+            }
+        }
+        entries.add(Log.Entry.of(PREFIX + "count", count));
+        entries.add(Log.Entry.of(PREFIX + "levels", levels));
+        entries.add(Log.Entry.of(PREFIX + "interval", interval));
+
+        var latencies = aggregate.latencies;
+        if (latencies != null && latencies.totalCount() > 0) {
+            entries.add(latency(aggregate, "min", latencies.min()));
+            entries.add(latency(aggregate, "p50", latencies.valueAtPercentile(50)));
+            entries.add(latency(aggregate, "p90", latencies.valueAtPercentile(90)));
+            entries.add(latency(aggregate, "p99", latencies.valueAtPercentile(99)));
+            entries.add(latency(aggregate, "p999", latencies.valueAtPercentile(99.9)));
+            entries.add(latency(aggregate, "max", latencies.max()));
+            entries.add(aggregate.durations
+                    ? Log.Entry.of(PREFIX + "mean", Duration.ofNanos(Math.round(latencies.mean())))
+                    : Log.Entry.of(PREFIX + "mean", latencies.mean()));
+        }
+        return entries;
+    }
+
+    private static Log.Entry latency(Aggregate aggregate, String name, long value) {
+        return aggregate.durations
+                ? Log.Entry.of(PREFIX + name, Duration.ofNanos(value))
+                : Log.Entry.of(PREFIX + name, value);
+    }
+
+    @Override
+    public String toString() {
+        return "MetricsPublisher[downstream=" + downstream + ", options=" + options + "]";
+    }
+
+    private static final class Aggregate {
+        final int significantBits;
+        final long[] levelCounts;
+        // Created on the first latency, since categories which never have one are common and a
+        // histogram is tens of kilobytes.
+        LogLinearHistogram latencies;
+        boolean durations;
+
+        Aggregate(int significantBits) {
+            this.significantBits = significantBits;
+            this.levelCounts = new long[Log.Level.values().length];
+            this.latencies = null;
+            this.durations = false;
+        }
+
+        LogLinearHistogram latencies() {
+            if (latencies == null) {
+                latencies = new LogLinearHistogram(significantBits);
+            }
+            return latencies;
+        }
+
+        boolean isEmpty() {
+            for (var count : levelCounts) {
+                if (count != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void reset() {
+            Arrays.fill(levelCounts, 0);
+            if (latencies != null) {
+                latencies.reset();
+            }
+            durations = false;
+        }
+    }
+
+    /**
+     * @param interval How often summaries are logged.
+     * @param latencyKey The entry key holding the latency of logs which are not spans, or null.
+     * @param significantBits The precision of the latency histograms.
+     *                        See {@link LogLinearHistogram#LogLinearHistogram(int)}.
+     */
+    public record Options(
+            Duration interval,
+            String latencyKey,
+            int significantBits
+    ) {
+        public static final Options DEFAULT = new Options(Duration.ofSeconds(60), null, 8);
+
+        public Options {
+            Objects.requireNonNull(interval, "interval must not be null");
+            if (significantBits < 2 || significantBits > 16) {
+                throw new IllegalArgumentException("significantBits must be between 2 and 16");
+            }
+        }
+
+        public Options withInterval(Duration interval) {
+            return new Options(interval, this.latencyKey, this.significantBits);
+        }
+
+        public Options withLatencyKey(String latencyKey) {
+            return new Options(this.interval, latencyKey, this.significantBits);
+        }
+
+        public Options withSignificantBits(int significantBits) {
+            return new Options(this.interval, this.latencyKey, significantBits);
+        }
+    }
+}
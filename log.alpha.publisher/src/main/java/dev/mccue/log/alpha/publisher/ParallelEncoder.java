@@ -0,0 +1,129 @@
+package dev.mccue.log.alpha.publisher;
+
+import dev.mccue.log.alpha.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Encodes a batch of logs to bytes, splitting large batches into chunks which are encoded in
+ * parallel on a {@link ForkJoinPool}.
+ *
+ * <p>The chunks are returned in the order of the logs they hold, so concatenating them gives the
+ * same bytes as encoding the logs one after the other. Batches smaller than
+ * {@link Options#parallelThreshold()} are encoded on the calling thread.</p>
+ */
+public final class ParallelEncoder {
+    private final Encoder encoder;
+    private final Options options;
+    private final ForkJoinPool pool;
+
+    public ParallelEncoder(Encoder encoder, Options options, ForkJoinPool pool) {
+        this.encoder = Objects.requireNonNull(encoder, "encoder must not be null");
+        this.options = Objects.requireNonNull(options, "options must not be null");
+        this.pool = Objects.requireNonNull(pool, "pool must not be null");
+    }
+
+    public ParallelEncoder(Encoder encoder, Options options) {
+        this(encoder, options, ForkJoinPool.commonPool());
+    }
+
+    public ParallelEncoder(Encoder encoder) {
+        this(encoder, Options.DEFAULT);
+    }
+
+    /**
+     * Encodes a single log. Must be safe to call from many threads at once.
+     */
+    @FunctionalInterface
+    public interface Encoder {
+        void encode(Log log, OutputStream out) throws IOException;
+    }
+
+    /**
+     * The encoded bytes of the logs from index {@code from}, inclusive, to {@code to}, exclusive.
+     */
+    public record Chunk(int from, int to, byte[] bytes) {}
+
+    /**
+     * @param logs The logs to encode.
+     * @return The encoded chunks, in the order of the logs.
+     */
+    public List<Chunk> encode(List<Log> logs) throws IOException {
+        int chunkCount = (logs.size() + options.chunkSize - 1) / options.chunkSize;
+        var chunks = new ArrayList<Chunk>(chunkCount);
+        if (logs.size() < options.parallelThreshold || chunkCount <= 1) {
+            for (int i = 0; i < chunkCount; i++) {
+                chunks.add(encodeChunk(logs, i));
+            }
+            return chunks;
+        }
+
+        var tasks = new ArrayList<ForkJoinTask<Chunk>>(chunkCount);
+        for (int i = 0; i < chunkCount; i++) {
+            int index = i;
+            tasks.add(pool.submit(() -> {
+                try {
+                    return encodeChunk(logs, index);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+        try {
+            for (var task : tasks) {
+                chunks.add(task.join());
+            }
+        } catch (UncheckedIOException e) {
+            for (var task : tasks) {
+                task.cancel(false);
+            }
+            throw e.getCause();
+        }
+        return chunks;
+    }
+
+    private Chunk encodeChunk(List<Log> logs, int index) throws IOException {
+        int from = index * options.chunkSize;
+        int to = Math.min(from + options.chunkSize, logs.size());
+        var out = new ByteArrayOutputStream();
+        for (int i = from; i < to; i++) {
+            encoder.encode(logs.get(i), out);
+        }
+        return new Chunk(from, to, out.toByteArray());
+    }
+
+    @Override
+    public String toString() {
+        return "ParallelEncoder[encoder=" + encoder + ", options=" + options + ", pool=" + pool + "]";
+    }
+
+    /**
+     * @param chunkSize The most logs to encode in one chunk.
+     * @param parallelThreshold The fewest logs in a batch for it to be encoded in parallel.
+     */
+    public record Options(int chunkSize, int parallelThreshold) {
+        public static final Options DEFAULT = new Options(512, 2048);
+
+        public Options {
+            if (chunkSize <= 0) {
+                throw new IllegalArgumentException("chunkSize must be positive");
+            }
+        }
+
+        public Options withChunkSize(int chunkSize) {
+            return new Options(chunkSize, this.parallelThreshold);
+        }
+
+        public Options withParallelThreshold(int parallelThreshold) {
+            return new Options(this.chunkSize, parallelThreshold);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package dev.mccue.log.alpha.publisher;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adapts an {@link AsyncPublisher} to a {@link Publisher}, keeping several batches in flight so
+ * that preparing the next batch overlaps with waiting on the previous ones.
+ *
+ * <p>Each publish sends the logs which have not been sent yet, in batches of at most
+ * {@link Options#batchSize()}, until {@link Options#maxInFlight()} batches are in flight. A
+ * delegate can ask for smaller batches with {@link AsyncPublisher#preferredBatchSize()}. Logs
+ * stay in the {@link LogBuffer} until they are acknowledged, and are only dequeued up to the
+ * highest offset below which every batch has been acknowledged, even if later batches finish
+ * first.</p>
+ *
+ * <p>When a batch fails, sending starts again from the first log it did not acknowledge, once
+ * {@link Options#retryDelay()} has passed. Batches already in flight behind it are forgotten, so
+ * their logs may be published twice. A batch which isn't acknowledged within
+ * {@link Options#batchTimeout()} has failed.</p>
+ */
+public final class PipelinedPublisher implements Publisher {
+    private final AsyncPublisher delegate;
+    private final Options options;
+
+    // Guarded by this
+    private final ArrayDeque<InFlight> inFlight;
+    private long acknowledged;
+    private long sent;
+    private long retryAt;
+
+    public PipelinedPublisher(AsyncPublisher delegate, Options options) {
+        this.delegate = Objects.requireNonNull(delegate, "delegate must not be null");
+        this.options = Objects.requireNonNull(options, "options must not be null");
+        this.inFlight = new ArrayDeque<>(options.maxInFlight);
+        this.acknowledged = 0;
+        this.sent = 0;
+        this.retryAt = System.nanoTime();
+    }
+
+    public PipelinedPublisher(AsyncPublisher delegate) {
+        this(delegate, Options.DEFAULT);
+    }
+
+    private record InFlight(long firstOffset, long lastOffset, CompletableFuture<Long> ack) {}
+
+    @Override
+    public synchronized LogBuffer publish(LogBuffer logs) {
+        collectAcknowledgements();
+        logs = logs.dequeue(acknowledged);
+
+        var items = logs.items();
+        if (!items.isEmpty() && items.get(items.size() - 1).offset() < sent) {
+            // Offsets went backwards, so this is a different buffer than before.
+            inFlight.clear();
+            acknowledged = 0;
+            sent = 0;
+        }
+
+        if (System.nanoTime() - retryAt < 0) {
+            return logs;
+        }
+
+        int preferred = delegate.preferredBatchSize();
+        int batchSize = preferred > 0 ? Math.min(preferred, options.batchSize) : options.batchSize;
+        var batch = new ArrayList<LogBuffer.OffsetLogPair>(batchSize);
+        for (var item : items) {
+            if (inFlight.size() >= options.maxInFlight) {
+                break;
+            }
+            if (item == null || item.offset() <= sent) {
+                continue;
+            }
+            batch.add(item);
+            if (batch.size() == batchSize) {
+                send(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty() && inFlight.size() < options.maxInFlight) {
+            send(batch);
+        }
+        return logs;
+    }
+
+    private void send(ArrayList<LogBuffer.OffsetLogPair> batch) {
+        var first = batch.get(0).offset();
+        var last = batch.get(batch.size() - 1).offset();
+        CompletableFuture<Long> ack;
+        try {
+            ack = Objects.requireNonNull(delegate.publish(batch), "publish must not return null");
+        } catch (RuntimeException e) {
+            ack = CompletableFuture.failedFuture(e);
+        }
+        // Time out a copy, so the delegate's own future is left alone.
+        ack = ack.copy().orTimeout(options.batchTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        inFlight.add(new InFlight(first, last, ack));
+        sent = last;
+    }
+
+    /**
+     * Advances the acknowledged offset past every batch at the head of the pipeline which has
+     * finished.
+     */
+    private void collectAcknowledgements() {
+        while (!inFlight.isEmpty() && inFlight.peek().ack.isDone()) {
+            var head = inFlight.poll();
+            long ack;
+            try {
+                ack = head.ack.join();
+            } catch (RuntimeException e) {
+                ack = head.firstOffset - 1;
+            }
+            acknowledged = Math.max(acknowledged, Math.min(ack, head.lastOffset));
+            if (ack < head.lastOffset) {
+                inFlight.clear();
+                sent = acknowledged;
+                retryAt = System.nanoTime() + options.retryDelay.toNanos();
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return The highest offset below which every log has been acknowledged.
+     */
+    public synchronized long acknowledgedOffset() {
+        return acknowledged;
+    }
+
+    /**
+     * @return How many batches are in flight.
+     */
+    public synchronized int inFlight() {
+        return inFlight.size();
+    }
+
+    @Override
+    public String toString() {
+        return "PipelinedPublisher[delegate=" + delegate + ", options=" + options + "]";
+    }
+
+    /**
+     * @param maxInFlight The most batches which can be in flight at once.
+     * @param batchSize The most logs to put in a batch.
+     * @param batchTimeout How long a batch can go unacknowledged before it has failed.
+     * @param retryDelay How long to wait after a failed batch before sending again.
+     */
+    public record Options(int maxInFlight, int batchSize, Duration batchTimeout, Duration retryDelay) {
+        public static final Options DEFAULT = new Options(
+                4,
+                500,
+                Duration.ofSeconds(30),
+                Duration.ofSeconds(1)
+        );
+
+        public Options {
+            if (maxInFlight <= 0) {
+                throw new IllegalArgumentException("maxInFlight must be positive");
+            }
+            if (batchSize <= 0) {
+                throw new IllegalArgumentException("batchSize must be positive");
+            }
+            Objects.requireNonNull(batchTimeout, "batchTimeout must not be null");
+            Objects.requireNonNull(retryDelay, "retryDelay must not be null");
+        }
+
+        public Options withMaxInFlight(int maxInFlight) {
+            return new Options(
+                    maxInFlight,
+                    this.batchSize,
+                    this.batchTimeout,
+                    this.retryDelay
+            );
+        }
+
+        public Options withBatchSize(int batchSize) {
+            return new Options(
+                    this.maxInFlight,
+                    batchSize,
+                    this.batchTimeout,
+                    this.retryDelay
+            );
+        }
+
+        public Options withBatchTimeout(Duration batchTimeout) {
+            return new Options(
+                    this.maxInFlight,
+                    this.batchSize,
+                    batchTimeout,
+                    this.retryDelay
+            );
+        }
+
+        public Options withRetryDelay(Duration retryDelay) {
+            return new Options(
+                    this.maxInFlight,
+                    this.batchSize,
+                    this.batchTimeout,
+                    retryDelay
+            );
+        }
+    }
+}
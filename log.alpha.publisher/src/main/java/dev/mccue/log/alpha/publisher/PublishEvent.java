@@ -0,0 +1,35 @@
+package dev.mccue.log.alpha.publisher;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Recorded around each call to {@link Publisher#publish(LogBuffer)} made by a publisher's loop.
+ */
+@Name("dev.mccue.log.alpha.Publish")
+@Label("Publish")
+@Category({"log.alpha", "Publishing"})
+@Description("A publisher published a batch of logs")
+@Enabled(false)
+@StackTrace(false)
+final class PublishEvent extends jdk.jfr.Event {
+    @Label("Publisher")
+    String publisher;
+
+    @Label("Batch Size")
+    int batchSize;
+
+    @Label("Remaining")
+    @Description("How many logs were left unpublished")
+    int remaining;
+
+    @Label("Bytes")
+    @Description("The bytes serialized, if the publisher reports them")
+    @DataAmount
+    long bytes;
+}
@@ -7,4 +7,18 @@ public interface Publisher {
      * the state of the buffer after publishing.
      */
     LogBuffer publish(LogBuffer logs);
+
+    /**
+     * Called on every drain of the publisher's loop, whether or not there were logs to publish,
+     * so that a publisher can do work which is due on a timer while nothing is being logged.
+     */
+    default void tick() {
+    }
+
+    /**
+     * @return How many bytes the publisher has serialized so far, or 0 if it does not keep count.
+     */
+    default long bytesPublished() {
+        return 0;
+    }
 }
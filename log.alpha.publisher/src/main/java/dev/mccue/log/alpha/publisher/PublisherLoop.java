@@ -0,0 +1,192 @@
+package dev.mccue.log.alpha.publisher;
+
+import dev.mccue.log.alpha.Log;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Moves logs from a publisher's mailbox into its {@link LogBuffer} and hands the buffer to the
+ * publisher.
+ *
+ * <p>Drains never overlap. If the timer fires while the previous drain is still publishing, that
+ * tick is skipped.</p>
+ *
+ * <p>{@link #flush(long)} drains and publishes until the mailbox and buffer are empty or a
+ * deadline passes, for when the publisher is going away.</p>
+ */
+final class PublisherLoop implements Runnable {
+    static final int MAX_BUFFER_CAPACITY = 10_000;
+
+    // How long a flush waits before trying again a publisher which published nothing.
+    private static final long FLUSH_RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final Publisher publisher;
+    private final BlockingQueue<Log> mailbox;
+    private final AtomicBoolean draining;
+    private final ArrayList<Log> drained;
+    private final int bufferCapacity;
+    private final PublisherMetrics metrics;
+
+    private volatile ScheduledFuture<?> timer;
+
+    // How many logs are in the buffer, readable without taking draining.
+    private volatile int buffered;
+
+    // Guarded by draining
+    private LogBuffer buffer;
+
+    PublisherLoop(Publisher publisher, BlockingQueue<Log> mailbox) {
+        this.publisher = publisher;
+        this.mailbox = mailbox;
+        this.draining = new AtomicBoolean(false);
+        this.drained = new ArrayList<>();
+        this.bufferCapacity = (int) Math.max(
+                1,
+                Math.min(MAX_BUFFER_CAPACITY, (long) mailbox.size() + mailbox.remainingCapacity())
+        );
+        this.buffer = LogBuffer.create(bufferCapacity);
+        this.metrics = new PublisherMetrics(publisher, mailbox, bufferCapacity);
+    }
+
+    PublisherMetrics metrics() {
+        return metrics;
+    }
+
+    void start(PublisherScheduler scheduler, Duration publishDelay) {
+        this.timer = scheduler.schedule(this, publishDelay);
+    }
+
+    void stop() {
+        var timer = this.timer;
+        if (timer != null) {
+            timer.cancel(false);
+        }
+    }
+
+    @Override
+    public void run() {
+        if (!draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            drain();
+        } catch (RuntimeException e) {
+            metrics.publishFailed();
+            System.err.printf("Failed to publish logs to %s: %s%n", publisher, e);
+        } finally {
+            draining.set(false);
+        }
+    }
+
+    private void drain() {
+        synchronized (mailbox) {
+            mailbox.drainTo(drained);
+        }
+        for (var log : drained) {
+            if (buffer.size() == bufferCapacity) {
+                metrics.drop(PublisherMetrics.DropReason.BUFFER_FULL);
+            }
+            buffer = buffer.enqueue(log);
+        }
+        var drainedEvent = new BatchDrainedEvent();
+        if (!drained.isEmpty() && drainedEvent.isEnabled()) {
+            drainedEvent.publisher = publisher.toString();
+            drainedEvent.logs = drained.size();
+            drainedEvent.buffered = buffer.size();
+            drainedEvent.commit();
+        }
+        drained.clear();
+        buffered = buffer.size();
+        if (buffer.size() > 0) {
+            publishBuffer();
+        }
+        publisher.tick();
+    }
+
+    // Guarded by draining
+    private void publishBuffer() {
+        int batchSize = buffer.size();
+        var publishEvent = new PublishEvent();
+        long bytesBefore = publishEvent.isEnabled() ? publisher.bytesPublished() : 0;
+        publishEvent.begin();
+        long start = System.nanoTime();
+        buffer = publisher.publish(buffer);
+        buffered = buffer.size();
+        metrics.published(batchSize, System.nanoTime() - start, buffer.size());
+        publishEvent.end();
+        if (publishEvent.shouldCommit()) {
+            publishEvent.publisher = publisher.toString();
+            publishEvent.batchSize = batchSize;
+            publishEvent.remaining = buffer.size();
+            publishEvent.bytes = publisher.bytesPublished() - bytesBefore;
+            publishEvent.commit();
+        }
+    }
+
+    /**
+     * Publishes everything in the mailbox and the buffer, in batches as large as the buffer, until
+     * both are empty or the deadline passes.
+     *
+     * <p>Waits for a drain which is already running to finish. Logs are taken from the mailbox
+     * only as fast as the buffer empties, so none are lost to a full buffer. A publisher which
+     * publishes nothing is tried again until the deadline.</p>
+     *
+     * @param deadline The {@link System#nanoTime()} to give up at.
+     */
+    GlobalFanOutLogger.FlushReport flush(long deadline) {
+        while (!draining.compareAndSet(false, true)) {
+            if (System.nanoTime() - deadline >= 0) {
+                return new GlobalFanOutLogger.FlushReport(publisher, 0, unpublished(), false);
+            }
+            LockSupport.parkNanos(FLUSH_RETRY_NANOS / 10);
+        }
+        long published = 0;
+        try {
+            while (System.nanoTime() - deadline < 0) {
+                synchronized (mailbox) {
+                    mailbox.drainTo(drained, bufferCapacity - buffer.size());
+                }
+                for (var log : drained) {
+                    buffer = buffer.enqueue(log);
+                }
+                drained.clear();
+                buffered = buffer.size();
+                if (buffer.size() == 0) {
+                    return new GlobalFanOutLogger.FlushReport(publisher, published, 0, true);
+                }
+
+                int batchSize = buffer.size();
+                publishBuffer();
+                published += batchSize - buffer.size();
+                if (buffer.size() == batchSize) {
+                    LockSupport.parkNanos(Math.min(FLUSH_RETRY_NANOS, Math.max(0, deadline - System.nanoTime())));
+                }
+            }
+        } catch (RuntimeException e) {
+            metrics.publishFailed();
+            System.err.printf("Failed to flush logs to %s: %s%n", publisher, e);
+        } finally {
+            drained.clear();
+            draining.set(false);
+        }
+        return new GlobalFanOutLogger.FlushReport(publisher, published, unpublished(), false);
+    }
+
+    /**
+     * @return How many logs are waiting in the mailbox and the buffer.
+     */
+    long unpublished() {
+        return (long) mailbox.size() + buffered;
+    }
+
+    @Override
+    public String toString() {
+        return "PublisherLoop[publisher=" + publisher + "]";
+    }
+}
@@ -0,0 +1,309 @@
+package dev.mccue.log.alpha.publisher;
+
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics for one publisher registered with {@link GlobalFanOutLogger}, covering its mailbox, its
+ * {@link LogBuffer} and its calls to {@link Publisher#publish(LogBuffer)}.
+ *
+ * <p>Read them with {@link #snapshot()}, through {@link GlobalFanOutLogger#metrics()}, or over
+ * JMX. Logging a log bumps a counter and raises the mailbox's high-water mark if it is the
+ * deepest the mailbox has been. Everything else is recorded by the publisher's loop once per
+ * drain, and rates are brought up to date whenever they are read.</p>
+ */
+public final class PublisherMetrics implements PublisherMetricsMXBean {
+    private static final long RATE_WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    /**
+     * Why logs were lost.
+     */
+    public enum DropReason {
+        /**
+         * The mailbox was full when the log was logged.
+         */
+        MAILBOX_FULL,
+
+        /**
+         * The {@link LogBuffer} was full, so the oldest log in it was overwritten.
+         */
+        BUFFER_FULL
+    }
+
+    private final Publisher publisher;
+    private final BlockingQueue<?> mailbox;
+    private final int bufferCapacity;
+    private final LongAdder enqueued;
+    private final LongAdder[] dropped;
+    private final LongAdder publishFailures;
+    private final AtomicLong highWaterMark;
+
+    // Guarded by this
+    private final LogLinearHistogram batchSizes;
+    private final LogLinearHistogram publishLatencies;
+    private long batches;
+    private int bufferSize;
+    private long lastRateUpdate;
+    private long enqueuedAtLastRateUpdate;
+    private long bytesAtLastRateUpdate;
+    private double enqueueRate;
+    private double bytesPerSecond;
+
+    PublisherMetrics(Publisher publisher, BlockingQueue<?> mailbox, int bufferCapacity) {
+        this.publisher = Objects.requireNonNull(publisher, "publisher must not be null");
+        this.mailbox = Objects.requireNonNull(mailbox, "mailbox must not be null");
+        this.bufferCapacity = bufferCapacity;
+        this.enqueued = new LongAdder();
+        this.dropped = new LongAdder[DropReason.values().length];
+        for (int i = 0; i < dropped.length; i++) {
+            dropped[i] = new LongAdder();
+        }
+        this.publishFailures = new LongAdder();
+        this.highWaterMark = new AtomicLong();
+        this.batchSizes = new LogLinearHistogram();
+        this.publishLatencies = new LogLinearHistogram();
+        this.lastRateUpdate = System.nanoTime();
+    }
+
+    /**
+     * Records a log put in the mailbox.
+     *
+     * @param depth How many logs the mailbox held just after.
+     */
+    void enqueued(int depth) {
+        enqueued.increment();
+        long mark = highWaterMark.get();
+        while (depth > mark && !highWaterMark.compareAndSet(mark, depth)) {
+            mark = highWaterMark.get();
+        }
+    }
+
+    void drop(DropReason reason) {
+        dropped[reason.ordinal()].increment();
+    }
+
+    void publishFailed() {
+        publishFailures.increment();
+    }
+
+    /**
+     * Records a call to publish.
+     */
+    synchronized void published(int batchSize, long latencyNanos, int bufferSizeAfter) {
+        batches++;
+        batchSizes.record(batchSize);
+        publishLatencies.record(latencyNanos);
+        bufferSize = bufferSizeAfter;
+        updateRates();
+    }
+
+    // Exponentially weighted over about a minute, updated whenever the loop publishes and whenever
+    // they are read, so they fall off while nothing is logged.
+    private void updateRates() {
+        long now = System.nanoTime();
+        long elapsed = now - lastRateUpdate;
+        if (elapsed <= 0) {
+            return;
+        }
+        long enqueuedNow = enqueued.sum();
+        long bytesNow = publisher.bytesPublished();
+        double seconds = elapsed / 1e9;
+        double alpha = 1 - Math.exp(-(double) elapsed / RATE_WINDOW_NANOS);
+        enqueueRate += alpha * ((enqueuedNow - enqueuedAtLastRateUpdate) / seconds - enqueueRate);
+        bytesPerSecond += alpha * ((bytesNow - bytesAtLastRateUpdate) / seconds - bytesPerSecond);
+        lastRateUpdate = now;
+        enqueuedAtLastRateUpdate = enqueuedNow;
+        bytesAtLastRateUpdate = bytesNow;
+    }
+
+    public Publisher publisher() {
+        return publisher;
+    }
+
+    public long dropped(DropReason reason) {
+        return dropped[reason.ordinal()].sum();
+    }
+
+    /**
+     * @return The current values of every metric.
+     */
+    public synchronized Snapshot snapshot() {
+        updateRates();
+        return new Snapshot(
+                publisher.toString(),
+                mailbox.size(),
+                highWaterMark.get(),
+                enqueued.sum(),
+                enqueueRate,
+                dropped(DropReason.MAILBOX_FULL),
+                dropped(DropReason.BUFFER_FULL),
+                publishFailures.sum(),
+                batches,
+                batchSizes.valueAtPercentile(50),
+                batchSizes.valueAtPercentile(99),
+                batchSizes.max(),
+                publishLatencies.valueAtPercentile(50),
+                publishLatencies.valueAtPercentile(99),
+                publishLatencies.max(),
+                publisher.bytesPublished(),
+                bytesPerSecond,
+                bufferSize,
+                bufferCapacity
+        );
+    }
+
+    /**
+     * @param publisher The publisher's {@link Object#toString()}.
+     * @param mailboxDepth How many logs are waiting in the mailbox.
+     * @param mailboxHighWaterMark The most logs the mailbox has held.
+     * @param enqueued How many logs have been put in the mailbox.
+     * @param enqueueRate Logs put in the mailbox per second.
+     * @param droppedMailboxFull Logs lost because the mailbox was full.
+     * @param droppedBufferFull Logs lost because the buffer was full.
+     * @param publishFailures Calls to publish which threw.
+     * @param batches Calls to publish.
+     * @param batchSizeP50 The median number of logs handed to publish.
+     * @param batchSizeP99 The 99th percentile number of logs handed to publish.
+     * @param batchSizeMax The most logs handed to publish.
+     * @param publishLatencyP50 The median nanoseconds publish took.
+     * @param publishLatencyP99 The 99th percentile nanoseconds publish took.
+     * @param publishLatencyMax The most nanoseconds publish took.
+     * @param bytesPublished The bytes the publisher has serialized, if it reports them.
+     * @param bytesPerSecond Bytes serialized per second.
+     * @param bufferSize How many logs were left in the buffer after the last publish.
+     * @param bufferCapacity How many logs the buffer holds before overwriting the oldest.
+     */
+    public record Snapshot(
+            String publisher,
+            long mailboxDepth,
+            long mailboxHighWaterMark,
+            long enqueued,
+            double enqueueRate,
+            long droppedMailboxFull,
+            long droppedBufferFull,
+            long publishFailures,
+            long batches,
+            long batchSizeP50,
+            long batchSizeP99,
+            long batchSizeMax,
+            long publishLatencyP50,
+            long publishLatencyP99,
+            long publishLatencyMax,
+            long bytesPublished,
+            double bytesPerSecond,
+            int bufferSize,
+            int bufferCapacity
+    ) {}
+
+    @Override
+    public String getPublisher() {
+        return publisher.toString();
+    }
+
+    @Override
+    public long getMailboxDepth() {
+        return mailbox.size();
+    }
+
+    @Override
+    public long getMailboxHighWaterMark() {
+        return highWaterMark.get();
+    }
+
+    @Override
+    public long getEnqueued() {
+        return enqueued.sum();
+    }
+
+    @Override
+    public synchronized double getEnqueueRate() {
+        updateRates();
+        return enqueueRate;
+    }
+
+    @Override
+    public long getDroppedMailboxFull() {
+        return dropped(DropReason.MAILBOX_FULL);
+    }
+
+    @Override
+    public long getDroppedBufferFull() {
+        return dropped(DropReason.BUFFER_FULL);
+    }
+
+    @Override
+    public long getPublishFailures() {
+        return publishFailures.sum();
+    }
+
+    @Override
+    public synchronized long getBatches() {
+        return batches;
+    }
+
+    @Override
+    public synchronized long getBatchSizeP50() {
+        return batchSizes.valueAtPercentile(50);
+    }
+
+    @Override
+    public synchronized long getBatchSizeP99() {
+        return batchSizes.valueAtPercentile(99);
+    }
+
+    @Override
+    public synchronized long getBatchSizeMax() {
+        return batchSizes.max();
+    }
+
+    @Override
+    public synchronized long getPublishLatencyP50() {
+        return publishLatencies.valueAtPercentile(50);
+    }
+
+    @Override
+    public synchronized long getPublishLatencyP99() {
+        return publishLatencies.valueAtPercentile(99);
+    }
+
+    @Override
+    public synchronized long getPublishLatencyMax() {
+        return publishLatencies.max();
+    }
+
+    @Override
+    public long getBytesPublished() {
+        return publisher.bytesPublished();
+    }
+
+    @Override
+    public synchronized double getBytesPerSecond() {
+        updateRates();
+        return bytesPerSecond;
+    }
+
+    @Override
+    public synchronized int getBufferSize() {
+        return bufferSize;
+    }
+
+    @Override
+    public int getBufferCapacity() {
+        return bufferCapacity;
+    }
+
+    @Override
+    public synchronized void reset() {
+        batchSizes.reset();
+        publishLatencies.reset();
+        highWaterMark.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "PublisherMetrics[" + snapshot() + "]";
+    }
+}
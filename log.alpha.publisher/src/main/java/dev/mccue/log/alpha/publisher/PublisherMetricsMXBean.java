@@ -0,0 +1,52 @@
+package dev.mccue.log.alpha.publisher;
+
+/**
+ * The JMX view of {@link PublisherMetrics}, registered for every publisher in
+ * {@link GlobalFanOutLogger} under {@code dev.mccue.log.alpha:type=Publisher}.
+ *
+ * <p>Latencies are in nanoseconds and rates are per second, averaged over about a minute.</p>
+ */
+public interface PublisherMetricsMXBean {
+    String getPublisher();
+
+    long getMailboxDepth();
+
+    long getMailboxHighWaterMark();
+
+    long getEnqueued();
+
+    double getEnqueueRate();
+
+    long getDroppedMailboxFull();
+
+    long getDroppedBufferFull();
+
+    long getPublishFailures();
+
+    long getBatches();
+
+    long getBatchSizeP50();
+
+    long getBatchSizeP99();
+
+    long getBatchSizeMax();
+
+    long getPublishLatencyP50();
+
+    long getPublishLatencyP99();
+
+    long getPublishLatencyMax();
+
+    long getBytesPublished();
+
+    double getBytesPerSecond();
+
+    int getBufferSize();
+
+    int getBufferCapacity();
+
+    /**
+     * Clears the histograms and the high water mark. Counters keep counting.
+     */
+    void reset();
+}
@@ -0,0 +1,73 @@
+package dev.mccue.log.alpha.publisher;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The threads every publisher loop shares: one timer thread which decides when each loop should
+ * drain, and a pool of workers which do the draining.
+ *
+ * <p>Workers come from a cached pool, so there are only ever as many as there are drains running
+ * at once, and idle workers go away after a minute. Virtual threads would suit the workers, but
+ * they first appeared as a preview in Java 19 and these modules target Java 18.</p>
+ */
+final class PublisherScheduler {
+    private final ScheduledExecutorService timer;
+    private final ExecutorService workers;
+
+    PublisherScheduler() {
+        this.timer = Executors.newSingleThreadScheduledExecutor(daemonThreads("log.alpha-publisher-timer"));
+        this.workers = Executors.newCachedThreadPool(daemonThreads("log.alpha-publisher-"));
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        var count = new AtomicInteger();
+        return runnable -> {
+            var thread = new Thread(
+                    runnable,
+                    name.endsWith("-") ? name + count.incrementAndGet() : name
+            );
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Runs the drain on a worker every period, counting from when the previous run was handed off.
+     */
+    ScheduledFuture<?> schedule(Runnable drain, Duration period) {
+        long nanos = Math.max(1, period.toNanos());
+        return timer.scheduleWithFixedDelay(
+                () -> workers.execute(drain),
+                nanos,
+                nanos,
+                TimeUnit.NANOSECONDS
+        );
+    }
+
+    /**
+     * Runs a task once on a worker, alongside the scheduled drains.
+     */
+    <T> Future<T> submit(Callable<T> task) {
+        return workers.submit(task);
+    }
+
+    /**
+     * Stops the timer and the workers, waiting up to the timeout for running drains to finish.
+     *
+     * @return Whether every drain finished in time.
+     */
+    boolean shutdown(Duration timeout) throws InterruptedException {
+        timer.shutdownNow();
+        workers.shutdown();
+        return workers.awaitTermination(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,395 @@
+package dev.mccue.log.alpha.publisher;
+
+import dev.mccue.log.alpha.Flake;
+import dev.mccue.log.alpha.Log;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A publisher which keeps the most recent logs in memory so they can be queried on the box.
+ *
+ * <p>Logs are held in a ring bounded by an estimate of their size in bytes. When the bound is
+ * exceeded the oldest logs are evicted. Every stored log is indexed by its category, its level,
+ * its flake and the values of a configured set of entry keys, such as "trace-id", so that
+ * queries only visit the logs which could possibly match.</p>
+ *
+ * {@snippet :
+ * var errorsForTrace = store.query(
+ *         RecentLogStore.Query.ALL
+ *                 .withMinimumLevel(Log.Level.ERROR)
+ *                 .withEntry("trace-id", new Log.Entry.Value.UUID(traceId))
+ *                 .withSince(Instant.now().minus(Duration.ofMinutes(5)))
+ * );
+ * }
+ */
+public final class RecentLogStore implements Publisher {
+    private static final Comparator<Stored> FLAKE_ORDER =
+            Comparator.comparing((Stored stored) -> stored.log.flake())
+                    .thenComparingLong(stored -> stored.sequence);
+
+    private final Options options;
+    private final ReentrantReadWriteLock lock;
+
+    private final ArrayDeque<Stored> ring;
+    private final NavigableSet<Stored> byFlake;
+    private final Map<Log.Category, ArrayDeque<Stored>> byCategory;
+    private final EnumMap<Log.Level, ArrayDeque<Stored>> byLevel;
+    private final Map<String, Map<Log.Entry.Value, ArrayDeque<Stored>>> byEntry;
+
+    private long sequence;
+    private long bytes;
+
+    public RecentLogStore(Options options) {
+        this.options = Objects.requireNonNull(options, "options must not be null");
+        this.lock = new ReentrantReadWriteLock();
+        this.ring = new ArrayDeque<>();
+        this.byFlake = new TreeSet<>(FLAKE_ORDER);
+        this.byCategory = new HashMap<>();
+        this.byLevel = new EnumMap<>(Log.Level.class);
+        this.byEntry = new HashMap<>();
+        for (var key : options.indexedKeys) {
+            this.byEntry.put(key, new HashMap<>());
+        }
+        this.sequence = 0;
+        this.bytes = 0;
+    }
+
+    public RecentLogStore() {
+        this(Options.DEFAULT);
+    }
+
+    @Override
+    public LogBuffer publish(LogBuffer logs) {
+        lock.writeLock().lock();
+        try {
+            for (var item : logs.items()) {
+                if (item != null) {
+                    add(item.log());
+                }
+            }
+            while (bytes > options.maxBytes && !ring.isEmpty()) {
+                evictOldest();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return logs.clear();
+    }
+
+    private void add(Log log) {
+        var indexedValues = new HashMap<String, Log.Entry.Value>();
+        for (var entry : log) {
+            if (byEntry.containsKey(entry.key()) && !indexedValues.containsKey(entry.key())) {
+                indexedValues.put(entry.key(), realize(entry.value()));
+            }
+        }
+
+        var stored = new Stored(sequence++, log, estimateSize(log), indexedValues);
+        ring.addLast(stored);
+        byFlake.add(stored);
+        byCategory.computeIfAbsent(log.category(), __ -> new ArrayDeque<>()).addLast(stored);
+        byLevel.computeIfAbsent(log.level(), __ -> new ArrayDeque<>()).addLast(stored);
+        for (var indexed : indexedValues.entrySet()) {
+            byEntry.get(indexed.getKey())
+                    .computeIfAbsent(indexed.getValue(), __ -> new ArrayDeque<>())
+                    .addLast(stored);
+        }
+        bytes += stored.size;
+    }
+
+    /*
+     * Every index is appended to in arrival order, so the oldest log in the ring is
+     * always at the head of each posting list it appears in.
+     */
+    private void evictOldest() {
+        var stored = ring.pollFirst();
+        byFlake.remove(stored);
+        removeHead(byCategory, stored.log.category(), stored);
+        removeHead(byLevel, stored.log.level(), stored);
+        for (var indexed : stored.indexedValues.entrySet()) {
+            removeHead(byEntry.get(indexed.getKey()), indexed.getValue(), stored);
+        }
+        bytes -= stored.size;
+    }
+
+    private static <K> void removeHead(Map<K, ArrayDeque<Stored>> index, K key, Stored stored) {
+        var postings = index.get(key);
+        if (postings != null && postings.peekFirst() == stored) {
+            postings.pollFirst();
+            if (postings.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Finds the logs matching the query, newest first.
+     *
+     * @param query The query to run.
+     * @return At most {@link Query#limit()} matching logs, newest first.
+     */
+    public List<Log> query(Query query) {
+        Objects.requireNonNull(query, "query must not be null");
+        if (query.entryKey != null && !byEntry.containsKey(query.entryKey)) {
+            throw new IllegalArgumentException("Entry key is not indexed: " + query.entryKey);
+        }
+
+        lock.readLock().lock();
+        try {
+            var results = new ArrayList<Log>();
+            var candidates = candidates(query);
+            while (candidates.hasNext() && results.size() < query.limit) {
+                var stored = candidates.next();
+                if (matches(query, stored)) {
+                    results.add(stored.log);
+                }
+            }
+            return List.copyOf(results);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /*
+     * Picks the smallest posting list the query constrains as the driver and walks it newest
+     * first. The remaining constraints are checked per candidate.
+     */
+    private Iterator<Stored> candidates(Query query) {
+        ArrayDeque<Stored> smallest = null;
+        if (query.category != null) {
+            smallest = byCategory.getOrDefault(query.category, new ArrayDeque<>());
+        }
+        if (query.entryKey != null) {
+            var postings = byEntry.get(query.entryKey)
+                    .getOrDefault(realize(query.entryValue), new ArrayDeque<>());
+            if (smallest == null || postings.size() < smallest.size()) {
+                smallest = postings;
+            }
+        }
+        if (query.minimumLevel != null) {
+            int atOrAbove = 0;
+            for (var level : Log.Level.values()) {
+                if (level.compareTo(query.minimumLevel) >= 0) {
+                    atOrAbove += byLevel.getOrDefault(level, new ArrayDeque<>()).size();
+                }
+            }
+            if ((smallest == null || atOrAbove < smallest.size()) && atOrAbove < ring.size()) {
+                return levelCandidates(query.minimumLevel);
+            }
+        }
+        if (smallest != null) {
+            return smallest.descendingIterator();
+        }
+        if (query.since != null || query.until != null) {
+            return timeRange(query).descendingIterator();
+        }
+        return ring.descendingIterator();
+    }
+
+    private Iterator<Stored> levelCandidates(Log.Level minimumLevel) {
+        var merged = new ArrayList<Stored>();
+        for (var level : Log.Level.values()) {
+            if (level.compareTo(minimumLevel) >= 0) {
+                merged.addAll(byLevel.getOrDefault(level, new ArrayDeque<>()));
+            }
+        }
+        merged.sort(Comparator.comparingLong((Stored stored) -> stored.sequence).reversed());
+        return merged.iterator();
+    }
+
+    private NavigableSet<Stored> timeRange(Query query) {
+        var from = query.since == null
+                ? null
+                : new Stored(Long.MIN_VALUE, boundary(query.since, 0), 0, Map.of());
+        var to = query.until == null
+                ? null
+                : new Stored(Long.MAX_VALUE, boundary(query.until, -1), 0, Map.of());
+        if (from != null && to != null) {
+            return byFlake.subSet(from, true, to, true);
+        } else if (from != null) {
+            return byFlake.tailSet(from, true);
+        } else {
+            return byFlake.headSet(to, true);
+        }
+    }
+
+    private static Log boundary(Instant instant, long random) {
+        var nanos = instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+        return new Log(
+                Log.Context.current(),
+                Thread.currentThread(),
+                Flake.makeFlake(nanos, random, random),
+                new Log.Occurrence.PointInTime(instant),
+                Log.Level.TRACE,
+                new Log.Category("", ""),
+                List.of()
+        );
+    }
+
+    private static boolean matches(Query query, Stored stored) {
+        var log = stored.log;
+        if (query.minimumLevel != null && log.level().compareTo(query.minimumLevel) < 0) {
+            return false;
+        }
+        if (query.category != null && !query.category.equals(log.category())) {
+            return false;
+        }
+        if (query.entryKey != null
+                && !realize(query.entryValue).equals(stored.indexedValues.get(query.entryKey))) {
+            return false;
+        }
+        var instant = log.flake().getTimestampInstant();
+        if (query.since != null && instant.isBefore(query.since)) {
+            return false;
+        }
+        return query.until == null || !instant.isAfter(query.until);
+    }
+
+    private static Log.Entry.Value realize(Log.Entry.Value value) {
+        return value instanceof Log.Entry.Value.Lazy lazy ? realize(lazy.value()) : value;
+    }
+
+    /*
+     * A rough estimate of retained heap. It only has to be proportional to the real size
+     * for the byte bound to be meaningful.
+     */
+    private static long estimateSize(Log log) {
+        long size = 160;
+        for (var entry : log.entries()) {
+            size += 48 + 2L * entry.key().length() + estimateSize(entry.value());
+        }
+        return size;
+    }
+
+    private static long estimateSize(Log.Entry.Value value) {
+        return switch (value) {
+            case Log.Entry.Value.String s -> 40 + 2L * s.value().length();
+            case Log.Entry.Value.Throwable __ -> 1024;
+            case Log.Entry.Value.List list -> {
+                long size = 32;
+                for (var v : list.value()) {
+                    size += 8 + estimateSize(v);
+                }
+                yield size;
+            }
+            case Log.Entry.Value.Set set -> {
+                long size = 48;
+                for (var v : set.value()) {
+                    size += 16 + estimateSize(v);
+                }
+                yield size;
+            }
+            case Log.Entry.Value.Map map -> {
+                long size = 48;
+                for (var entry : map.value().entrySet()) {
+                    size += 32 + estimateSize(entry.getKey()) + estimateSize(entry.getValue());
+                }
+                yield size;
+            }
+            default -> 24;
+        };
+    }
+
+    /**
+     * @return The number of logs currently held.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ring.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RecentLogStore[options=" + options + "]";
+    }
+
+    private record Stored(long sequence, Log log, long size, Map<String, Log.Entry.Value> indexedValues) {}
+
+    /**
+     * A query against the store. Every non-null constraint must match.
+     *
+     * @param minimumLevel Only logs at or above this level.
+     * @param category Only logs with exactly this category.
+     * @param entryKey Only logs with this entry. Must be one of {@link Options#indexedKeys()}.
+     * @param entryValue The value the entry must have.
+     * @param since Only logs whose flake is at or after this instant.
+     * @param until Only logs whose flake is at or before this instant.
+     * @param limit The maximum number of logs to return.
+     */
+    public record Query(
+            Log.Level minimumLevel,
+            Log.Category category,
+            String entryKey,
+            Log.Entry.Value entryValue,
+            Instant since,
+            Instant until,
+            int limit
+    ) {
+        public static final Query ALL = new Query(null, null, null, null, null, null, 1000);
+
+        public Query {
+            if ((entryKey == null) != (entryValue == null)) {
+                throw new IllegalArgumentException("entryKey and entryValue must be given together");
+            }
+            if (limit <= 0) {
+                throw new IllegalArgumentException("limit must be greater than zero");
+            }
+        }
+
+        public Query withMinimumLevel(Log.Level minimumLevel) {
+            return new Query(minimumLevel, category, entryKey, entryValue, since, until, limit);
+        }
+
+        public Query withCategory(Log.Category category) {
+            return new Query(minimumLevel, category, entryKey, entryValue, since, until, limit);
+        }
+
+        public Query withEntry(String entryKey, Log.Entry.Value entryValue) {
+            return new Query(minimumLevel, category, entryKey, entryValue, since, until, limit);
+        }
+
+        public Query withSince(Instant since) {
+            return new Query(minimumLevel, category, entryKey, entryValue, since, until, limit);
+        }
+
+        public Query withUntil(Instant until) {
+            return new Query(minimumLevel, category, entryKey, entryValue, since, until, limit);
+        }
+
+        public Query withLimit(int limit) {
+            return new Query(minimumLevel, category, entryKey, entryValue, since, until, limit);
+        }
+    }
+
+    /**
+     * @param maxBytes The approximate number of bytes of logs to retain.
+     * @param indexedKeys The entry keys whose values are indexed for queries.
+     */
+    public record Options(
+            long maxBytes,
+            Set<String> indexedKeys
+    ) {
+        public static final Options DEFAULT = new Options(64L * 1024 * 1024, Set.of("trace-id"));
+
+        public Options {
+            if (maxBytes <= 0) {
+                throw new IllegalArgumentException("maxBytes must be greater than zero");
+            }
+            indexedKeys = Set.copyOf(Objects.requireNonNull(indexedKeys, "indexedKeys must not be null"));
+        }
+
+        public Options withMaxBytes(long maxBytes) {
+            return new Options(maxBytes, this.indexedKeys);
+        }
+
+        public Options withIndexedKeys(Set<String> indexedKeys) {
+            return new Options(this.maxBytes, indexedKeys);
+        }
+    }
+}
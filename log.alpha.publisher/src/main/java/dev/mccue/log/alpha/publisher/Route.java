@@ -0,0 +1,52 @@
+package dev.mccue.log.alpha.publisher;
+
+import dev.mccue.log.alpha.Log;
+import dev.mccue.log.alpha.LogFilter;
+
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Which logs a publisher registered with {@link GlobalFanOutLogger} wants to receive.
+ *
+ * <p>A log is routed to the publisher when every constraint matches.</p>
+ *
+ * @param minimumLevel Only logs at or above this level.
+ * @param namespacePrefixes If not empty, only logs whose namespace is one of these or is nested
+ *                          under one of these. Namespaces nest on dots, so "com.example" matches
+ *                          "com.example" and "com.example.Service" but not "com.examples".
+ * @param entryKeys If not empty, only logs with at least one entry, including entries from their
+ *                  context, whose key is one of these.
+ * @param filter Only logs which pass this filter. It is checked after the other constraints.
+ */
+public record Route(
+        Log.Level minimumLevel,
+        Set<String> namespacePrefixes,
+        Set<String> entryKeys,
+        LogFilter filter
+) {
+    public static final Route ALL = new Route(Log.Level.TRACE, Set.of(), Set.of(), LogFilter.ALL);
+
+    public Route {
+        Objects.requireNonNull(minimumLevel, "minimumLevel must not be null");
+        namespacePrefixes = Set.copyOf(Objects.requireNonNull(namespacePrefixes, "namespacePrefixes must not be null"));
+        entryKeys = Set.copyOf(Objects.requireNonNull(entryKeys, "entryKeys must not be null"));
+        Objects.requireNonNull(filter, "filter must not be null");
+    }
+
+    public Route withMinimumLevel(Log.Level minimumLevel) {
+        return new Route(minimumLevel, this.namespacePrefixes, this.entryKeys, this.filter);
+    }
+
+    public Route withNamespacePrefixes(Set<String> namespacePrefixes) {
+        return new Route(this.minimumLevel, namespacePrefixes, this.entryKeys, this.filter);
+    }
+
+    public Route withEntryKeys(Set<String> entryKeys) {
+        return new Route(this.minimumLevel, this.namespacePrefixes, entryKeys, this.filter);
+    }
+
+    public Route withFilter(LogFilter filter) {
+        return new Route(this.minimumLevel, this.namespacePrefixes, this.entryKeys, filter);
+    }
+}
@@ -0,0 +1,174 @@
+package dev.mccue.log.alpha.publisher;
+
+import dev.mccue.log.alpha.Log;
+import dev.mccue.log.alpha.LogFilter;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A set of {@link Route}s compiled into bitmasks, so that deciding which of up to 64 publishers
+ * want a log takes a handful of mask operations instead of checking every route.
+ *
+ * <p>Bit i of every mask stands for the i-th route. Namespace prefixes are kept in a trie over
+ * the dot separated segments of namespaces, and the mask for each namespace seen is cached.
+ * Routes with a {@link LogFilter} are only asked once the masks have let the log through.</p>
+ */
+final class RoutingTable {
+    static final int MAX_ROUTES = Long.SIZE;
+    private static final int MAX_CACHED_NAMESPACES = 16 * 1024;
+
+    private final long[] levelMasks;
+    private final long anyNamespaceMask;
+    private final Node namespaceTrie;
+    private final long anyKeyMask;
+    private final Map<String, Long> keyMasks;
+    private final long filteredMask;
+    private final LogFilter[] filters;
+    private final ConcurrentHashMap<String, Long> namespaceMasks;
+
+    private RoutingTable(
+            long[] levelMasks,
+            long anyNamespaceMask,
+            Node namespaceTrie,
+            long anyKeyMask,
+            Map<String, Long> keyMasks,
+            long filteredMask,
+            LogFilter[] filters
+    ) {
+        this.levelMasks = levelMasks;
+        this.anyNamespaceMask = anyNamespaceMask;
+        this.namespaceTrie = namespaceTrie;
+        this.anyKeyMask = anyKeyMask;
+        this.keyMasks = keyMasks;
+        this.filteredMask = filteredMask;
+        this.filters = filters;
+        this.namespaceMasks = new ConcurrentHashMap<>();
+    }
+
+    static RoutingTable compile(List<Route> routes) {
+        if (routes.size() > MAX_ROUTES) {
+            throw new IllegalStateException("At most " + MAX_ROUTES + " publishers can be registered");
+        }
+        var levels = Log.Level.values();
+        var levelMasks = new long[levels.length];
+        long anyNamespaceMask = 0;
+        var namespaceTrie = new Node();
+        long anyKeyMask = 0;
+        var keyMasks = new HashMap<String, Long>();
+        long filteredMask = 0;
+        var filters = new LogFilter[routes.size()];
+
+        for (int i = 0; i < routes.size(); i++) {
+            var route = routes.get(i);
+            long bit = 1L << i;
+            for (var level : levels) {
+                if (level.compareTo(route.minimumLevel()) >= 0) {
+                    levelMasks[level.ordinal()] |= bit;
+                }
+            }
+
+            if (route.namespacePrefixes().isEmpty()) {
+                anyNamespaceMask |= bit;
+            } else {
+                for (var prefix : route.namespacePrefixes()) {
+                    var node = namespaceTrie;
+                    for (var segment : prefix.split("\\.", -1)) {
+                        node = node.children.computeIfAbsent(segment, __ -> new Node());
+                    }
+                    node.mask |= bit;
+                }
+            }
+
+            if (route.entryKeys().isEmpty()) {
+                anyKeyMask |= bit;
+            } else {
+                for (var key : route.entryKeys()) {
+                    keyMasks.merge(key, bit, (a, b) -> a | b);
+                }
+            }
+
+            if (route.filter() != LogFilter.ALL) {
+                filteredMask |= bit;
+                filters[i] = route.filter();
+            }
+        }
+
+        return new RoutingTable(
+                levelMasks,
+                anyNamespaceMask,
+                namespaceTrie,
+                anyKeyMask,
+                Map.copyOf(keyMasks),
+                filteredMask,
+                filters
+        );
+    }
+
+    /**
+     * @return A mask with bit i set if the i-th route wants the log.
+     */
+    long route(Log log) {
+        long mask = levelMasks[log.level().ordinal()];
+        if (mask == 0) {
+            return 0;
+        }
+        mask &= namespaceMask(log.category().namespace());
+        if ((mask & ~anyKeyMask) != 0) {
+            long keyMask = anyKeyMask;
+            for (var entry : log) {
+                var bits = keyMasks.get(entry.key());
+                if (bits != null) {
+                    keyMask |= bits;
+                }
+            }
+            mask &= keyMask;
+        } else {
+            mask &= anyKeyMask;
+        }
+
+        long toFilter = mask & filteredMask;
+        while (toFilter != 0) {
+            int i = Long.numberOfTrailingZeros(toFilter);
+            toFilter &= toFilter - 1;
+            if (!filters[i].test(log)) {
+                mask &= ~(1L << i);
+            }
+        }
+        return mask;
+    }
+
+    private long namespaceMask(String namespace) {
+        var cached = namespaceMasks.get(namespace);
+        if (cached != null) {
+            return cached;
+        }
+
+        long mask = anyNamespaceMask;
+        var node = namespaceTrie;
+        int start = 0;
+        while (node != null && start <= namespace.length()) {
+            int end = namespace.indexOf('.', start);
+            if (end < 0) {
+                end = namespace.length();
+            }
+            node = node.children.get(namespace.substring(start, end));
+            if (node != null) {
+                mask |= node.mask;
+            }
+            start = end + 1;
+        }
+
+        if (namespaceMasks.size() < MAX_CACHED_NAMESPACES) {
+            namespaceMasks.put(namespace, mask);
+        }
+        return mask;
+    }
+
+    private static final class Node {
+        final Map<String, Node> children = new HashMap<>();
+        long mask = 0;
+    }
+}
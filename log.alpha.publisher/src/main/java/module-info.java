@@ -4,6 +4,8 @@ import dev.mccue.log.alpha.publisher.Publisher;
 
 module dev.mccue.log.alpha.publisher {
     requires io.vavr;
+    requires java.management;
+    requires jdk.jfr;
     requires dev.mccue.async;
     requires transitive dev.mccue.log.alpha;
 
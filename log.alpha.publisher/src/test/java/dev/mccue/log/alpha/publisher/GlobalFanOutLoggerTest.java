@@ -0,0 +1,187 @@
+package dev.mccue.log.alpha.publisher;
+
+import dev.mccue.log.alpha.Log;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GlobalFanOutLoggerTest {
+    /**
+     * Takes every log, noting the name of each.
+     */
+    private static final class Collector implements Publisher {
+        final List<String> names = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public LogBuffer publish(LogBuffer logs) {
+            for (var item : logs.items()) {
+                names.add(item.log().category().name());
+            }
+            return logs.clear();
+        }
+    }
+
+    private static Log log(Log.Level level, String namespace, String name) {
+        return new Log(level, new Log.Category(namespace, name), List.of());
+    }
+
+    @AfterEach
+    public void shutDown() throws InterruptedException {
+        GlobalFanOutLogger.shutdown(Duration.ofSeconds(5));
+    }
+
+    @Test
+    public void eachPublisherOnlyGetsTheLogsItsRouteMatches() throws InterruptedException {
+        var everything = new Collector();
+        var errors = new Collector();
+        var database = new Collector();
+        GlobalFanOutLogger.registerPublisher(everything, new ArrayBlockingQueue<>(100), Duration.ofMillis(10));
+        GlobalFanOutLogger.registerPublisher(
+                errors,
+                new ArrayBlockingQueue<>(100),
+                Duration.ofMillis(10),
+                Route.ALL.withMinimumLevel(Log.Level.ERROR)
+        );
+        GlobalFanOutLogger.registerPublisher(
+                database,
+                new ArrayBlockingQueue<>(100),
+                Duration.ofMillis(10),
+                Route.ALL.withNamespacePrefixes(Set.of("app.db"))
+        );
+
+        GlobalFanOutLogger.log(log(Log.Level.INFO, "app.http", "request"));
+        GlobalFanOutLogger.log(log(Log.Level.ERROR, "app.db", "deadlock"));
+        GlobalFanOutLogger.log(log(Log.Level.DEBUG, "app.db.pool", "checkout"));
+        for (var report : GlobalFanOutLogger.flush(Duration.ofSeconds(5))) {
+            assertTrue(report.flushed(), report.toString());
+        }
+
+        assertEquals(List.of("request", "deadlock", "checkout"), everything.names);
+        assertEquals(List.of("deadlock"), errors.names);
+        assertEquals(List.of("deadlock", "checkout"), database.names);
+    }
+
+    @Test
+    public void publishersCanBeRegisteredAgainAfterShutdown() throws InterruptedException {
+        var first = new Collector();
+        GlobalFanOutLogger.registerPublisher(first, new ArrayBlockingQueue<>(100), Duration.ofMillis(10));
+        GlobalFanOutLogger.log(log(Log.Level.INFO, "app", "before"));
+        assertTrue(GlobalFanOutLogger.shutdown(Duration.ofSeconds(5)));
+        assertEquals(List.of("before"), first.names);
+
+        var second = new Collector();
+        GlobalFanOutLogger.registerPublisher(second, new ArrayBlockingQueue<>(100), Duration.ofMillis(10));
+        GlobalFanOutLogger.log(log(Log.Level.INFO, "app", "after"));
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (second.names.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(List.of("after"), second.names);
+        assertEquals(List.of("before"), first.names);
+    }
+
+    /**
+     * Takes at most a given number of logs per publish, after a pause.
+     */
+    private static final class Partial implements Publisher {
+        final int perPublish;
+        final long pauseMillis;
+        final AtomicInteger published = new AtomicInteger();
+
+        Partial(int perPublish, long pauseMillis) {
+            this.perPublish = perPublish;
+            this.pauseMillis = pauseMillis;
+        }
+
+        @Override
+        public LogBuffer publish(LogBuffer logs) {
+            try {
+                Thread.sleep(pauseMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            var items = logs.items();
+            int taken = Math.min(perPublish, items.size());
+            if (taken == 0) {
+                return logs;
+            }
+            published.addAndGet(taken);
+            return logs.dequeue(items.get(taken - 1).offset());
+        }
+    }
+
+    @Test
+    public void flushingPublishesMoreThanABufferfulWithoutLosingAny() throws InterruptedException {
+        var publisher = new Partial(1_000, 0);
+        GlobalFanOutLogger.registerPublisher(publisher, new ArrayBlockingQueue<>(50_000), Duration.ofHours(1));
+        for (int i = 0; i < 30_000; i++) {
+            GlobalFanOutLogger.log(log(Log.Level.INFO, "app", "event"));
+        }
+
+        var reports = GlobalFanOutLogger.flush(Duration.ofSeconds(10));
+        assertEquals(1, reports.size());
+        assertTrue(reports.get(0).flushed(), reports.get(0).toString());
+        assertEquals(30_000, reports.get(0).published());
+        assertEquals(30_000, publisher.published.get());
+    }
+
+    @Test
+    public void publishersAreFlushedAtOnce() throws InterruptedException {
+        var slow = new ArrayList<Partial>();
+        for (int i = 0; i < 4; i++) {
+            var publisher = new Partial(Integer.MAX_VALUE, 300);
+            slow.add(publisher);
+            GlobalFanOutLogger.registerPublisher(publisher, new ArrayBlockingQueue<>(10), Duration.ofHours(1));
+        }
+        GlobalFanOutLogger.log(log(Log.Level.INFO, "app", "event"));
+
+        long start = System.nanoTime();
+        assertTrue(GlobalFanOutLogger.shutdown(Duration.ofSeconds(10)));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        assertTrue(elapsedMillis < 4 * 300, "took " + elapsedMillis + "ms");
+        for (var publisher : slow) {
+            assertEquals(1, publisher.published.get());
+        }
+    }
+
+    @Test
+    public void flushingGivesUpAtTheDeadline() throws InterruptedException {
+        var stuck = new Partial(0, 0);
+        GlobalFanOutLogger.registerPublisher(stuck, new ArrayBlockingQueue<>(10), Duration.ofHours(1));
+        for (int i = 0; i < 5; i++) {
+            GlobalFanOutLogger.log(log(Log.Level.INFO, "app", "event"));
+        }
+
+        var report = GlobalFanOutLogger.flush(Duration.ofMillis(100)).get(0);
+        assertFalse(report.completed());
+        assertEquals(5, report.unpublished());
+        assertFalse(GlobalFanOutLogger.shutdown(Duration.ofMillis(100)));
+    }
+
+    @Test
+    public void deregisteringStillPublishesTheMailbox() throws InterruptedException {
+        var publisher = new Partial(Integer.MAX_VALUE, 0);
+        GlobalFanOutLogger.registerPublisher(publisher, new ArrayBlockingQueue<>(10), Duration.ofHours(1));
+        for (int i = 0; i < 5; i++) {
+            GlobalFanOutLogger.log(log(Log.Level.INFO, "app", "event"));
+        }
+
+        GlobalFanOutLogger.deregisterPublisher(publisher);
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (publisher.published.get() < 5 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(5, publisher.published.get());
+    }
+}
@@ -0,0 +1,123 @@
+package dev.mccue.log.alpha.publisher;
+
+import dev.mccue.log.alpha.Log;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JfrEventsTest {
+    private static final List<String> EVENTS = List.of(
+            "dev.mccue.log.alpha.LogEnqueued",
+            "dev.mccue.log.alpha.BatchDrained",
+            "dev.mccue.log.alpha.Publish",
+            "dev.mccue.log.alpha.MailboxOverflow"
+    );
+
+    @AfterEach
+    public void shutDown() throws InterruptedException {
+        GlobalFanOutLogger.shutdown(Duration.ofSeconds(5));
+    }
+
+    private static List<RecordedEvent> named(List<RecordedEvent> events, String name) {
+        return events.stream().filter(event -> event.getEventType().getName().equals(name)).toList();
+    }
+
+    private static List<RecordedEvent> record(Runnable logging) throws IOException {
+        var file = Files.createTempFile("log-alpha", ".jfr");
+        try {
+            try (var recording = new Recording()) {
+                for (var event : EVENTS) {
+                    recording.enable(event).withThreshold(Duration.ZERO);
+                }
+                recording.start();
+                logging.run();
+                recording.stop();
+                recording.dump(file);
+            }
+            return RecordingFile.readAllEvents(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void recordsEnqueuesDrainsPublishesAndOverflows() throws IOException {
+        Publisher publisher = LogBuffer::clear;
+        var events = record(() -> {
+            // The mailbox holds two, and the publisher isn't drained until the flush.
+            GlobalFanOutLogger.registerPublisher(publisher, new ArrayBlockingQueue<>(2), Duration.ofHours(1));
+            for (int i = 0; i < 3; i++) {
+                GlobalFanOutLogger.log(new Log(Log.Level.WARN, new Log.Category("test", "jfr"), List.of()));
+            }
+            try {
+                GlobalFanOutLogger.flush(Duration.ofSeconds(5));
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        var enqueued = named(events, "dev.mccue.log.alpha.LogEnqueued");
+        assertEquals(3, enqueued.size());
+        assertEquals("test", enqueued.get(0).getString("namespace"));
+        assertEquals("jfr", enqueued.get(0).getString("name"));
+        assertEquals("WARN", enqueued.get(0).getString("level"));
+        assertEquals(1, enqueued.get(0).getInt("mailboxes"));
+
+        var overflows = named(events, "dev.mccue.log.alpha.MailboxOverflow");
+        assertEquals(1, overflows.size());
+        assertEquals("WARN", overflows.get(0).getString("level"));
+
+        var publishes = named(events, "dev.mccue.log.alpha.Publish");
+        assertEquals(1, publishes.size());
+        assertEquals(2, publishes.get(0).getInt("batchSize"));
+        assertEquals(0, publishes.get(0).getInt("remaining"));
+    }
+
+    @Test
+    public void scheduledDrainsAreRecorded() throws IOException {
+        var published = new ArrayList<Integer>();
+        Publisher publisher = logs -> {
+            synchronized (published) {
+                published.add(logs.size());
+            }
+            return logs.clear();
+        };
+        var events = record(() -> {
+            GlobalFanOutLogger.registerPublisher(publisher, new ArrayBlockingQueue<>(10), Duration.ofMillis(5));
+            GlobalFanOutLogger.log(new Log(Log.Level.INFO, new Log.Category("test", "jfr"), List.of()));
+            long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+            while (System.nanoTime() < deadline) {
+                synchronized (published) {
+                    if (!published.isEmpty()) {
+                        break;
+                    }
+                }
+                Thread.onSpinWait();
+            }
+        });
+
+        var drained = named(events, "dev.mccue.log.alpha.BatchDrained");
+        assertTrue(drained.size() >= 1, "no drains recorded");
+        assertEquals(1, drained.get(0).getInt("logs"));
+        assertEquals(1, drained.get(0).getInt("buffered"));
+    }
+
+    @Test
+    public void eventsAreOffUnlessARecordingEnablesThem() {
+        assertFalse(new LogEnqueuedEvent().isEnabled());
+        assertFalse(new PublishEvent().isEnabled());
+    }
+}
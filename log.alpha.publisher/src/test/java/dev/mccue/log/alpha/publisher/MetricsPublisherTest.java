@@ -0,0 +1,130 @@
+package dev.mccue.log.alpha.publisher;
+
+import dev.mccue.log.alpha.Flake;
+import dev.mccue.log.alpha.Log;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MetricsPublisherTest {
+    private static final Log.Category CATEGORY = new Log.Category("test", "metrics");
+
+    private static Log.Entry.Value find(Log log, String key) {
+        for (var entry : log.entries()) {
+            if (entry.key().equals(key)) {
+                return entry.value();
+            }
+        }
+        return null;
+    }
+
+    private static Log span(long millis) {
+        return new Log(
+                Log.Context.current(),
+                Thread.currentThread(),
+                Flake.create(),
+                new Log.Occurrence.SpanOfTime(Instant.now(), Duration.ofMillis(millis)),
+                Log.Level.INFO,
+                CATEGORY,
+                List.of()
+        );
+    }
+
+    @Test
+    public void summarizesCountsAndLatencies() {
+        var summaries = new ArrayList<Log>();
+        var publisher = new MetricsPublisher(summaries::add, MetricsPublisher.Options.DEFAULT);
+
+        var buffer = LogBuffer.create(1000);
+        for (int i = 1; i <= 100; i++) {
+            buffer = buffer.enqueue(span(i));
+        }
+        assertEquals(0, publisher.publish(buffer).size());
+        assertTrue(summaries.isEmpty());
+
+        publisher.flush();
+        assertEquals(1, summaries.size());
+        var summary = summaries.get(0);
+        assertEquals(CATEGORY, summary.category());
+        assertEquals(new Log.Entry.Value.Long(100), find(summary, "log.alpha.metrics/count"));
+        var p50 = ((Log.Entry.Value.Duration) find(summary, "log.alpha.metrics/p50")).value();
+        assertTrue(Math.abs(p50.toMillis() - 50) <= 1, "p50 was " + p50);
+        var max = ((Log.Entry.Value.Duration) find(summary, "log.alpha.metrics/max")).value();
+        assertTrue(Math.abs(max.toMillis() - 100) <= 1, "max was " + max);
+    }
+
+    @Test
+    public void aQuietCategoryIsSummarizedWithoutFurtherLogs() throws InterruptedException {
+        var summaries = Collections.synchronizedList(new ArrayList<Log>());
+        var publisher = new MetricsPublisher(
+                summaries::add,
+                MetricsPublisher.Options.DEFAULT.withInterval(Duration.ofMillis(50))
+        );
+        GlobalFanOutLogger.registerPublisher(publisher, new ArrayBlockingQueue<>(100), Duration.ofMillis(10));
+        try {
+            for (int i = 0; i < 3; i++) {
+                GlobalFanOutLogger.log(span(5));
+            }
+
+            long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+            while (summaries.isEmpty() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, summaries.size());
+            assertEquals(new Log.Entry.Value.Long(3), find(summaries.get(0), "log.alpha.metrics/count"));
+        } finally {
+            GlobalFanOutLogger.deregisterPublisher(publisher);
+        }
+    }
+
+    @Test
+    public void logsWithoutALatencyAreOnlyCounted() {
+        var summaries = new ArrayList<Log>();
+        var publisher = new MetricsPublisher(summaries::add);
+
+        var log = new Log(Log.Level.WARN, CATEGORY, List.of());
+        publisher.publish(LogBuffer.create(10).enqueue(log).enqueue(log));
+        publisher.flush();
+
+        assertEquals(1, summaries.size());
+        assertEquals(new Log.Entry.Value.Long(2), find(summaries.get(0), "log.alpha.metrics/count"));
+        assertNull(find(summaries.get(0), "log.alpha.metrics/p50"));
+    }
+
+    @Test
+    public void summariesWhichComeBackAreNotAggregated() {
+        var summaries = new ArrayList<Log>();
+        var publisher = new MetricsPublisher(summaries::add);
+
+        publisher.publish(LogBuffer.create(10).enqueue(span(5)));
+        publisher.flush();
+        assertEquals(1, summaries.size());
+        assertEquals(new Log.Entry.Value.Boolean(true), find(summaries.get(0), "log.alpha.metrics/summary"));
+
+        publisher.publish(LogBuffer.create(10).enqueue(summaries.get(0)));
+        publisher.flush();
+        assertEquals(1, summaries.size());
+    }
+
+    @Test
+    public void significantBitsAreValidated() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> MetricsPublisher.Options.DEFAULT.withSignificantBits(1)
+        );
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> MetricsPublisher.Options.DEFAULT.withSignificantBits(17)
+        );
+    }
+}
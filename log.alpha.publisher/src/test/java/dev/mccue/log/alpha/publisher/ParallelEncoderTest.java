@@ -0,0 +1,94 @@
+package dev.mccue.log.alpha.publisher;
+
+import dev.mccue.log.alpha.Log;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ParallelEncoderTest {
+    private static final ParallelEncoder.Encoder NUMBERS = (log, out) ->
+            out.write((log.entries().get(0).value() + "\n").getBytes(StandardCharsets.UTF_8));
+
+    private static List<Log> logs(int count) {
+        var logs = new ArrayList<Log>();
+        for (int i = 0; i < count; i++) {
+            logs.add(new Log(Log.Level.INFO, new Log.Category("test", "encoder"), List.of(Log.Entry.of("n", i))));
+        }
+        return logs;
+    }
+
+    private static byte[] concatenate(List<ParallelEncoder.Chunk> chunks) {
+        var out = new ByteArrayOutputStream();
+        int next = 0;
+        for (var chunk : chunks) {
+            assertEquals(next, chunk.from());
+            next = chunk.to();
+            out.writeBytes(chunk.bytes());
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void parallelChunksMatchASequentialEncoding() throws IOException {
+        var logs = logs(10_000);
+        var options = ParallelEncoder.Options.DEFAULT.withChunkSize(100).withParallelThreshold(1_000);
+        var threads = ConcurrentHashMap.<Thread>newKeySet();
+        var pool = new ForkJoinPool(4);
+        try {
+            var parallel = new ParallelEncoder((log, out) -> {
+                threads.add(Thread.currentThread());
+                NUMBERS.encode(log, out);
+            }, options, pool).encode(logs);
+            var sequential = new ParallelEncoder(NUMBERS, options.withParallelThreshold(Integer.MAX_VALUE)).encode(logs);
+
+            assertEquals(100, parallel.size());
+            assertEquals(10_000, parallel.get(99).to());
+            assertArrayEquals(concatenate(sequential), concatenate(parallel));
+            assertFalse(threads.contains(Thread.currentThread()), "large batches are encoded on the pool");
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void smallBatchesAreEncodedOnTheCallingThread() throws IOException {
+        var threads = ConcurrentHashMap.<Thread>newKeySet();
+        var chunks = new ParallelEncoder((log, out) -> {
+            threads.add(Thread.currentThread());
+            NUMBERS.encode(log, out);
+        }, ParallelEncoder.Options.DEFAULT.withChunkSize(10)).encode(logs(100));
+
+        assertEquals(10, chunks.size());
+        assertEquals(Set.of(Thread.currentThread()), threads);
+    }
+
+    @Test
+    public void anEmptyBatchHasNoChunks() throws IOException {
+        assertEquals(List.of(), new ParallelEncoder(NUMBERS).encode(List.of()));
+    }
+
+    @Test
+    public void aFailingChunkFailsTheBatch() {
+        var encoder = new ParallelEncoder((log, out) -> {
+            if (log.entries().get(0).value().equals(new Log.Entry.Value.Integer(4_321))) {
+                throw new IOException("can't encode");
+            }
+            NUMBERS.encode(log, out);
+        }, ParallelEncoder.Options.DEFAULT.withChunkSize(100).withParallelThreshold(1_000));
+
+        var e = assertThrows(IOException.class, () -> encoder.encode(logs(10_000)));
+        assertEquals("can't encode", e.getMessage());
+    }
+}
@@ -0,0 +1,108 @@
+package dev.mccue.log.alpha.publisher;
+
+import dev.mccue.log.alpha.Log;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class PipelinedPublisherTest {
+    private record Sent(long first, long last, CompletableFuture<Long> ack) {}
+
+    private static final class Recorder implements AsyncPublisher {
+        final List<Sent> sent = new ArrayList<>();
+
+        @Override
+        public CompletableFuture<Long> publish(List<LogBuffer.OffsetLogPair> batch) {
+            var ack = new CompletableFuture<Long>();
+            sent.add(new Sent(batch.get(0).offset(), batch.get(batch.size() - 1).offset(), ack));
+            return ack;
+        }
+    }
+
+    private static LogBuffer logs(int count) {
+        var buffer = LogBuffer.create(count);
+        for (int i = 0; i < count; i++) {
+            buffer = buffer.enqueue(new Log(Log.Level.INFO, new Log.Category("test", "pipelined"), List.of()));
+        }
+        return buffer;
+    }
+
+    private static PipelinedPublisher.Options options() {
+        return PipelinedPublisher.Options.DEFAULT
+                .withMaxInFlight(3)
+                .withBatchSize(10)
+                .withRetryDelay(Duration.ZERO);
+    }
+
+    @Test
+    public void onlyDequeuesBelowTheFirstUnacknowledgedBatch() {
+        var recorder = new Recorder();
+        var publisher = new PipelinedPublisher(recorder, options());
+        var buffer = publisher.publish(logs(30));
+        assertEquals(3, recorder.sent.size());
+        assertEquals(30, buffer.size());
+
+        recorder.sent.get(1).ack.complete(20L);
+        buffer = publisher.publish(buffer);
+        assertEquals(0, publisher.acknowledgedOffset());
+        assertEquals(30, buffer.size());
+
+        recorder.sent.get(0).ack.complete(10L);
+        buffer = publisher.publish(buffer);
+        assertEquals(20, publisher.acknowledgedOffset());
+        assertEquals(10, buffer.size());
+        assertEquals(1, publisher.inFlight());
+    }
+
+    @Test
+    public void resendsFromTheFirstUnacknowledgedLogAfterTheRetryDelay() throws InterruptedException {
+        var recorder = new Recorder();
+        var publisher = new PipelinedPublisher(recorder, options().withRetryDelay(Duration.ofMillis(200)));
+        var buffer = publisher.publish(logs(30));
+
+        recorder.sent.get(0).ack.complete(4L);
+        buffer = publisher.publish(buffer);
+        assertEquals(4, publisher.acknowledgedOffset());
+        assertEquals(26, buffer.size());
+        assertEquals(3, recorder.sent.size(), "nothing is sent during the retry delay");
+
+        Thread.sleep(300);
+        publisher.publish(buffer);
+        assertEquals(6, recorder.sent.size());
+        assertEquals(5, recorder.sent.get(3).first());
+        assertEquals(14, recorder.sent.get(3).last());
+    }
+
+    @Test
+    public void aBatchWhichIsNeverAcknowledgedTimesOut() throws InterruptedException {
+        var recorder = new Recorder();
+        var publisher = new PipelinedPublisher(recorder, options().withBatchTimeout(Duration.ofMillis(100)));
+        var buffer = publisher.publish(logs(5));
+        assertEquals(1, recorder.sent.size());
+
+        Thread.sleep(300);
+        publisher.publish(buffer);
+        assertEquals(2, recorder.sent.size());
+        assertEquals(1, recorder.sent.get(1).first());
+        assertFalse(recorder.sent.get(0).ack.isDone(), "the delegate's future is left alone");
+    }
+
+    @Test
+    public void aFailedBatchIsSentAgain() {
+        var recorder = new Recorder();
+        var publisher = new PipelinedPublisher(recorder, options());
+        var buffer = publisher.publish(logs(10));
+
+        recorder.sent.get(0).ack.completeExceptionally(new IllegalStateException("boom"));
+        buffer = publisher.publish(buffer);
+        assertEquals(10, buffer.size());
+        assertEquals(2, recorder.sent.size());
+        assertEquals(1, recorder.sent.get(1).first());
+    }
+}
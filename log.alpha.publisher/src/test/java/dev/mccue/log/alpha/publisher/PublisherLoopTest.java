@@ -0,0 +1,122 @@
+package dev.mccue.log.alpha.publisher;
+
+import dev.mccue.log.alpha.Log;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PublisherLoopTest {
+    private PublisherScheduler scheduler;
+
+    @BeforeEach
+    public void startScheduler() {
+        scheduler = new PublisherScheduler();
+    }
+
+    @AfterEach
+    public void stopScheduler() throws InterruptedException {
+        scheduler.shutdown(Duration.ofSeconds(5));
+    }
+
+    private static Log log() {
+        return new Log(Log.Level.INFO, new Log.Category("test", "loop"), List.of());
+    }
+
+    /**
+     * Takes every log after a pause, noting how many publishes overlap and which threads run them.
+     */
+    private static final class Slow implements Publisher {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger mostRunning = new AtomicInteger();
+        final AtomicInteger published = new AtomicInteger();
+        final Set<String> threads = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public LogBuffer publish(LogBuffer logs) {
+            mostRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            threads.add(Thread.currentThread().getName());
+            try {
+                Thread.sleep(30);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            published.addAndGet(logs.size());
+            running.decrementAndGet();
+            return logs.clear();
+        }
+    }
+
+    private static void awaitPublished(Slow publisher, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (publisher.published.get() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    public void drainsOnWorkersWithoutOverlapping() throws InterruptedException {
+        var publisher = new Slow();
+        var mailbox = new ArrayBlockingQueue<Log>(1_000);
+        var loop = new PublisherLoop(publisher, mailbox);
+        // The timer fires far more often than a publish finishes.
+        loop.start(scheduler, Duration.ofMillis(1));
+
+        for (int i = 0; i < 200; i++) {
+            mailbox.add(log());
+            Thread.sleep(1);
+        }
+        awaitPublished(publisher, 200);
+        loop.stop();
+
+        assertEquals(200, publisher.published.get());
+        assertEquals(1, publisher.mostRunning.get());
+        for (var thread : publisher.threads) {
+            assertTrue(thread.startsWith("log.alpha-publisher-"), thread);
+            assertFalse(thread.equals("log.alpha-publisher-timer"), "the timer thread only hands off drains");
+        }
+    }
+
+    @Test
+    public void aStoppedLoopNoLongerDrains() throws InterruptedException {
+        var publisher = new Slow();
+        var mailbox = new ArrayBlockingQueue<Log>(10);
+        var loop = new PublisherLoop(publisher, mailbox);
+        loop.start(scheduler, Duration.ofMillis(5));
+        mailbox.add(log());
+        awaitPublished(publisher, 1);
+
+        loop.stop();
+        Thread.sleep(50);
+        mailbox.add(log());
+        Thread.sleep(100);
+        assertEquals(1, publisher.published.get());
+        assertEquals(1, loop.unpublished());
+    }
+
+    @Test
+    public void shutdownWaitsForRunningDrains() throws InterruptedException {
+        var publisher = new Slow();
+        var mailbox = new ArrayBlockingQueue<Log>(10);
+        var loop = new PublisherLoop(publisher, mailbox);
+        mailbox.add(log());
+        loop.start(scheduler, Duration.ofMillis(1));
+        while (publisher.running.get() == 0 && publisher.published.get() == 0) {
+            Thread.sleep(1);
+        }
+
+        assertTrue(scheduler.shutdown(Duration.ofSeconds(5)));
+        assertEquals(1, publisher.published.get());
+        assertEquals(0, publisher.running.get());
+    }
+}
@@ -0,0 +1,51 @@
+package dev.mccue.log.alpha.publisher;
+
+import dev.mccue.log.alpha.Log;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PublisherMetricsTest {
+    private static Log log() {
+        return new Log(Log.Level.INFO, new Log.Category("test", "metrics"), List.of());
+    }
+
+    @Test
+    public void theHighWaterMarkIsTheDeepestTheMailboxHasBeen() {
+        Publisher publisher = logs -> logs.clear();
+        GlobalFanOutLogger.registerPublisher(publisher, new ArrayBlockingQueue<>(100), Duration.ofHours(1));
+        try {
+            for (int i = 0; i < 40; i++) {
+                GlobalFanOutLogger.log(log());
+            }
+            var metrics = GlobalFanOutLogger.metrics().stream()
+                    .filter(m -> m.publisher() == publisher)
+                    .findFirst()
+                    .orElseThrow();
+            // Nothing has been drained yet, so only the mailbox can have seen these.
+            assertEquals(40, metrics.snapshot().mailboxHighWaterMark());
+            assertEquals(40, metrics.snapshot().mailboxDepth());
+        } finally {
+            GlobalFanOutLogger.deregisterPublisher(publisher);
+        }
+    }
+
+    @Test
+    public void ratesAreUpToDateWhenRead() throws InterruptedException {
+        var metrics = new PublisherMetrics(logs -> logs.clear(), new ArrayBlockingQueue<>(1), 10);
+        for (int i = 0; i < 1_000; i++) {
+            metrics.enqueued(1);
+        }
+        Thread.sleep(50);
+        double rate = metrics.getEnqueueRate();
+        assertTrue(rate > 0, "rate was " + rate);
+
+        Thread.sleep(200);
+        assertTrue(metrics.getEnqueueRate() < rate, "the rate falls off while nothing is logged");
+    }
+}
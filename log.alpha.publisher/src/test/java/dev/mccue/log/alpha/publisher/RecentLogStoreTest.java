@@ -0,0 +1,156 @@
+package dev.mccue.log.alpha.publisher;
+
+import dev.mccue.log.alpha.Flake;
+import dev.mccue.log.alpha.Log;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RecentLogStoreTest {
+    private static final Log.Category REQUESTS = new Log.Category("test", "requests");
+    private static final Log.Category JOBS = new Log.Category("test", "jobs");
+    private static final Instant START = Instant.parse("2024-01-01T00:00:00Z");
+
+    /**
+     * A log stamped n seconds after START, with "n" set to n.
+     */
+    private static Log log(int n, Log.Level level, Log.Category category, Log.Entry... entries) {
+        var at = START.plusSeconds(n);
+        var all = new ArrayList<Log.Entry>(List.of(entries));
+        all.add(Log.Entry.of("n", n));
+        return new Log(
+                Log.Context.current(),
+                Thread.currentThread(),
+                Flake.makeFlake(at.getEpochSecond() * 1_000_000_000L, n, n),
+                new Log.Occurrence.PointInTime(at),
+                level,
+                category,
+                all
+        );
+    }
+
+    private static void publish(RecentLogStore store, List<Log> logs) {
+        var buffer = LogBuffer.create(logs.size());
+        for (var log : logs) {
+            buffer = buffer.enqueue(log);
+        }
+        assertEquals(0, store.publish(buffer).size());
+    }
+
+    private static List<Integer> numbers(List<Log> logs) {
+        var numbers = new ArrayList<Integer>();
+        for (var log : logs) {
+            for (var entry : log.entries()) {
+                if (entry.key().equals("n")) {
+                    numbers.add(((Log.Entry.Value.Integer) entry.value()).value());
+                }
+            }
+        }
+        return numbers;
+    }
+
+    private static List<Log> sample() {
+        var logs = new ArrayList<Log>();
+        for (int n = 0; n < 20; n++) {
+            logs.add(log(
+                    n,
+                    n % 5 == 0 ? Log.Level.ERROR : Log.Level.INFO,
+                    n % 2 == 0 ? REQUESTS : JOBS,
+                    Log.Entry.of("trace-id", "t" + n % 3)
+            ));
+        }
+        return logs;
+    }
+
+    @Test
+    public void returnsTheNewestFirstUpToTheLimit() {
+        var store = new RecentLogStore();
+        publish(store, sample());
+
+        assertEquals(20, store.size());
+        assertEquals(List.of(19, 18, 17), numbers(store.query(RecentLogStore.Query.ALL.withLimit(3))));
+    }
+
+    @Test
+    public void everyConstraintMustMatch() {
+        var store = new RecentLogStore();
+        publish(store, sample());
+
+        assertEquals(List.of(15, 10, 5, 0), numbers(store.query(
+                RecentLogStore.Query.ALL.withMinimumLevel(Log.Level.WARN)
+        )));
+        assertEquals(List.of(10, 0), numbers(store.query(
+                RecentLogStore.Query.ALL
+                        .withMinimumLevel(Log.Level.ERROR)
+                        .withCategory(REQUESTS)
+        )));
+        assertEquals(List.of(18, 12, 6, 0), numbers(store.query(
+                RecentLogStore.Query.ALL
+                        .withCategory(REQUESTS)
+                        .withEntry("trace-id", new Log.Entry.Value.String("t0"))
+        )));
+        assertEquals(List.of(12, 11, 10), numbers(store.query(
+                RecentLogStore.Query.ALL
+                        .withSince(START.plusSeconds(10))
+                        .withUntil(START.plusSeconds(12))
+        )));
+        assertEquals(List.of(19, 18), numbers(store.query(
+                RecentLogStore.Query.ALL.withSince(START.plusSeconds(18))
+        )));
+        assertEquals(List.of(1, 0), numbers(store.query(
+                RecentLogStore.Query.ALL.withUntil(START.plusSeconds(1))
+        )));
+    }
+
+    @Test
+    public void indexedEntriesAreFoundThroughTheContext() {
+        var store = new RecentLogStore();
+        var logs = new ArrayList<Log>();
+        Log.withContext(List.of(Log.Entry.of("trace-id", "from-context")), () -> {
+            logs.add(log(1, Log.Level.INFO, REQUESTS));
+        });
+        logs.add(log(2, Log.Level.INFO, REQUESTS));
+        publish(store, logs);
+
+        assertEquals(List.of(1), numbers(store.query(
+                RecentLogStore.Query.ALL.withEntry("trace-id", new Log.Entry.Value.String("from-context"))
+        )));
+    }
+
+    @Test
+    public void evictsTheOldestLogsFromEveryIndex() {
+        var store = new RecentLogStore(RecentLogStore.Options.DEFAULT.withMaxBytes(2_000));
+        publish(store, sample());
+
+        int kept = store.size();
+        assertTrue(kept > 0 && kept < 20, "kept " + kept);
+        int oldest = 20 - kept;
+        for (var query : List.of(
+                RecentLogStore.Query.ALL,
+                RecentLogStore.Query.ALL.withMinimumLevel(Log.Level.ERROR),
+                RecentLogStore.Query.ALL.withCategory(REQUESTS),
+                RecentLogStore.Query.ALL.withEntry("trace-id", new Log.Entry.Value.String("t0")),
+                RecentLogStore.Query.ALL.withSince(START)
+        )) {
+            for (int n : numbers(store.query(query))) {
+                assertTrue(n >= oldest, query + " found evicted log " + n);
+            }
+        }
+        assertEquals(kept, store.query(RecentLogStore.Query.ALL.withSince(START)).size());
+    }
+
+    @Test
+    public void onlyIndexedKeysCanBeQueried() {
+        var store = new RecentLogStore(RecentLogStore.Options.DEFAULT.withIndexedKeys(Set.of("user-id")));
+        assertThrows(IllegalArgumentException.class, () -> store.query(
+                RecentLogStore.Query.ALL.withEntry("trace-id", new Log.Entry.Value.String("t0"))
+        ));
+    }
+}
@@ -0,0 +1,86 @@
+package dev.mccue.log.alpha.publisher;
+
+import dev.mccue.log.alpha.Log;
+import dev.mccue.log.alpha.LogFilter;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class RoutingTableTest {
+    private static Log log(Log.Level level, String namespace, Log.Entry... entries) {
+        return new Log(level, new Log.Category(namespace, "event"), List.of(entries));
+    }
+
+    @Test
+    public void routesByLevel() {
+        var table = RoutingTable.compile(List.of(
+                Route.ALL,
+                Route.ALL.withMinimumLevel(Log.Level.WARN)
+        ));
+        assertEquals(0b01, table.route(log(Log.Level.DEBUG, "com.example")));
+        assertEquals(0b11, table.route(log(Log.Level.WARN, "com.example")));
+        assertEquals(0b11, table.route(log(Log.Level.ERROR, "com.example")));
+    }
+
+    @Test
+    public void namespacePrefixesMatchWholeSegments() {
+        var table = RoutingTable.compile(List.of(
+                Route.ALL.withNamespacePrefixes(Set.of("com.example")),
+                Route.ALL.withNamespacePrefixes(Set.of("com.example.db", "org")),
+                Route.ALL
+        ));
+        assertEquals(0b101, table.route(log(Log.Level.INFO, "com.example")));
+        assertEquals(0b101, table.route(log(Log.Level.INFO, "com.example.http")));
+        assertEquals(0b111, table.route(log(Log.Level.INFO, "com.example.db.Pool")));
+        assertEquals(0b100, table.route(log(Log.Level.INFO, "com.examples")));
+        assertEquals(0b100, table.route(log(Log.Level.INFO, "com")));
+        assertEquals(0b110, table.route(log(Log.Level.INFO, "org.acme")));
+        // Answered from the cache the second time.
+        assertEquals(0b111, table.route(log(Log.Level.INFO, "com.example.db.Pool")));
+    }
+
+    @Test
+    public void entryKeysMatchAnyKeyIncludingTheContext() {
+        var table = RoutingTable.compile(List.of(
+                Route.ALL.withEntryKeys(Set.of("trace-id", "span-id")),
+                Route.ALL.withEntryKeys(Set.of("audit"))
+        ));
+        assertEquals(0b00, table.route(log(Log.Level.INFO, "app")));
+        assertEquals(0b01, table.route(log(Log.Level.INFO, "app", Log.Entry.of("span-id", "s1"))));
+        assertEquals(0b11, table.route(log(
+                Log.Level.INFO,
+                "app",
+                Log.Entry.of("trace-id", "t1"),
+                Log.Entry.of("audit", true)
+        )));
+        var routed = new ArrayList<Long>();
+        Log.withContext(List.of(Log.Entry.of("audit", true)), () -> {
+            routed.add(table.route(log(Log.Level.INFO, "app")));
+        });
+        assertEquals(List.of(0b10L), routed);
+    }
+
+    @Test
+    public void filtersAreAskedLast() {
+        var table = RoutingTable.compile(List.of(
+                Route.ALL.withFilter(LogFilter.compile("http.status >= 500")),
+                Route.ALL.withMinimumLevel(Log.Level.ERROR).withFilter(LogFilter.compile("has(http.status)"))
+        ));
+        assertEquals(0b01, table.route(log(Log.Level.INFO, "app", Log.Entry.of("http.status", 503))));
+        assertEquals(0b10, table.route(log(Log.Level.ERROR, "app", Log.Entry.of("http.status", 404))));
+        assertEquals(0b00, table.route(log(Log.Level.INFO, "app")));
+    }
+
+    @Test
+    public void allowsSixtyFourRoutes() {
+        var table = RoutingTable.compile(Collections.nCopies(64, Route.ALL));
+        assertEquals(-1L, table.route(log(Log.Level.INFO, "app")));
+        assertThrows(IllegalStateException.class, () -> RoutingTable.compile(Collections.nCopies(65, Route.ALL)));
+    }
+}
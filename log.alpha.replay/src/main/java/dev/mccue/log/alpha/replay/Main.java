@@ -0,0 +1,200 @@
+package dev.mccue.log.alpha.replay;
+
+import dev.mccue.log.alpha.file.FilePublisher;
+import dev.mccue.log.alpha.http.BulkFormat;
+import dev.mccue.log.alpha.http.HttpBulkPublisher;
+import dev.mccue.log.alpha.publisher.Publisher;
+import dev.mccue.log.alpha.socket.SocketPublisher;
+import dev.mccue.log.alpha.socket.SyslogPublisher;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.UnixDomainSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Replays archived logs into a publisher from the command line.
+ *
+ * {@snippet :
+ * // java --module dev.mccue.log.alpha.replay/dev.mccue.log.alpha.replay.Main \
+ * //     --threads 8 elasticsearch:http://localhost:9200/logs/_bulk /var/log/app/
+ * }
+ */
+public final class Main {
+    private static final String USAGE = """
+            Usage: replay [options] <publisher> <file or directory>...
+
+            Replays NDJSON and segment files, in the order given. Directories are replayed in the
+            order of their file names. Exits with status 1 if any log couldn't be sent.
+
+            Publishers:
+              file:<directory>          Segment files, as written by FilePublisher
+              tcp:<host>:<port>         Length prefixed JSON over TCP
+              unix:<path>               Length prefixed JSON over a Unix domain socket
+              syslog:<host>:<port>      RFC 5424 syslog over TCP
+              http:<url>                NDJSON bulk requests
+              elasticsearch:<url>       Elasticsearch or OpenSearch _bulk requests
+              loki:<url>                Loki push requests
+
+            Options:
+              --threads <n>             Threads parsing input
+              --split-bytes <n>         Bytes each thread parses at a time
+              --batch-size <n>          Logs enqueued between calls to the publisher
+              --sort-by-flake           Read everything, then publish in flake order
+            """;
+
+    private Main() {}
+
+    public static void main(String[] args) throws InterruptedException {
+        var options = Replay.Options.DEFAULT;
+        var positional = new ArrayList<String>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--threads" -> options = options.withThreads(Integer.parseInt(args[++i]));
+                    case "--split-bytes" -> options = options.withSplitBytes(Long.parseLong(args[++i]));
+                    case "--batch-size" -> options = options.withBatchSize(Integer.parseInt(args[++i]));
+                    case "--sort-by-flake" -> options = options.withSortByFlake(true);
+                    case "--help", "-h" -> {
+                        System.out.print(USAGE);
+                        return;
+                    }
+                    default -> positional.add(args[i]);
+                }
+            }
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.printf("Bad option: %s%n%n%s", e.getMessage(), USAGE);
+            System.exit(2);
+        }
+        if (positional.size() < 2) {
+            System.err.print(USAGE);
+            System.exit(2);
+        }
+
+        Publisher publisher;
+        List<Path> inputs;
+        try {
+            publisher = publisher(positional.get(0));
+            inputs = inputs(positional.subList(1, positional.size()));
+        } catch (IllegalArgumentException | IOException e) {
+            System.err.printf("%s%n%n%s", e.getMessage(), USAGE);
+            System.exit(2);
+            return;
+        }
+
+        int status = 0;
+        try {
+            var report = Replay.replay(inputs, publisher, options);
+            flush(publisher, options.stallTimeout());
+            long dropped = droppedLogs(publisher);
+            System.out.printf(
+                    "Replayed %d logs from %d files in %.3fs: %.0f logs/s, %.1f MB/s%s%s%n",
+                    report.logs(),
+                    inputs.size(),
+                    report.elapsed().toNanos() / 1e9,
+                    report.logsPerSecond(),
+                    report.megabytesPerSecond(),
+                    report.malformed() == 0 ? "" : ", " + report.malformed() + " malformed lines skipped",
+                    dropped == 0 ? "" : ", " + dropped + " logs dropped by the publisher"
+            );
+            if (dropped != 0) {
+                status = 1;
+            }
+        } catch (IOException e) {
+            System.err.printf("Failed to replay logs: %s%n", e);
+            status = 1;
+        } finally {
+            close(publisher);
+        }
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    static Publisher publisher(String spec) {
+        int colon = spec.indexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException("Unknown publisher: " + spec);
+        }
+        var kind = spec.substring(0, colon);
+        var target = spec.substring(colon + 1);
+        return switch (kind) {
+            case "file" -> new FilePublisher(Path.of(target));
+            case "tcp" -> new SocketPublisher(hostAndPort(target));
+            case "unix" -> new SocketPublisher(UnixDomainSocketAddress.of(target));
+            case "syslog" -> new SyslogPublisher(hostAndPort(target));
+            case "http" -> new HttpBulkPublisher(URI.create(target), BulkFormat.ndjson());
+            case "elasticsearch" -> new HttpBulkPublisher(URI.create(target), BulkFormat.elasticsearch());
+            case "loki" -> new HttpBulkPublisher(URI.create(target), BulkFormat.loki(Map.of("source", "log.alpha-replay")));
+            default -> throw new IllegalArgumentException("Unknown publisher: " + spec);
+        };
+    }
+
+    private static InetSocketAddress hostAndPort(String target) {
+        int colon = target.lastIndexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException("Expected <host>:<port>, got " + target);
+        }
+        return new InetSocketAddress(target.substring(0, colon), Integer.parseInt(target.substring(colon + 1)));
+    }
+
+    private static List<Path> inputs(List<String> arguments) throws IOException {
+        var inputs = new ArrayList<Path>();
+        for (var argument : arguments) {
+            var path = Path.of(argument);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> files = Files.list(path)) {
+                    files.filter(Files::isRegularFile).sorted().forEach(inputs::add);
+                }
+            } else if (Files.isRegularFile(path)) {
+                inputs.add(path);
+            } else {
+                throw new IOException("No such file: " + path);
+            }
+        }
+        return inputs;
+    }
+
+    /**
+     * Waits for the publisher to send what it has taken from the buffer but not yet written, so
+     * that closing it doesn't throw those logs away.
+     *
+     * @throws IOException If it couldn't send them within the timeout.
+     */
+    static void flush(Publisher publisher, Duration timeout) throws IOException {
+        if (publisher instanceof SocketPublisher socket && !socket.flush(timeout)) {
+            throw new IOException(
+                    socket + " still had " + socket.backlogBytes() + " bytes to send after " + timeout
+            );
+        }
+    }
+
+    /**
+     * @return How many logs the publisher dropped rather than send, or 0 if it doesn't drop any.
+     */
+    static long droppedLogs(Publisher publisher) {
+        return switch (publisher) {
+            case SocketPublisher socket -> socket.droppedLogs();
+            case SyslogPublisher syslog -> syslog.droppedLogs();
+            case HttpBulkPublisher http -> http.droppedLogs();
+            default -> 0;
+        };
+    }
+
+    private static void close(Publisher publisher) {
+        switch (publisher) {
+            case FilePublisher file -> file.close();
+            case SocketPublisher socket -> socket.close();
+            case SyslogPublisher syslog -> syslog.close();
+            default -> {
+            }
+        }
+    }
+}
@@ -0,0 +1,428 @@
+package dev.mccue.log.alpha.replay;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import dev.mccue.log.alpha.Log;
+import dev.mccue.log.alpha.file.SegmentReader;
+import dev.mccue.log.alpha.jackson.LogDeserializer;
+import dev.mccue.log.alpha.publisher.LogBuffer;
+import dev.mccue.log.alpha.publisher.Publisher;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads logs archived by the file publishers and pushes them through a {@link Publisher} as fast
+ * as it will take them, such as to backfill a sink after an outage.
+ *
+ * <p>Inputs can be NDJSON files written by {@link dev.mccue.log.alpha.jackson.LogSerializer},
+ * such as plain segments from {@link dev.mccue.log.alpha.file.FilePublisher}, or compressed
+ * segment files. Each input is cut into splits, byte ranges ending on a line break for NDJSON or
+ * runs of blocks for segments, which are parsed in parallel. Splits are published in the order
+ * they appear in the inputs, with a bounded number parsed ahead, so memory use doesn't grow with
+ * the size of the inputs.</p>
+ *
+ * <p>With {@link Options#sortByFlake()}, every log is read first and they are published in flake
+ * order. That needs memory for all of them.</p>
+ *
+ * <p>Logs are handed to the publisher in batches of {@link Options#batchSize()}. A publisher which
+ * keeps logs in its buffer, such as one waiting for acknowledgements, is called again until it
+ * has taken them all, and replaying fails if it makes no progress for
+ * {@link Options#stallTimeout()}.</p>
+ */
+public final class Replay {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    static {
+        var module = new SimpleModule();
+        module.addDeserializer(Log.class, new LogDeserializer());
+        OBJECT_MAPPER.registerModule(module);
+    }
+
+    // How many malformed lines are printed before the rest are only counted.
+    private static final int MAX_MALFORMED_REPORTED = 10;
+
+    private final Publisher publisher;
+    private final Options options;
+    private final AtomicLong malformed;
+    private final AtomicLong bytesRead;
+
+    private LogBuffer buffer;
+    private long unpublished;
+    private long published;
+
+    private Replay(Publisher publisher, Options options) {
+        this.publisher = publisher;
+        this.options = options;
+        this.malformed = new AtomicLong();
+        this.bytesRead = new AtomicLong();
+        this.buffer = LogBuffer.create(options.bufferSize);
+    }
+
+    /**
+     * How a replay went.
+     *
+     * @param logs How many logs were published.
+     * @param malformed How many lines couldn't be read as logs, and were skipped.
+     * @param bytesRead How many bytes of NDJSON were parsed, after inflating segments.
+     * @param elapsed How long it took.
+     */
+    public record Report(long logs, long malformed, long bytesRead, Duration elapsed) {
+        public double logsPerSecond() {
+            return logs / Math.max(1e-9, elapsed.toNanos() / 1e9);
+        }
+
+        public double megabytesPerSecond() {
+            return bytesRead / 1e6 / Math.max(1e-9, elapsed.toNanos() / 1e9);
+        }
+    }
+
+    /**
+     * Publishes every log in the inputs.
+     *
+     * @param inputs NDJSON or segment files, in the order to replay them.
+     * @throws IOException If an input couldn't be read, or the publisher stopped taking logs.
+     */
+    public static Report replay(List<Path> inputs, Publisher publisher, Options options)
+            throws IOException, InterruptedException {
+        Objects.requireNonNull(inputs, "inputs must not be null");
+        Objects.requireNonNull(publisher, "publisher must not be null");
+        Objects.requireNonNull(options, "options must not be null");
+        return new Replay(publisher, options).run(inputs);
+    }
+
+    public static Report replay(List<Path> inputs, Publisher publisher) throws IOException, InterruptedException {
+        return replay(inputs, publisher, Options.DEFAULT);
+    }
+
+    private Report run(List<Path> inputs) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        var splits = new ArrayList<Callable<List<Log>>>();
+        for (var input : inputs) {
+            split(input, splits);
+        }
+
+        var count = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(options.threads, runnable -> {
+            var thread = new Thread(runnable, "log.alpha-replay-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            var sorted = options.sortByFlake ? new ArrayList<Log>() : null;
+            var parsing = new ArrayDeque<Future<List<Log>>>();
+            int next = 0;
+            while (next < splits.size() || !parsing.isEmpty()) {
+                while (next < splits.size() && parsing.size() < options.threads * 2) {
+                    parsing.add(executor.submit(splits.get(next++)));
+                }
+                List<Log> logs;
+                try {
+                    logs = parsing.poll().get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException io) {
+                        throw io;
+                    }
+                    throw new IOException(e.getCause());
+                }
+                if (sorted != null) {
+                    sorted.addAll(logs);
+                } else {
+                    publishAll(logs);
+                }
+            }
+            if (sorted != null) {
+                var array = sorted.toArray(Log[]::new);
+                sorted = null;
+                Arrays.parallelSort(array, Comparator.comparing(Log::flake));
+                publishAll(Arrays.asList(array));
+            }
+            drain();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return new Report(published, malformed.get(), bytesRead.get(), Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private void split(Path input, List<Callable<List<Log>>> splits) throws IOException {
+        if (SegmentReader.isSegment(input)) {
+            List<SegmentReader.Block> blocks;
+            try (var reader = SegmentReader.open(input)) {
+                blocks = reader.blocks();
+            }
+            int from = 0;
+            long bytes = 0;
+            for (int i = 0; i < blocks.size(); i++) {
+                bytes += blocks.get(i).uncompressedLength();
+                if (bytes >= options.splitBytes || i == blocks.size() - 1) {
+                    var run = blocks.subList(from, i + 1);
+                    splits.add(() -> parseBlocks(input, run));
+                    from = i + 1;
+                    bytes = 0;
+                }
+            }
+        } else {
+            long size = Files.size(input);
+            for (long start = 0; start < size; start += options.splitBytes) {
+                long from = start;
+                long to = Math.min(size, start + options.splitBytes);
+                splits.add(() -> parseRange(input, from, to));
+            }
+        }
+    }
+
+    private List<Log> parseBlocks(Path input, List<SegmentReader.Block> blocks) throws IOException {
+        var logs = new ArrayList<Log>();
+        try (var reader = SegmentReader.open(input)) {
+            for (var block : blocks) {
+                var bytes = reader.read(block);
+                parseLines(input, bytes, 0, bytes.length, logs);
+            }
+        }
+        return logs;
+    }
+
+    /**
+     * Parses the lines which start in the range. The last may end after it.
+     */
+    private List<Log> parseRange(Path input, long from, long to) throws IOException {
+        try (var channel = FileChannel.open(input, StandardOpenOption.READ)) {
+            long size = channel.size();
+            // Start from the byte before, to tell whether a line starts exactly at from.
+            long position = Math.max(0, from - 1);
+            int limit = (int) (to - position);
+            var buffer = ByteBuffer.allocate(limit + 64 * 1024);
+            while (true) {
+                int read = channel.read(buffer, position + buffer.position());
+                if (read < 0 || position + buffer.position() >= size) {
+                    break;
+                }
+                // Read on until the last line starting in the range has ended.
+                if (buffer.position() >= limit && endsLine(buffer, limit - 1)) {
+                    break;
+                }
+                if (!buffer.hasRemaining()) {
+                    buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer.flip());
+                }
+            }
+
+            var bytes = buffer.array();
+            int length = buffer.position();
+            int start = 0;
+            if (from > 0) {
+                // Skip to the first line starting at or after from.
+                while (start < length && bytes[start] != '\n') {
+                    start++;
+                }
+                start++;
+            }
+            int end = start;
+            var logs = new ArrayList<Log>();
+            while (end < length && end < limit) {
+                while (end < length && bytes[end] != '\n') {
+                    end++;
+                }
+                end++;
+            }
+            parseLines(input, bytes, start, Math.min(end, length), logs);
+            return logs;
+        }
+    }
+
+    /**
+     * @return Whether there is a line break at or after index in what has been read.
+     */
+    private static boolean endsLine(ByteBuffer buffer, int index) {
+        var bytes = buffer.array();
+        for (int i = Math.max(0, index); i < buffer.position(); i++) {
+            if (bytes[i] == '\n') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void parseLines(Path input, byte[] bytes, int from, int to, List<Log> logs) {
+        bytesRead.addAndGet(to - from);
+        int start = from;
+        while (start < to) {
+            int end = start;
+            while (end < to && bytes[end] != '\n') {
+                end++;
+            }
+            if (end > start && !(end - start == 1 && bytes[start] == '\r')) {
+                try {
+                    logs.add(OBJECT_MAPPER.readValue(bytes, start, end - start, Log.class));
+                } catch (IOException e) {
+                    if (malformed.incrementAndGet() <= MAX_MALFORMED_REPORTED) {
+                        System.err.printf("Skipping malformed line in %s: %s%n", input, e.getMessage());
+                    }
+                }
+            }
+            start = end + 1;
+        }
+    }
+
+    private void publishAll(List<Log> logs) throws IOException, InterruptedException {
+        for (var log : logs) {
+            if (buffer.size() == options.bufferSize) {
+                publishUntil(options.bufferSize - 1);
+            }
+            buffer = buffer.enqueue(log);
+            if (++unpublished >= options.batchSize) {
+                publishUntil(options.bufferSize - 1);
+            }
+        }
+    }
+
+    private void drain() throws IOException, InterruptedException {
+        publishUntil(0);
+    }
+
+    /**
+     * Publishes until at most the given number of logs are left in the buffer.
+     */
+    private void publishUntil(int left) throws IOException, InterruptedException {
+        long stalledSince = System.nanoTime();
+        do {
+            int before = buffer.size();
+            buffer = publisher.publish(buffer);
+            published += before - buffer.size();
+            if (buffer.size() < before) {
+                stalledSince = System.nanoTime();
+            } else if (buffer.size() > left) {
+                if (System.nanoTime() - stalledSince > options.stallTimeout.toNanos()) {
+                    throw new IOException(publisher + " took no logs for " + options.stallTimeout);
+                }
+                Thread.sleep(10);
+            }
+        } while (buffer.size() > left);
+        unpublished = 0;
+    }
+
+    /**
+     * @param threads How many threads parse inputs.
+     * @param splitBytes About how many bytes of NDJSON each thread parses at a time.
+     * @param batchSize How many logs to enqueue between calls to the publisher.
+     * @param bufferSize How many logs the buffer handed to the publisher holds.
+     * @param sortByFlake Whether to read every log first and publish them in flake order.
+     * @param stallTimeout How long the publisher may go without taking any logs.
+     */
+    public record Options(
+            int threads,
+            long splitBytes,
+            int batchSize,
+            int bufferSize,
+            boolean sortByFlake,
+            Duration stallTimeout
+    ) {
+        public static final Options DEFAULT = new Options(
+                Runtime.getRuntime().availableProcessors(),
+                8L * 1024 * 1024,
+                5_000,
+                50_000,
+                false,
+                Duration.ofMinutes(1)
+        );
+
+        public Options {
+            Objects.requireNonNull(stallTimeout, "stallTimeout must not be null");
+            if (threads <= 0) {
+                throw new IllegalArgumentException("threads must be positive");
+            }
+            if (splitBytes <= 0 || splitBytes > Integer.MAX_VALUE / 2) {
+                throw new IllegalArgumentException("splitBytes must be positive and under 1GB");
+            }
+            if (batchSize <= 0) {
+                throw new IllegalArgumentException("batchSize must be positive");
+            }
+            if (bufferSize < batchSize) {
+                throw new IllegalArgumentException("bufferSize must be at least batchSize");
+            }
+        }
+
+        public Options withThreads(int threads) {
+            return new Options(
+                    threads,
+                    this.splitBytes,
+                    this.batchSize,
+                    this.bufferSize,
+                    this.sortByFlake,
+                    this.stallTimeout
+            );
+        }
+
+        public Options withSplitBytes(long splitBytes) {
+            return new Options(
+                    this.threads,
+                    splitBytes,
+                    this.batchSize,
+                    this.bufferSize,
+                    this.sortByFlake,
+                    this.stallTimeout
+            );
+        }
+
+        public Options withBatchSize(int batchSize) {
+            return new Options(
+                    this.threads,
+                    this.splitBytes,
+                    batchSize,
+                    Math.max(this.bufferSize, batchSize),
+                    this.sortByFlake,
+                    this.stallTimeout
+            );
+        }
+
+        public Options withBufferSize(int bufferSize) {
+            return new Options(
+                    this.threads,
+                    this.splitBytes,
+                    this.batchSize,
+                    bufferSize,
+                    this.sortByFlake,
+                    this.stallTimeout
+            );
+        }
+
+        public Options withSortByFlake(boolean sortByFlake) {
+            return new Options(
+                    this.threads,
+                    this.splitBytes,
+                    this.batchSize,
+                    this.bufferSize,
+                    sortByFlake,
+                    this.stallTimeout
+            );
+        }
+
+        public Options withStallTimeout(Duration stallTimeout) {
+            return new Options(
+                    this.threads,
+                    this.splitBytes,
+                    this.batchSize,
+                    this.bufferSize,
+                    this.sortByFlake,
+                    stallTimeout
+            );
+        }
+    }
+}
@@ -0,0 +1,10 @@
+module dev.mccue.log.alpha.replay {
+    requires transitive dev.mccue.log.alpha;
+    requires transitive dev.mccue.log.alpha.publisher;
+    requires dev.mccue.log.alpha.json;
+    requires dev.mccue.log.alpha.file;
+    requires dev.mccue.log.alpha.socket;
+    requires dev.mccue.log.alpha.http;
+
+    exports dev.mccue.log.alpha.replay;
+}
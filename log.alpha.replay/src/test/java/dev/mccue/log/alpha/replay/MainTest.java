@@ -0,0 +1,75 @@
+package dev.mccue.log.alpha.replay;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.mccue.log.alpha.publisher.LogBuffer;
+import dev.mccue.log.alpha.socket.SocketPublisher;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MainTest {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @Test
+    public void everyLogReachesASocketBeforeItIsClosed() throws Exception {
+        var input = ReplayTest.write(Files.createTempFile("replay-test", ".ndjson"), ReplayTest.logs(5_000));
+        try (var server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            var received = CompletableFuture.supplyAsync(() -> {
+                int last = -1;
+                try (var socket = server.accept(); var in = new DataInputStream(socket.getInputStream())) {
+                    for (int i = 0; i < 5_000; i++) {
+                        var json = new byte[in.readInt()];
+                        in.readFully(json);
+                        int n = OBJECT_MAPPER.readTree(json).get("n").asInt();
+                        if (n != last + 1) {
+                            throw new IOException("got " + n + " after " + last);
+                        }
+                        last = n;
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+                return last + 1;
+            });
+            var publisher = (SocketPublisher) Main.publisher("tcp:localhost:" + server.getLocalPort());
+
+            var report = Replay.replay(List.of(input), publisher, Replay.Options.DEFAULT.withBatchSize(100));
+            Main.flush(publisher, Duration.ofSeconds(5));
+            publisher.close();
+
+            assertEquals(5_000, report.logs());
+            assertEquals(5_000, (int) received.get());
+            assertEquals(0, Main.droppedLogs(publisher));
+        } finally {
+            Files.delete(input);
+        }
+    }
+
+    @Test
+    public void flushingFailsWhileTheSocketIsDown() throws IOException {
+        int port;
+        try (var probe = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            port = probe.getLocalPort();
+        }
+        var publisher = new SocketPublisher(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        var logs = LogBuffer.create(10);
+        for (var log : ReplayTest.logs(10)) {
+            logs = logs.enqueue(log);
+        }
+        assertEquals(10, publisher.publish(logs).size());
+
+        assertThrows(IOException.class, () -> Main.flush(publisher, Duration.ofMillis(100)));
+        publisher.close();
+    }
+}
@@ -0,0 +1,185 @@
+package dev.mccue.log.alpha.replay;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import dev.mccue.log.alpha.Flake;
+import dev.mccue.log.alpha.Log;
+import dev.mccue.log.alpha.jackson.LogSerializer;
+import dev.mccue.log.alpha.publisher.LogBuffer;
+import dev.mccue.log.alpha.publisher.Publisher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ReplayTest {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    static {
+        var module = new SimpleModule();
+        module.addSerializer(Log.class, new LogSerializer());
+        OBJECT_MAPPER.registerModule(module);
+    }
+
+    private Path directory;
+
+    @BeforeEach
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("replay-test");
+    }
+
+    @AfterEach
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (var file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Takes every log it is given.
+     */
+    private static final class Collector implements Publisher {
+        final List<Log> logs = new ArrayList<>();
+
+        @Override
+        public LogBuffer publish(LogBuffer buffer) {
+            var items = buffer.items();
+            if (items.isEmpty()) {
+                return buffer;
+            }
+            for (var item : items) {
+                logs.add(item.log());
+            }
+            return buffer.dequeue(items.get(items.size() - 1).offset());
+        }
+    }
+
+    static List<Log> logs(int count) {
+        var logs = new ArrayList<Log>();
+        for (int i = 0; i < count; i++) {
+            logs.add(new Log(Log.Level.INFO, new Log.Category("test", "replay"), List.of(Log.Entry.of("n", i))));
+        }
+        return logs;
+    }
+
+    static Path write(Path file, List<Log> logs) throws IOException {
+        var ndjson = new StringBuilder();
+        for (var log : logs) {
+            ndjson.append(OBJECT_MAPPER.writeValueAsString(log)).append('\n');
+        }
+        return Files.writeString(file, ndjson, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return The "n" of each log. Ints come back from JSON as longs.
+     */
+    private static List<Long> numbers(List<Log> logs) {
+        var numbers = new ArrayList<Long>();
+        for (var log : logs) {
+            for (var entry : log.entries()) {
+                if (entry.value() instanceof Log.Entry.Value.Integer n && entry.key().equals("n")) {
+                    numbers.add((long) n.value());
+                } else if (entry.value() instanceof Log.Entry.Value.Long n && entry.key().equals("n")) {
+                    numbers.add(n.value());
+                }
+            }
+        }
+        return numbers;
+    }
+
+    @Test
+    public void publishesEverySplitInOrder() throws Exception {
+        var logs = logs(2_000);
+        var input = write(directory.resolve("logs.ndjson"), logs);
+        var collector = new Collector();
+
+        var report = Replay.replay(
+                List.of(input),
+                collector,
+                Replay.Options.DEFAULT.withThreads(4).withSplitBytes(4 * 1024).withBatchSize(100)
+        );
+
+        assertEquals(2_000, report.logs());
+        assertEquals(0, report.malformed());
+        assertEquals(Files.size(input), report.bytesRead());
+        assertEquals(numbers(logs), numbers(collector.logs));
+    }
+
+    @Test
+    public void skipsMalformedLines() throws Exception {
+        var input = directory.resolve("logs.ndjson");
+        Files.writeString(
+                input,
+                OBJECT_MAPPER.writeValueAsString(logs(1).get(0)) + "\nnot json\n\n{\"also\": \"not a log\"}\n"
+        );
+        var collector = new Collector();
+
+        var report = Replay.replay(List.of(input), collector);
+
+        assertEquals(1, report.logs());
+        assertEquals(2, report.malformed());
+        assertEquals(1, collector.logs.size());
+    }
+
+    @Test
+    public void skipsLinesWithABadFlakeOrTimestamp() throws Exception {
+        var logs = logs(4);
+        var lines = new ArrayList<String>();
+        for (var log : logs) {
+            lines.add(OBJECT_MAPPER.writeValueAsString(log));
+        }
+        var flake = logs.get(1).flake().toString();
+        lines.set(1, lines.get(1).replace(flake, "!!!"));
+        var timestamp = OBJECT_MAPPER.readTree(lines.get(2)).get("log.alpha/timestamp").asText();
+        lines.set(2, lines.get(2).replace(timestamp, "yesterday"));
+        var input = Files.write(directory.resolve("logs.ndjson"), lines);
+        var collector = new Collector();
+
+        var report = Replay.replay(List.of(input), collector);
+
+        assertEquals(2, report.logs());
+        assertEquals(2, report.malformed());
+        assertEquals(List.of(0L, 3L), numbers(collector.logs));
+    }
+
+    @Test
+    public void sortsByFlakeAcrossInputs() throws Exception {
+        var logs = logs(10);
+        var first = write(directory.resolve("a.ndjson"), logs.subList(5, 10));
+        var second = write(directory.resolve("b.ndjson"), logs.subList(0, 5));
+        var collector = new Collector();
+
+        Replay.replay(List.of(first, second), collector, Replay.Options.DEFAULT.withSortByFlake(true));
+
+        var flakes = new ArrayList<Flake>();
+        for (var log : collector.logs) {
+            flakes.add(log.flake());
+        }
+        assertEquals(logs.stream().map(Log::flake).toList(), flakes);
+    }
+
+    @Test
+    public void failsWhenThePublisherStopsTakingLogs() throws IOException {
+        var input = write(directory.resolve("logs.ndjson"), logs(10));
+        Publisher stuck = buffer -> buffer;
+
+        assertThrows(IOException.class, () -> Replay.replay(
+                List.of(input),
+                stuck,
+                Replay.Options.DEFAULT.withStallTimeout(Duration.ofMillis(100))
+        ));
+    }
+}
@@ -55,29 +55,73 @@ final class SLF4JLogger implements Logger {
     }
 
     private Log.Entry.Value objectToLogValue(Object o) {
-        return new Log.Entry.Value.Lazy(() -> switch (o) {
-            case null -> Log.Entry.Value.Null.INSTANCE;
-            case String s -> new Log.Entry.Value.String(s);
-            case Boolean b -> new Log.Entry.Value.Boolean(b);
-            case Byte b -> new Log.Entry.Value.Byte(b);
-            case Character c -> new Log.Entry.Value.Character(c);
-            case Short s -> new Log.Entry.Value.Short(s);
-            case Integer i -> new Log.Entry.Value.Integer(i);
-            case Long l -> new Log.Entry.Value.Long(l);
-            case Double d -> new Log.Entry.Value.Double(d);
-            case UUID uuid -> new Log.Entry.Value.UUID(uuid);
-            case URI uri -> new Log.Entry.Value.URI(uri);
-            case Instant instant -> new Log.Entry.Value.Instant(instant);
-            case LocalDateTime localDateTime -> new Log.Entry.Value.LocalDateTime(localDateTime);
-            case LocalDate localDate -> new Log.Entry.Value.LocalDate(localDate);
-            case LocalTime localTime -> new Log.Entry.Value.LocalTime(localTime);
-            case Duration duration -> new Log.Entry.Value.Duration(duration);
-            case Throwable t -> new Log.Entry.Value.Throwable(t);
-            case List<?> list -> new Log.Entry.Value.List(list.stream().map(this::objectToLogValue).toList());
-            case Set<?> set -> new Log.Entry.Value.Set(set.stream().map(this::objectToLogValue).collect(Collectors.toUnmodifiableSet()));
-            case Log.Entry.Value v -> v;
-            default -> new Log.Entry.Value.String(o.toString());
-        });
+        return new Log.Entry.Value.Lazy(() -> toLogValue(o));
+    }
+
+    private Log.Entry.Value toLogValue(Object o) {
+        if (o == null) {
+            return Log.Entry.Value.Null.INSTANCE;
+        }
+        else if (o instanceof String s) {
+            return new Log.Entry.Value.String(s);
+        }
+        else if (o instanceof Boolean b) {
+            return new Log.Entry.Value.Boolean(b);
+        }
+        else if (o instanceof Byte b) {
+            return new Log.Entry.Value.Byte(b);
+        }
+        else if (o instanceof Character c) {
+            return new Log.Entry.Value.Character(c);
+        }
+        else if (o instanceof Short s) {
+            return new Log.Entry.Value.Short(s);
+        }
+        else if (o instanceof Integer i) {
+            return new Log.Entry.Value.Integer(i);
+        }
+        else if (o instanceof Long l) {
+            return new Log.Entry.Value.Long(l);
+        }
+        else if (o instanceof Double d) {
+            return new Log.Entry.Value.Double(d);
+        }
+        else if (o instanceof UUID uuid) {
+            return new Log.Entry.Value.UUID(uuid);
+        }
+        else if (o instanceof URI uri) {
+            return new Log.Entry.Value.URI(uri);
+        }
+        else if (o instanceof Instant instant) {
+            return new Log.Entry.Value.Instant(instant);
+        }
+        else if (o instanceof LocalDateTime localDateTime) {
+            return new Log.Entry.Value.LocalDateTime(localDateTime);
+        }
+        else if (o instanceof LocalDate localDate) {
+            return new Log.Entry.Value.LocalDate(localDate);
+        }
+        else if (o instanceof LocalTime localTime) {
+            return new Log.Entry.Value.LocalTime(localTime);
+        }
+        else if (o instanceof Duration duration) {
+            return new Log.Entry.Value.Duration(duration);
+        }
+        else if (o instanceof Throwable t) {
+            return new Log.Entry.Value.Throwable(t);
+        }
+        else if (o instanceof List<?> list) {
+            return new Log.Entry.Value.List(list.stream().map(this::objectToLogValue).toList());
+        }
+        else if (o instanceof Set<?> set) {
+            return new Log.Entry.Value.Set(set.stream().map(this::objectToLogValue).collect(Collectors.toUnmodifiableSet()));
+        }
+        else if (o instanceof Log.Entry.Value v) {
+            return v;
+        }
+        else {
+            return new Log.Entry.Value.String(o.toString());
+        }
     }
 
     private Log.Entry message(String s) {
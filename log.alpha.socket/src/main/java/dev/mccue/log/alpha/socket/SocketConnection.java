@@ -0,0 +1,161 @@
+package dev.mccue.log.alpha.socket;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A non-blocking connection to a TCP or Unix domain socket, which connects lazily and reconnects
+ * after failures.
+ *
+ * <p>Every operation is bounded by a deadline, waiting on a selector rather than blocking, so a
+ * slow or absent peer can't hold up a publish for longer than its timeout. After a failure, no
+ * new connection is tried until the reconnect delay has passed.</p>
+ *
+ * <p>Not thread safe. Publishers guard it with their own lock.</p>
+ */
+final class SocketConnection implements AutoCloseable {
+    private final SocketAddress address;
+    private final long connectTimeoutNanos;
+    private final long reconnectDelayNanos;
+
+    private SocketChannel channel;
+    private Selector selector;
+    private boolean connected;
+    private long connectBy;
+    private long retryAt;
+
+    SocketConnection(SocketAddress address, Duration connectTimeout, Duration reconnectDelay) {
+        this.address = Objects.requireNonNull(address, "address must not be null");
+        this.connectTimeoutNanos = Objects.requireNonNull(connectTimeout, "connectTimeout must not be null").toNanos();
+        this.reconnectDelayNanos = Objects.requireNonNull(reconnectDelay, "reconnectDelay must not be null").toNanos();
+        this.retryAt = System.nanoTime();
+    }
+
+    /**
+     * Writes as much of the buffers as the peer will take before the deadline, using gathering
+     * writes, and connecting first if needed.
+     *
+     * @param deadline The {@link System#nanoTime()} to stop writing at.
+     * @return How many bytes were written. 0 if not connected and it is too soon to try again.
+     * @throws IOException If the connection failed. It is closed, and reconnected after the
+     *                     reconnect delay.
+     */
+    long write(ByteBuffer[] buffers, int offset, int length, long deadline) throws IOException {
+        try {
+            if (!connect(deadline)) {
+                return 0;
+            }
+            long written = 0;
+            int end = offset + length;
+            while (offset < end) {
+                long n = channel.write(buffers, offset, end - offset);
+                written += n;
+                while (offset < end && !buffers[offset].hasRemaining()) {
+                    offset++;
+                }
+                if (offset < end && n == 0 && !await(SelectionKey.OP_WRITE, deadline)) {
+                    break;
+                }
+            }
+            return written;
+        } catch (IOException e) {
+            fail();
+            throw e;
+        }
+    }
+
+    /**
+     * @return Whether there is a connection, after trying to make one if there wasn't.
+     */
+    private boolean connect(long deadline) throws IOException {
+        if (connected) {
+            return true;
+        }
+        if (channel == null) {
+            if (System.nanoTime() - retryAt < 0) {
+                return false;
+            }
+            channel = address instanceof UnixDomainSocketAddress
+                    ? SocketChannel.open(StandardProtocolFamily.UNIX)
+                    : SocketChannel.open();
+            channel.configureBlocking(false);
+            selector = Selector.open();
+            connectBy = System.nanoTime() + connectTimeoutNanos;
+            if (channel.connect(address)) {
+                connected = true;
+                return true;
+            }
+        }
+
+        while (!channel.finishConnect()) {
+            if (System.nanoTime() - connectBy >= 0) {
+                throw new IOException("Timed out connecting to " + address);
+            }
+            if (!await(SelectionKey.OP_CONNECT, deadline - connectBy < 0 ? deadline : connectBy)
+                    && System.nanoTime() - deadline >= 0) {
+                // Out of time for this write, but the connection can finish during the next.
+                return false;
+            }
+        }
+        connected = true;
+        return true;
+    }
+
+    /**
+     * @return Whether the channel became ready before the deadline.
+     */
+    private boolean await(int operation, long deadline) throws IOException {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+            return false;
+        }
+        var key = channel.register(selector, operation);
+        try {
+            return selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining))) > 0;
+        } finally {
+            key.interestOps(0);
+            selector.selectedKeys().clear();
+        }
+    }
+
+    boolean isConnected() {
+        return connected;
+    }
+
+    private void fail() {
+        close();
+        retryAt = System.nanoTime() + reconnectDelayNanos;
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (selector != null) {
+                selector.close();
+            }
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            System.err.printf("Failed to close connection to %s: %s%n", address, e);
+        } finally {
+            selector = null;
+            channel = null;
+            connected = false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SocketConnection[address=" + address + ", connected=" + connected + "]";
+    }
+}
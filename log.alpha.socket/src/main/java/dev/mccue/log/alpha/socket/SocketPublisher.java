@@ -0,0 +1,375 @@
+package dev.mccue.log.alpha.socket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import dev.mccue.log.alpha.Log;
+import dev.mccue.log.alpha.jackson.LogSerializer;
+import dev.mccue.log.alpha.publisher.LogBuffer;
+import dev.mccue.log.alpha.publisher.ParallelEncoder;
+import dev.mccue.log.alpha.publisher.Publisher;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A publisher which sends logs over a TCP or Unix domain socket, such as to a log agent running
+ * alongside the application.
+ *
+ * <p>Each log is sent as a frame of its length, as a big endian 4 byte integer, followed by that
+ * many bytes of JSON written by {@link LogSerializer}.</p>
+ *
+ * <p>Logs are encoded into chunks of frames ahead of the socket, until about
+ * {@link Options#maxBacklogBytes()} of frames are waiting. Each publish writes as much of them as
+ * the socket takes within {@link Options#writeTimeout()}, handing many chunks to a single
+ * gathering write. Logs stay in the {@link LogBuffer} until their frames have been written, so
+ * while the peer is down or slow the buffer fills up rather than logs being lost here.</p>
+ *
+ * <p>The socket is non-blocking, and is reconnected after {@link Options#reconnectDelay()} when it
+ * fails. A frame which was partly written when the connection failed is dropped, since the peer
+ * can't make sense of the rest of it on a new connection. The frames after it are sent on the new
+ * connection.</p>
+ */
+public final class SocketPublisher implements Publisher {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    static {
+        var module = new SimpleModule();
+        module.addSerializer(Log.class, new LogSerializer());
+        OBJECT_MAPPER.registerModule(module);
+    }
+
+    // The most buffers handed to one gathering write. Linux takes at most 1024 at once.
+    private static final int MAX_GATHER = 1024;
+    private static final long FLUSH_RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final SocketAddress address;
+    private final Options options;
+    private final SocketConnection connection;
+    private final ParallelEncoder encoder;
+    private final ArrayDeque<Pending> backlog;
+    private final ByteBuffer[] gather;
+
+    private long backlogBytes;
+    // The offsets of the last log encoded into the backlog, and the last one written from it.
+    private long encodedThrough;
+    private long writtenThrough;
+    private volatile long bytesPublished;
+    private volatile long droppedLogs;
+
+    /**
+     * @param address An {@link java.net.InetSocketAddress} or a
+     *                {@link java.net.UnixDomainSocketAddress}.
+     */
+    public SocketPublisher(SocketAddress address, Options options) {
+        this.address = Objects.requireNonNull(address, "address must not be null");
+        this.options = Objects.requireNonNull(options, "options must not be null");
+        this.connection = new SocketConnection(address, options.connectTimeout, options.reconnectDelay);
+        this.encoder = new ParallelEncoder(
+                (log, out) -> {
+                    var json = OBJECT_MAPPER.writeValueAsBytes(log);
+                    out.write(json.length >>> 24);
+                    out.write(json.length >>> 16);
+                    out.write(json.length >>> 8);
+                    out.write(json.length);
+                    out.write(json);
+                },
+                ParallelEncoder.Options.DEFAULT.withChunkSize(options.framesPerChunk)
+        );
+        this.backlog = new ArrayDeque<>();
+        this.gather = new ByteBuffer[MAX_GATHER];
+    }
+
+    public SocketPublisher(SocketAddress address) {
+        this(address, Options.DEFAULT);
+    }
+
+    /**
+     * The frames of some logs, and the offset of the last of them.
+     */
+    private record Pending(ByteBuffer bytes, long lastOffset) {}
+
+    @Override
+    public synchronized LogBuffer publish(LogBuffer logs) {
+        var items = logs.items();
+        if (!items.isEmpty() && items.get(items.size() - 1).offset() < encodedThrough) {
+            // Offsets went backwards, so this is a different buffer than before.
+            startOver();
+        }
+
+        if (backlogBytes < options.maxBacklogBytes) {
+            encode(items);
+        }
+        writeBacklog(System.nanoTime() + options.writeTimeout.toNanos());
+        return logs.dequeue(writtenThrough);
+    }
+
+    private void encode(List<LogBuffer.OffsetLogPair> items) {
+        var batch = new ArrayList<Log>();
+        var offsets = new long[items.size()];
+        for (var item : items) {
+            if (item != null && item.offset() > encodedThrough) {
+                offsets[batch.size()] = item.offset();
+                batch.add(item.log());
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        long lastOffset = offsets[batch.size() - 1];
+        try {
+            for (var chunk : encoder.encode(batch)) {
+                backlog.add(new Pending(ByteBuffer.wrap(chunk.bytes()), offsets[chunk.to() - 1]));
+                backlogBytes += chunk.bytes().length;
+            }
+        } catch (IOException e) {
+            // Serializing again won't go any better, so there is no use keeping the logs.
+            System.err.printf("Failed to serialize logs for %s: %s%n", address, e);
+            droppedLogs += batch.size();
+            backlog.add(new Pending(ByteBuffer.allocate(0), lastOffset));
+        }
+        encodedThrough = lastOffset;
+    }
+
+    /**
+     * Forgets the backlog, except for the rest of a chunk which is partly written, so the stream
+     * stays in step.
+     */
+    private void startOver() {
+        var partial = backlog.peekFirst();
+        backlog.clear();
+        backlogBytes = 0;
+        if (partial != null && partial.bytes.position() > 0) {
+            backlog.add(new Pending(partial.bytes, 0));
+            backlogBytes = partial.bytes.remaining();
+        }
+        encodedThrough = 0;
+        writtenThrough = 0;
+    }
+
+    /**
+     * @return Whether anything was written.
+     */
+    private boolean writeBacklog(long deadline) {
+        boolean progress = false;
+        retireWritten();
+        while (!backlog.isEmpty()) {
+            int length = 0;
+            long before = 0;
+            for (var pending : backlog) {
+                if (length == gather.length) {
+                    break;
+                }
+                gather[length++] = pending.bytes;
+                before += pending.bytes.remaining();
+            }
+
+            boolean failed = false;
+            try {
+                connection.write(gather, 0, length, deadline);
+            } catch (IOException e) {
+                System.err.printf("Failed to send logs to %s: %s%n", address, e);
+                failed = true;
+            }
+            long after = 0;
+            for (int i = 0; i < length; i++) {
+                after += gather[i].remaining();
+            }
+            Arrays.fill(gather, 0, length, null);
+
+            long written = before - after;
+            progress |= written > 0;
+            bytesPublished += written;
+            backlogBytes -= written;
+            retireWritten();
+            if (failed) {
+                skipCutFrame();
+            }
+            if (failed || written == 0 || System.nanoTime() - deadline >= 0) {
+                break;
+            }
+        }
+        return progress;
+    }
+
+    private void retireWritten() {
+        while (!backlog.isEmpty() && !backlog.peekFirst().bytes.hasRemaining()) {
+            writtenThrough = Math.max(writtenThrough, backlog.pollFirst().lastOffset);
+        }
+    }
+
+    /**
+     * Moves past the frame which the last connection stopped part way through, if it did, so the
+     * next connection starts on a frame boundary.
+     */
+    private void skipCutFrame() {
+        var head = backlog.peekFirst();
+        if (head == null || head.bytes.position() == 0) {
+            return;
+        }
+        var bytes = head.bytes;
+        int frame = 0;
+        while (frame < bytes.position()) {
+            frame += 4 + bytes.getInt(frame);
+        }
+        if (frame > bytes.position()) {
+            droppedLogs++;
+            backlogBytes -= frame - bytes.position();
+            bytes.position(frame);
+            retireWritten();
+        }
+    }
+
+    /**
+     * Writes the backlog until it is empty or the timeout passes, waiting out the reconnect delay
+     * if the connection fails.
+     *
+     * @return Whether the backlog is empty. Its logs can then be dequeued by the next publish.
+     */
+    public synchronized boolean flush(Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (!backlog.isEmpty() && System.nanoTime() - deadline < 0) {
+            if (!writeBacklog(deadline)) {
+                LockSupport.parkNanos(Math.min(FLUSH_RETRY_NANOS, deadline - System.nanoTime()));
+            }
+        }
+        retireWritten();
+        return backlog.isEmpty();
+    }
+
+    /**
+     * @return The bytes of frames written to the socket.
+     */
+    @Override
+    public long bytesPublished() {
+        return bytesPublished;
+    }
+
+    /**
+     * @return How many logs were dropped because the connection failed part way through their
+     *         frame, or they couldn't be serialized.
+     */
+    public long droppedLogs() {
+        return droppedLogs;
+    }
+
+    /**
+     * @return The bytes of frames waiting to be written.
+     */
+    public synchronized long backlogBytes() {
+        return backlogBytes;
+    }
+
+    /**
+     * Writes what it can of the backlog within the write timeout, then closes the connection. The
+     * next publish opens a new one and writes the rest.
+     *
+     * <p>A frame which was partly written is dropped, since the rest of it can't be sent on a new
+     * connection.</p>
+     */
+    public synchronized void close() {
+        flush(options.writeTimeout);
+        connection.close();
+        skipCutFrame();
+    }
+
+    @Override
+    public String toString() {
+        return "SocketPublisher[address=" + address + ", options=" + options + "]";
+    }
+
+    /**
+     * @param connectTimeout How long to wait for a connection before giving up and trying again
+     *                       after the reconnect delay.
+     * @param writeTimeout How long each publish may spend writing the backlog.
+     * @param reconnectDelay How long to wait after a failure before connecting again.
+     * @param maxBacklogBytes How many bytes of frames to encode ahead of the socket. Logs past
+     *                        that wait, unencoded, in the {@link LogBuffer}.
+     * @param framesPerChunk How many frames are encoded into each buffer of a gathering write.
+     */
+    public record Options(
+            Duration connectTimeout,
+            Duration writeTimeout,
+            Duration reconnectDelay,
+            long maxBacklogBytes,
+            int framesPerChunk
+    ) {
+        public static final Options DEFAULT = new Options(
+                Duration.ofSeconds(5),
+                Duration.ofSeconds(1),
+                Duration.ofSeconds(1),
+                4L * 1024 * 1024,
+                64
+        );
+
+        public Options {
+            Objects.requireNonNull(connectTimeout, "connectTimeout must not be null");
+            Objects.requireNonNull(writeTimeout, "writeTimeout must not be null");
+            Objects.requireNonNull(reconnectDelay, "reconnectDelay must not be null");
+            if (maxBacklogBytes < 0) {
+                throw new IllegalArgumentException("maxBacklogBytes must not be negative");
+            }
+            if (framesPerChunk < 1) {
+                throw new IllegalArgumentException("framesPerChunk must be at least 1");
+            }
+        }
+
+        public Options withConnectTimeout(Duration connectTimeout) {
+            return new Options(
+                    connectTimeout,
+                    this.writeTimeout,
+                    this.reconnectDelay,
+                    this.maxBacklogBytes,
+                    this.framesPerChunk
+            );
+        }
+
+        public Options withWriteTimeout(Duration writeTimeout) {
+            return new Options(
+                    this.connectTimeout,
+                    writeTimeout,
+                    this.reconnectDelay,
+                    this.maxBacklogBytes,
+                    this.framesPerChunk
+            );
+        }
+
+        public Options withReconnectDelay(Duration reconnectDelay) {
+            return new Options(
+                    this.connectTimeout,
+                    this.writeTimeout,
+                    reconnectDelay,
+                    this.maxBacklogBytes,
+                    this.framesPerChunk
+            );
+        }
+
+        public Options withMaxBacklogBytes(long maxBacklogBytes) {
+            return new Options(
+                    this.connectTimeout,
+                    this.writeTimeout,
+                    this.reconnectDelay,
+                    maxBacklogBytes,
+                    this.framesPerChunk
+            );
+        }
+
+        public Options withFramesPerChunk(int framesPerChunk) {
+            return new Options(
+                    this.connectTimeout,
+                    this.writeTimeout,
+                    this.reconnectDelay,
+                    this.maxBacklogBytes,
+                    framesPerChunk
+            );
+        }
+    }
+}
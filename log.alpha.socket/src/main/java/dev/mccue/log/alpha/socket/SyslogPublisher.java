@@ -0,0 +1,510 @@
+package dev.mccue.log.alpha.socket;
+
+import dev.mccue.log.alpha.Log;
+import dev.mccue.log.alpha.publisher.LogBuffer;
+import dev.mccue.log.alpha.publisher.Publisher;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.SocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A publisher which sends logs as RFC 5424 syslog messages over TCP, framed by octet counting as
+ * in RFC 6587.
+ *
+ * {@snippet :
+ * 187 <14>1 2022-08-01T12:00:00.123456Z host com.example.Server 4242 request-done [log.alpha@32473 log.alpha/flake="5Czlz..." status="200" path="/users"]
+ * }
+ *
+ * <p>The level is the severity, the namespace of the category is the APP-NAME, and its name is
+ * the MSGID. Entries, including those of the context, are the parameters of a single
+ * structured data element, with values written as text. Names which are too long or have
+ * characters syslog doesn't allow are cut short and have those characters replaced.</p>
+ *
+ * <p>Messages are built in a reusable {@link StringBuilder} and encoded straight into one reusable
+ * direct buffer, behind their octet count, and written a buffer at a time. Logs
+ * stay in the {@link LogBuffer} until their message has been written in full. If the connection
+ * fails, or the write timeout passes, part way through a message, the connection is closed so the
+ * next one starts on a message boundary, and that log is counted in {@link #droppedLogs()}.</p>
+ */
+public final class SyslogPublisher implements Publisher {
+    // The longest APP-NAME, MSGID and PARAM-NAME RFC 5424 allows.
+    private static final int MAX_APP_NAME = 48;
+    private static final int MAX_NAME = 32;
+
+    private final SocketAddress address;
+    private final Options options;
+    private final SocketConnection connection;
+    private final ByteBuffer buffer;
+    private final ByteBuffer[] gather;
+    private final StringBuilder message;
+    private final CharsetEncoder encoder;
+    private final String hostname;
+    private final String processId;
+
+    // The characters of the message being encoded, copied out of message.
+    private char[] chars;
+    private CharBuffer charBuffer;
+
+    // The offsets and ends in buffer of the messages in it.
+    private long[] offsets;
+    private int[] ends;
+    private int messages;
+
+    private volatile long bytesPublished;
+    private volatile long droppedLogs;
+
+    public SyslogPublisher(SocketAddress address, Options options) {
+        this.address = Objects.requireNonNull(address, "address must not be null");
+        this.options = Objects.requireNonNull(options, "options must not be null");
+        this.connection = new SocketConnection(address, options.connectTimeout, options.reconnectDelay);
+        this.buffer = ByteBuffer.allocateDirect(options.bufferBytes);
+        this.gather = new ByteBuffer[] { buffer };
+        this.message = new StringBuilder();
+        this.encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.chars = new char[1024];
+        this.charBuffer = CharBuffer.wrap(chars);
+        this.hostname = nameOrNil(options.hostname, 255);
+        this.processId = Long.toString(ProcessHandle.current().pid());
+        this.offsets = new long[64];
+        this.ends = new int[64];
+    }
+
+    public SyslogPublisher(SocketAddress address) {
+        this(address, Options.DEFAULT);
+    }
+
+    @Override
+    public synchronized LogBuffer publish(LogBuffer logs) {
+        long deadline = System.nanoTime() + options.writeTimeout.toNanos();
+        long written = 0;
+        for (var item : logs.items()) {
+            if (item == null) {
+                continue;
+            }
+            format(item.log());
+            int length = utf8Length(message);
+            int frameLength = digits(length) + 1 + length;
+            if (frameLength > buffer.capacity()) {
+                System.err.printf("Dropping a syslog message of %d bytes for %s, which is bigger than the buffer%n", frameLength, address);
+                droppedLogs++;
+                add(item.offset());
+                continue;
+            }
+            if (frameLength > buffer.remaining()) {
+                written = send(deadline, written);
+                if (messages > 0) {
+                    break;
+                }
+            }
+            putFrame(length);
+            add(item.offset());
+        }
+        if (messages > 0) {
+            written = send(deadline, written);
+        }
+        // What wasn't written stays in the log buffer, and is encoded again by the next publish.
+        buffer.clear();
+        messages = 0;
+        return logs.dequeue(written);
+    }
+
+    private void add(long offset) {
+        if (messages == offsets.length) {
+            offsets = Arrays.copyOf(offsets, messages * 2);
+            ends = Arrays.copyOf(ends, messages * 2);
+        }
+        offsets[messages] = offset;
+        ends[messages] = buffer.position();
+        messages++;
+    }
+
+    /**
+     * Writes the buffer until it is empty or the deadline passes.
+     *
+     * @param written The offset of the last log written in full so far.
+     * @return The offset of the last log written in full. Messages which weren't are left in the
+     *         buffer.
+     */
+    private long send(long deadline, long written) {
+        buffer.flip();
+        boolean failed = false;
+        try {
+            connection.write(gather, 0, 1, deadline);
+        } catch (IOException e) {
+            System.err.printf("Failed to send logs to %s: %s%n", address, e);
+            failed = true;
+        }
+        int sent = buffer.position();
+        bytesPublished += sent;
+
+        int done = 0;
+        while (done < messages && ends[done] <= sent) {
+            written = offsets[done++];
+        }
+        if (done < messages && sent > (done == 0 ? 0 : ends[done - 1])) {
+            // Part of a message was written. The rest would be read as the start of the next.
+            if (!failed) {
+                connection.close();
+            }
+            droppedLogs++;
+            written = offsets[done++];
+        }
+
+        // Keep the messages which weren't written, at the start of the buffer.
+        int keepFrom = done == 0 ? 0 : ends[done - 1];
+        buffer.position(keepFrom);
+        buffer.compact();
+        for (int i = done; i < messages; i++) {
+            offsets[i - done] = offsets[i];
+            ends[i - done] = ends[i] - keepFrom;
+        }
+        messages -= done;
+        return written;
+    }
+
+    /**
+     * Writes the octet count and the message into the buffer, which must have room for them.
+     */
+    private void putFrame(int length) {
+        int end = buffer.position() + digits(length);
+        for (int i = end - 1, n = length; i >= buffer.position(); i--, n /= 10) {
+            buffer.put(i, (byte) ('0' + n % 10));
+        }
+        buffer.position(end);
+        buffer.put((byte) ' ');
+
+        int size = message.length();
+        if (chars.length < size) {
+            chars = new char[Math.max(size, chars.length * 2)];
+            charBuffer = CharBuffer.wrap(chars);
+        }
+        message.getChars(0, size, chars, 0);
+        charBuffer.limit(size).position(0);
+        encoder.reset();
+        encoder.encode(charBuffer, buffer, true);
+        encoder.flush(buffer);
+    }
+
+    private static int digits(int n) {
+        int digits = 1;
+        while (n >= 10) {
+            n /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    /**
+     * @return How many bytes the encoder writes for the characters, with each unpaired surrogate
+     *         replaced by a single '?'.
+     */
+    static int utf8Length(CharSequence chars) {
+        int length = 0;
+        for (int i = 0; i < chars.length(); i++) {
+            char c = chars.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < chars.length() && Character.isLowSurrogate(chars.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length += 1;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private void format(Log log) {
+        message.setLength(0);
+        message.append('<').append(options.facility * 8 + severity(log.level())).append(">1 ");
+        var timestamp = switch (log.occurrence()) {
+            case Log.Occurrence.PointInTime pointInTime -> pointInTime.happenedAt();
+            case Log.Occurrence.SpanOfTime spanOfTime -> spanOfTime.startedAt();
+        };
+        // RFC 5424 allows at most 6 digits of fractional seconds.
+        DateTimeFormatter.ISO_INSTANT.formatTo(timestamp.truncatedTo(ChronoUnit.MICROS), message);
+        message.append(' ').append(hostname).append(' ');
+        appendName(log.category().namespace(), MAX_APP_NAME);
+        message.append(' ').append(processId).append(' ');
+        appendName(log.category().name(), MAX_NAME);
+
+        message.append(" [").append(options.structuredDataId);
+        appendParam("log.alpha/flake", log.flake().toString());
+        if (log.occurrence() instanceof Log.Occurrence.SpanOfTime spanOfTime) {
+            appendParam("log.alpha/duration", Long.toString(spanOfTime.lasted().toMillis()));
+        }
+        for (var entry : log) {
+            appendParam(entry.key(), text(entry.value()));
+        }
+        message.append(']');
+    }
+
+    static int severity(Log.Level level) {
+        return switch (level) {
+            case TRACE, DEBUG -> 7;
+            case INFO -> 6;
+            case WARN -> 4;
+            case ERROR -> 3;
+        };
+    }
+
+    private void appendParam(String name, String value) {
+        message.append(' ');
+        appendName(name, MAX_NAME);
+        message.append("=\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\' || c == ']') {
+                message.append('\\');
+            }
+            message.append(c);
+        }
+        message.append('"');
+    }
+
+    /**
+     * Appends the name as printable US-ASCII without spaces, '=', ']' or '"', which syslog
+     * requires of names, or the nil value if it is empty.
+     */
+    private void appendName(String name, int maxLength) {
+        if (name.isEmpty()) {
+            message.append('-');
+            return;
+        }
+        for (int i = 0; i < Math.min(name.length(), maxLength); i++) {
+            char c = name.charAt(i);
+            message.append(c > ' ' && c < 127 && c != '=' && c != ']' && c != '"' ? c : '_');
+        }
+    }
+
+    private static String nameOrNil(String name, int maxLength) {
+        if (name == null || name.isEmpty()) {
+            return "-";
+        }
+        var result = new StringBuilder();
+        for (int i = 0; i < Math.min(name.length(), maxLength); i++) {
+            char c = name.charAt(i);
+            result.append(c > ' ' && c < 127 ? c : '_');
+        }
+        return result.toString();
+    }
+
+    static String text(Log.Entry.Value value) {
+        return switch (value) {
+            case Log.Entry.Value.Null __ -> "null";
+            case Log.Entry.Value.String s -> s.value();
+            case Log.Entry.Value.Boolean b -> Boolean.toString(b.value());
+            case Log.Entry.Value.Byte b -> Byte.toString(b.value());
+            case Log.Entry.Value.Character c -> Character.toString(c.value());
+            case Log.Entry.Value.Short s -> Short.toString(s.value());
+            case Log.Entry.Value.Integer i -> Integer.toString(i.value());
+            case Log.Entry.Value.Long l -> Long.toString(l.value());
+            case Log.Entry.Value.Float f -> Float.toString(f.value());
+            case Log.Entry.Value.Double d -> Double.toString(d.value());
+            case Log.Entry.Value.UUID uuid -> uuid.value().toString();
+            case Log.Entry.Value.URI uri -> uri.value().toString();
+            case Log.Entry.Value.Instant instant -> DateTimeFormatter.ISO_INSTANT.format(instant.value());
+            case Log.Entry.Value.LocalDate localDate -> DateTimeFormatter.ISO_LOCAL_DATE.format(localDate.value());
+            case Log.Entry.Value.LocalTime localTime -> DateTimeFormatter.ISO_LOCAL_TIME.format(localTime.value());
+            case Log.Entry.Value.LocalDateTime localDateTime -> DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(localDateTime.value());
+            case Log.Entry.Value.Duration duration -> Long.toString(duration.value().toMillis());
+            // Stack traces don't belong in a structured data value. The class and message do.
+            case Log.Entry.Value.Throwable throwable -> throwable.value().toString();
+            case Log.Entry.Value.Lazy lazy -> text(lazy.value());
+            case Log.Entry.Value.List list -> list.value().stream().map(SyslogPublisher::text).toList().toString();
+            case Log.Entry.Value.Set set -> set.value().stream().map(SyslogPublisher::text).toList().toString();
+            case Log.Entry.Value.Map map -> {
+                var result = new StringBuilder("{");
+                for (var entry : map.value().entrySet()) {
+                    if (result.length() > 1) {
+                        result.append(", ");
+                    }
+                    result.append(text(entry.getKey())).append('=').append(text(entry.getValue()));
+                }
+                yield result.append('}').toString();
+            }
+        };
+    }
+
+    @Override
+    public long bytesPublished() {
+        return bytesPublished;
+    }
+
+    /**
+     * @return How many logs were dropped because their message was bigger than the buffer or only
+     *         part of it could be sent.
+     */
+    public long droppedLogs() {
+        return droppedLogs;
+    }
+
+    /**
+     * Closes the connection. The next publish opens a new one.
+     */
+    public synchronized void close() {
+        connection.close();
+    }
+
+    @Override
+    public String toString() {
+        return "SyslogPublisher[address=" + address + ", options=" + options + "]";
+    }
+
+    /**
+     * @param hostname The HOSTNAME of every message.
+     * @param facility The syslog facility, from 0 to 23. 1 is user-level messages.
+     * @param structuredDataId The SD-ID of the element entries are written in. Must have an
+     *                         {@code @} and an enterprise number unless registered with IANA.
+     * @param connectTimeout How long to wait for a connection.
+     * @param writeTimeout How long each publish may spend writing.
+     * @param reconnectDelay How long to wait after a failure before connecting again.
+     * @param bufferBytes The size of the direct buffer messages are batched in. Also the largest
+     *                    message which can be sent.
+     */
+    public record Options(
+            String hostname,
+            int facility,
+            String structuredDataId,
+            Duration connectTimeout,
+            Duration writeTimeout,
+            Duration reconnectDelay,
+            int bufferBytes
+    ) {
+        public static final Options DEFAULT = new Options(
+                localHostname(),
+                1,
+                "log.alpha@32473",
+                Duration.ofSeconds(5),
+                Duration.ofSeconds(1),
+                Duration.ofSeconds(1),
+                256 * 1024
+        );
+
+        public Options {
+            Objects.requireNonNull(structuredDataId, "structuredDataId must not be null");
+            Objects.requireNonNull(connectTimeout, "connectTimeout must not be null");
+            Objects.requireNonNull(writeTimeout, "writeTimeout must not be null");
+            Objects.requireNonNull(reconnectDelay, "reconnectDelay must not be null");
+            if (facility < 0 || facility > 23) {
+                throw new IllegalArgumentException("facility must be from 0 to 23");
+            }
+            if (structuredDataId.isEmpty() || structuredDataId.length() > MAX_NAME) {
+                throw new IllegalArgumentException("structuredDataId must be 1 to 32 characters");
+            }
+            if (bufferBytes < 1) {
+                throw new IllegalArgumentException("bufferBytes must be at least 1");
+            }
+        }
+
+        private static String localHostname() {
+            try {
+                return InetAddress.getLocalHost().getHostName();
+            } catch (UnknownHostException e) {
+                return null;
+            }
+        }
+
+        public Options withHostname(String hostname) {
+            return new Options(
+                    hostname,
+                    this.facility,
+                    this.structuredDataId,
+                    this.connectTimeout,
+                    this.writeTimeout,
+                    this.reconnectDelay,
+                    this.bufferBytes
+            );
+        }
+
+        public Options withFacility(int facility) {
+            return new Options(
+                    this.hostname,
+                    facility,
+                    this.structuredDataId,
+                    this.connectTimeout,
+                    this.writeTimeout,
+                    this.reconnectDelay,
+                    this.bufferBytes
+            );
+        }
+
+        public Options withStructuredDataId(String structuredDataId) {
+            return new Options(
+                    this.hostname,
+                    this.facility,
+                    structuredDataId,
+                    this.connectTimeout,
+                    this.writeTimeout,
+                    this.reconnectDelay,
+                    this.bufferBytes
+            );
+        }
+
+        public Options withConnectTimeout(Duration connectTimeout) {
+            return new Options(
+                    this.hostname,
+                    this.facility,
+                    this.structuredDataId,
+                    connectTimeout,
+                    this.writeTimeout,
+                    this.reconnectDelay,
+                    this.bufferBytes
+            );
+        }
+
+        public Options withWriteTimeout(Duration writeTimeout) {
+            return new Options(
+                    this.hostname,
+                    this.facility,
+                    this.structuredDataId,
+                    this.connectTimeout,
+                    writeTimeout,
+                    this.reconnectDelay,
+                    this.bufferBytes
+            );
+        }
+
+        public Options withReconnectDelay(Duration reconnectDelay) {
+            return new Options(
+                    this.hostname,
+                    this.facility,
+                    this.structuredDataId,
+                    this.connectTimeout,
+                    this.writeTimeout,
+                    reconnectDelay,
+                    this.bufferBytes
+            );
+        }
+
+        public Options withBufferBytes(int bufferBytes) {
+            return new Options(
+                    this.hostname,
+                    this.facility,
+                    this.structuredDataId,
+                    this.connectTimeout,
+                    this.writeTimeout,
+                    this.reconnectDelay,
+                    bufferBytes
+            );
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package dev.mccue.log.alpha.socket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.mccue.log.alpha.Log;
+import dev.mccue.log.alpha.publisher.LogBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SocketPublisherTest {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final SocketPublisher.Options OPTIONS = SocketPublisher.Options.DEFAULT
+            .withReconnectDelay(Duration.ofMillis(10))
+            .withFramesPerChunk(7);
+
+    private static LogBuffer logs(int count) {
+        var buffer = LogBuffer.create(count);
+        for (int i = 0; i < count; i++) {
+            buffer = buffer.enqueue(new Log(Log.Level.INFO, new Log.Category("test", "socket"), List.of(Log.Entry.of("n", i))));
+        }
+        return buffer;
+    }
+
+    /**
+     * Accepts one connection and reads that many frames from it, returning the "n" of each.
+     */
+    private static CompletableFuture<List<Integer>> readFrames(ServerSocket server, int count) {
+        return CompletableFuture.supplyAsync(() -> {
+            var numbers = new ArrayList<Integer>();
+            try (var socket = server.accept(); var in = new DataInputStream(socket.getInputStream())) {
+                for (int i = 0; i < count; i++) {
+                    var json = new byte[in.readInt()];
+                    in.readFully(json);
+                    numbers.add(OBJECT_MAPPER.readTree(json).get("n").asInt());
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return numbers;
+        });
+    }
+
+    private static List<Integer> numbers(int count) {
+        var numbers = new ArrayList<Integer>();
+        for (int i = 0; i < count; i++) {
+            numbers.add(i);
+        }
+        return numbers;
+    }
+
+    @Test
+    public void writesFramesInOrderAndDequeuesThem() throws Exception {
+        try (var server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            var received = readFrames(server, 1_000);
+            var publisher = new SocketPublisher(server.getLocalSocketAddress(), OPTIONS);
+
+            var remaining = publisher.publish(logs(1_000));
+            assertTrue(publisher.flush(Duration.ofSeconds(5)));
+            remaining = publisher.publish(remaining);
+
+            assertEquals(0, remaining.size());
+            assertEquals(numbers(1_000), received.get());
+            assertEquals(0, publisher.droppedLogs());
+            publisher.close();
+        }
+    }
+
+    @Test
+    public void keepsLogsWhileThePeerIsDown() throws Exception {
+        int port;
+        try (var probe = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            port = probe.getLocalPort();
+        }
+        var address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+        var publisher = new SocketPublisher(address, OPTIONS);
+
+        var remaining = publisher.publish(logs(50));
+        assertEquals(50, remaining.size(), "nothing was written, so nothing is dequeued");
+        assertEquals(0, publisher.droppedLogs());
+
+        try (var server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            var received = readFrames(server, 50);
+            assertTrue(publisher.flush(Duration.ofSeconds(5)));
+            assertEquals(0, publisher.publish(remaining).size());
+            assertEquals(numbers(50), received.get());
+            publisher.close();
+        }
+    }
+
+    @Test
+    public void closeWritesTheBacklogFirst() throws Exception {
+        try (var server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            var received = readFrames(server, 200);
+            var publisher = new SocketPublisher(server.getLocalSocketAddress(), OPTIONS.withWriteTimeout(Duration.ofSeconds(5)));
+            publisher.publish(logs(200));
+            publisher.close();
+            assertEquals(0, publisher.backlogBytes());
+            assertEquals(numbers(200), received.get());
+        }
+    }
+}
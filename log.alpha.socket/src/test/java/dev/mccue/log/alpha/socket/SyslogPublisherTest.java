@@ -0,0 +1,106 @@
+package dev.mccue.log.alpha.socket;
+
+import dev.mccue.log.alpha.Log;
+import dev.mccue.log.alpha.publisher.LogBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SyslogPublisherTest {
+    private static final String[] VALUES = {
+            "plain",
+            "café – 日本",
+            "emoji 😀",
+            "unpaired \ud83d and \ude00",
+            "quote \" and ] and \\"
+    };
+
+    /**
+     * Accepts one connection and reads that many octet counted messages from it.
+     */
+    private static CompletableFuture<List<String>> readMessages(ServerSocket server, int count) {
+        return CompletableFuture.supplyAsync(() -> {
+            var messages = new ArrayList<String>();
+            try (var socket = server.accept(); var in = socket.getInputStream()) {
+                for (int i = 0; i < count; i++) {
+                    int length = readLength(in);
+                    messages.add(new String(in.readNBytes(length), StandardCharsets.UTF_8));
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return messages;
+        });
+    }
+
+    private static int readLength(InputStream in) throws IOException {
+        int length = 0;
+        int c = in.read();
+        assertTrue(c >= '1' && c <= '9', "an octet count starts with a nonzero digit, got " + c);
+        while (c != ' ') {
+            length = length * 10 + (c - '0');
+            c = in.read();
+        }
+        return length;
+    }
+
+    @Test
+    public void octetCountsMatchTheEncodedMessages() throws Exception {
+        try (var server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            int count = 500;
+            var received = readMessages(server, count);
+            var publisher = new SyslogPublisher(
+                    server.getLocalSocketAddress(),
+                    SyslogPublisher.Options.DEFAULT
+                            .withHostname("host")
+                            .withBufferBytes(4 * 1024)
+                            .withWriteTimeout(Duration.ofSeconds(5))
+            );
+
+            var logs = LogBuffer.create(count);
+            for (int i = 0; i < count; i++) {
+                logs = logs.enqueue(new Log(
+                        Log.Level.INFO,
+                        new Log.Category("com.example", "event"),
+                        List.of(Log.Entry.of("n", i), Log.Entry.of("text", VALUES[i % VALUES.length]))
+                ));
+            }
+            while (logs.size() > 0) {
+                logs = publisher.publish(logs);
+            }
+
+            var messages = received.get();
+            for (int i = 0; i < count; i++) {
+                var message = messages.get(i);
+                assertTrue(message.startsWith("<14>1 "), message);
+                assertTrue(message.contains(" host com.example "), message);
+                assertTrue(message.contains(" n=\"" + i + "\""), message);
+            }
+            assertTrue(messages.get(1).contains("text=\"café – 日本\""), messages.get(1));
+            assertTrue(messages.get(2).contains("text=\"emoji 😀\""), messages.get(2));
+            assertTrue(messages.get(3).contains("text=\"unpaired ? and ?\""), messages.get(3));
+            assertTrue(messages.get(4).contains("text=\"quote \\\" and \\] and \\\\\""), messages.get(4));
+            assertEquals(0, publisher.droppedLogs());
+            publisher.close();
+        }
+    }
+
+    @Test
+    public void countsUtf8LikeTheEncoder() {
+        for (var value : VALUES) {
+            var expected = StandardCharsets.UTF_8.encode(value).remaining();
+            assertEquals(expected, SyslogPublisher.utf8Length(value), value);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package dev.mccue.log.alpha;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A logger which collapses runs of identical consecutive logs, in the spirit of syslog's
+ * "last message repeated N times".
+ *
+ * <p>Two logs are identical when they have the same level, category and entries. Context is
+ * not compared. Throwables are compared by class, message and stack trace rather than by
+ * identity, and lazy values are realized to be compared.</p>
+ *
+ * <p>The first log of a run is passed through immediately. Repeats which arrive within the
+ * window of the previous one are counted instead of being logged. When the run ends, or once it
+ * has been collapsing for a whole window, a single log is passed through in place of the repeats.
+ * It is the last repeat with these entries added.</p>
+ * <ul>
+ *     <li>{@code log.alpha/repeat-count}: how many logs it stands in for.</li>
+ *     <li>{@code log.alpha/first-flake}: the flake of the first of them.</li>
+ *     <li>{@code log.alpha/last-flake}: the flake of the last of them.</li>
+ * </ul>
+ *
+ * <p>A run is only known to have ended when a different log arrives, so call {@link #flush()}
+ * before shutting down to not lose the count of a trailing run.</p>
+ */
+public final class CoalescingLogger implements Logger {
+    private final Logger delegate;
+    private final long windowNanos;
+
+    // Guarded by this
+    private Log runLog;
+    private int runHash;
+    private long runStartedAt;
+    private long lastSeenAt;
+    private Log firstRepeat;
+    private Log lastRepeat;
+    private long repeats;
+
+    public CoalescingLogger(Logger delegate, Duration window) {
+        this.delegate = Objects.requireNonNull(delegate, "delegate must not be null");
+        this.windowNanos = Objects.requireNonNull(window, "window must not be null").toNanos();
+    }
+
+    @Override
+    public void log(Log log) {
+        int hash = structuralHash(log);
+        Log summary;
+        boolean passThrough;
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (runLog != null
+                    && runHash == hash
+                    && now - lastSeenAt <= windowNanos
+                    && sameEvent(runLog, log)) {
+                lastSeenAt = now;
+                if (repeats == 0) {
+                    firstRepeat = log;
+                }
+                lastRepeat = log;
+                repeats++;
+                if (now - runStartedAt < windowNanos) {
+                    return;
+                }
+                summary = takeSummary();
+                passThrough = false;
+                runStartedAt = now;
+            } else {
+                summary = takeSummary();
+                runLog = log;
+                runHash = hash;
+                runStartedAt = now;
+                lastSeenAt = now;
+                passThrough = true;
+            }
+        }
+
+        if (summary != null) {
+            delegate.log(summary);
+        }
+        if (passThrough) {
+            delegate.log(log);
+        }
+    }
+
+    /**
+     * Passes through the summary of the current run, if it has any repeats.
+     */
+    public void flush() {
+        Log summary;
+        synchronized (this) {
+            summary = takeSummary();
+            runLog = null;
+        }
+        if (summary != null) {
+            delegate.log(summary);
+        }
+    }
+
+    private Log takeSummary() {
+        if (repeats == 0) {
+            return null;
+        }
+        var entries = new ArrayList<Log.Entry>(lastRepeat.entries().size() + 3);
+        entries.addAll(lastRepeat.entries());
+        entries.add(Log.Entry.of("log.alpha/repeat-count", repeats));
+        entries.add(Log.Entry.of("log.alpha/first-flake", firstRepeat.flake().toString()));
+        entries.add(Log.Entry.of("log.alpha/last-flake", lastRepeat.flake().toString()));
+        var summary = new Log(
+                lastRepeat.context(),
+                lastRepeat.thread(),
+                lastRepeat.flake(),
+                lastRepeat.occurrence(),
+                lastRepeat.level(),
+                lastRepeat.category(),
+                entries
+        );
+        firstRepeat = null;
+        lastRepeat = null;
+        repeats = 0;
+        return summary;
+    }
+
+    private static int structuralHash(Log log) {
+        int hash = log.level().ordinal();
+        hash = 31 * hash + log.category().hashCode();
+        for (var entry : log.entries()) {
+            hash = 31 * hash + entry.key().hashCode();
+            hash = 31 * hash + structuralHash(entry.value());
+        }
+        return hash;
+    }
+
+    private static int structuralHash(Log.Entry.Value value) {
+        if (value instanceof Log.Entry.Value.Lazy lazy) {
+            return structuralHash(lazy.value());
+        }
+        else if (value instanceof Log.Entry.Value.Throwable throwable) {
+            var t = throwable.value();
+            int hash = t.getClass().hashCode();
+            hash = 31 * hash + Objects.hashCode(t.getMessage());
+            var trace = t.getStackTrace();
+            return 31 * hash + (trace.length == 0 ? 0 : trace[0].hashCode());
+        }
+        else if (value instanceof Log.Entry.Value.List list) {
+            int hash = 1;
+            for (var v : list.value()) {
+                hash = 31 * hash + structuralHash(v);
+            }
+            return hash;
+        }
+        else if (value instanceof Log.Entry.Value.Set set) {
+            int hash = 0;
+            for (var v : set.value()) {
+                hash += structuralHash(v);
+            }
+            return hash;
+        }
+        else if (value instanceof Log.Entry.Value.Map map) {
+            int hash = 0;
+            for (var entry : map.value().entrySet()) {
+                hash += structuralHash(entry.getKey()) ^ structuralHash(entry.getValue());
+            }
+            return hash;
+        }
+        else {
+            return value.hashCode();
+        }
+    }
+
+    private static boolean sameEvent(Log a, Log b) {
+        if (a.level() != b.level() || !a.category().equals(b.category())) {
+            return false;
+        }
+        var aEntries = a.entries();
+        var bEntries = b.entries();
+        if (aEntries.size() != bEntries.size()) {
+            return false;
+        }
+        for (int i = 0; i < aEntries.size(); i++) {
+            var aEntry = aEntries.get(i);
+            var bEntry = bEntries.get(i);
+            if (!aEntry.key().equals(bEntry.key()) || !sameValue(aEntry.value(), bEntry.value())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameValue(Log.Entry.Value a, Log.Entry.Value b) {
+        if (a instanceof Log.Entry.Value.Lazy lazy) {
+            return sameValue(lazy.value(), b);
+        }
+        if (b instanceof Log.Entry.Value.Lazy lazy) {
+            return sameValue(a, lazy.value());
+        }
+        if (a instanceof Log.Entry.Value.Throwable at && b instanceof Log.Entry.Value.Throwable bt) {
+            return sameThrowable(at.value(), bt.value());
+        }
+        if (a instanceof Log.Entry.Value.List al && b instanceof Log.Entry.Value.List bl) {
+            return sameValues(al.value(), bl.value());
+        }
+        if (a instanceof Log.Entry.Value.Map am && b instanceof Log.Entry.Value.Map bm) {
+            return sameMaps(am.value(), bm.value());
+        }
+        return a.equals(b);
+    }
+
+    private static boolean sameValues(List<Log.Entry.Value> a, List<Log.Entry.Value> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (!sameValue(a.get(i), b.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameMaps(Map<Log.Entry.Value, Log.Entry.Value> a, Map<Log.Entry.Value, Log.Entry.Value> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (var entry : a.entrySet()) {
+            var other = b.get(entry.getKey());
+            if (other == null || !sameValue(entry.getValue(), other)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameThrowable(Throwable a, Throwable b) {
+        if (a == b) {
+            return true;
+        }
+        if (a == null || b == null) {
+            return false;
+        }
+        return a.getClass() == b.getClass()
+                && Objects.equals(a.getMessage(), b.getMessage())
+                && Arrays.equals(a.getStackTrace(), b.getStackTrace())
+                && sameThrowable(a.getCause(), b.getCause());
+    }
+
+    @Override
+    public String toString() {
+        return "CoalescingLogger[delegate=" + delegate + ", window=" + Duration.ofNanos(windowNanos) + "]";
+    }
+}
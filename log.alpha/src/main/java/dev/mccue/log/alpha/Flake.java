@@ -1,7 +1,12 @@
 package dev.mccue.log.alpha;
 
 import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
 
 // Taken from mulog
 
@@ -79,6 +84,13 @@ import java.util.concurrent.ThreadLocalRandom;
  * low-mild    1 (1.6667 %)
  * Variance from outliers : 1.6389 % Variance is slightly inflated by outliers
  * ```
+ * <p>
+ * - **Generator modes**
+ * How {@link Flake#create()} produces Flakes is controlled by the current
+ * {@link Flake.Generator}. Lazy randomness draws a single 64-bit seed at creation
+ * and expands it into the 128-bit random component whenever the Flake is rendered,
+ * compared or hashed. Global ordering extends the 'happens before' guarantee across
+ * threads, so a Flake created after another one on any thread is larger.
  */
 public final class Flake implements Comparable<Flake> {
 
@@ -112,20 +124,94 @@ public final class Flake implements Comparable<Flake> {
     private static final char[] hexChars = new char[]{
             '0', '1', '2', '3', '4', '5', '6', '7', '8', '9',
             'a', 'b', 'c', 'd', 'e', 'f'};
+    private static final AtomicReference<Generator> GENERATOR =
+            new AtomicReference<>(Generator.DEFAULT);
+
+    /*
+     * The last time component handed out by globally ordered generators, striped by thread.
+     * Each stripe's cell sits on its own cache line, so a creation only writes to a line shared
+     * with the threads of its stripe and just reads the others.
+     */
+    private static final int ORDERING_STRIPES = Math.min(
+            16,
+            Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1)
+    );
+    private static final int LONGS_PER_CACHE_LINE = 8;
+    private static final AtomicLongArray LAST_ORDERED_TIMES =
+            new AtomicLongArray((ORDERING_STRIPES + 1) * LONGS_PER_CACHE_LINE);
+
     private final long timePart;
     private final long rand1Part;
     private final long rand2Part;
+    /*
+     * When true, rand1Part holds a seed and the random component is derived from it
+     * each time it is needed. Derivation is deterministic, so a lazy Flake is still
+     * immutable, and it is cheap enough that storing the result isn't worth a field.
+     */
+    private final boolean lazy;
 
 
     private Flake(long time, long rand1, long rand2) {
+        this(time, rand1, rand2, false);
+    }
+
+    private Flake(long time, long rand1, long rand2, boolean lazy) {
         this.timePart = time;
         this.rand1Part = rand1;
         this.rand2Part = rand2;
+        this.lazy = lazy;
     }
 
+    /**
+     * Creates a new Flake using the current {@link Generator}.
+     */
     public static Flake create() {
-        ThreadLocalRandom tl = ThreadLocalRandom.current();
-        return new Flake(NanoClock.currentTimeNanos(), tl.nextLong(), tl.nextLong());
+        return GENERATOR.get().create();
+    }
+
+    /*
+     * The Flake a context scope stands for, made from the time and seed it drew on entry. It
+     * always uses lazy randomness so that the scope only has to hold two longs until asked.
+     */
+    static Flake fromSeed(long time, long seed) {
+        return new Flake(time, seed, 0, true);
+    }
+
+    /**
+     * Sets the generator used by {@link Flake#create()}, and therefore by every
+     * {@link Log} and {@link Log#withContext(java.util.List, java.util.function.Supplier)}.
+     *
+     * @param generator The generator to use from now on.
+     */
+    public static void setGenerator(Generator generator) {
+        GENERATOR.set(Objects.requireNonNull(generator, "generator must not be null"));
+    }
+
+    /**
+     * @return The generator currently used by {@link Flake#create()}.
+     */
+    public static Generator generator() {
+        return GENERATOR.get();
+    }
+
+    /**
+     * Switches Flake timestamps to a coarse clock, where a daemon thread publishes the
+     * current time every `resolution` and creating a Flake only reads that value.
+     * <p>
+     * Flakes created on one thread within the same tick share a timestamp, so they are only
+     * monotonic when combined with {@link Generator#withGlobalOrdering(boolean)}.
+     *
+     * @param resolution How often the published time is refreshed.
+     */
+    public static void useCoarseClock(Duration resolution) {
+        NanoClock.useCoarse(Objects.requireNonNull(resolution, "resolution must not be null"));
+    }
+
+    /**
+     * Switches Flake timestamps back to reading the high-precision clock on every creation.
+     */
+    public static void usePreciseClock() {
+        NanoClock.usePrecise();
     }
 
     public static Flake makeFlake(long time, long rand1, long rand2) {
@@ -206,7 +292,7 @@ public final class Flake implements Comparable<Flake> {
         // convert character to byte value
         for (int i = 0; i < flake.length(); i++) {
             int c = flake.charAt(i) - chars[0];
-            if (c < 0 || c > reverseChars.length) return null;
+            if (c < 0 || c >= reverseChars.length) return null;
             byte b = reverseChars[c];
             if (b == -1) return null;
             buf6[i] = b;
@@ -259,10 +345,30 @@ public final class Flake implements Comparable<Flake> {
     public byte[] getBytes() {
         byte[] flakeBytes = new byte[24];
         ByteBuffer buf = ByteBuffer.wrap(flakeBytes);
-        buf.putLong(timePart).putLong(rand1Part).putLong(rand2Part);
+        buf.putLong(timePart).putLong(rand1()).putLong(rand2());
         return flakeBytes;
     }
 
+    private long rand1() {
+        return lazy ? mix64(rand1Part) : rand1Part;
+    }
+
+    private long rand2() {
+        return lazy ? mix64(rand1Part + GOLDEN_GAMMA) : rand2Part;
+    }
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    /**
+     * The SplitMix64 finalizer. A bijection on longs, so distinct seeds
+     * always expand to distinct random components.
+     */
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
 
 
     /*
@@ -289,6 +395,10 @@ public final class Flake implements Comparable<Flake> {
         return timePart / 1000000;
     }
 
+    public Instant getTimestampInstant() {
+        return Instant.ofEpochSecond(0, timePart);
+    }
+
     @Override
     public int compareTo(Flake other) {
         if (other == null)
@@ -298,11 +408,11 @@ public final class Flake implements Comparable<Flake> {
         if (diff != 0)
             return diff;
 
-        diff = Long.compareUnsigned(this.rand1Part, other.rand1Part);
+        diff = Long.compareUnsigned(this.rand1(), other.rand1());
         if (diff != 0)
             return diff;
 
-        diff = Long.compareUnsigned(this.rand2Part, other.rand2Part);
+        diff = Long.compareUnsigned(this.rand2(), other.rand2());
         return diff;
     }
 
@@ -317,9 +427,79 @@ public final class Flake implements Comparable<Flake> {
 
     @Override
     public int hashCode() {
-        return Long.hashCode(timePart)
-                ^ Long.hashCode(rand1Part)
-                ^ Long.hashCode(rand1Part);
+        long h = timePart;
+        h = h * 31 + rand1();
+        h = h * 31 + rand2();
+        return (int) mix64(h);
+    }
+
+    /**
+     * Controls how {@link Flake#create()} produces Flakes.
+     *
+     * @param lazyRandomness When true, only a 64-bit seed is drawn at creation instead of
+     *                       two. The 128-bit random component is derived from the seed with
+     *                       a SplitMix64 step whenever it is needed for rendering, comparison
+     *                       or hashing.
+     * @param globalOrdering When true, a Flake created after another one, on any thread, has
+     *                       a larger time component, not just one created after it on the
+     *                       same thread. Threads are spread over striped counters, and each
+     *                       creation reads every stripe but only writes its own. Flakes
+     *                       created at the same moment on different threads may share a time
+     *                       component, and are then ordered by their random component.
+     */
+    public record Generator(boolean lazyRandomness, boolean globalOrdering) {
+        /**
+         * Eager randomness, ordered only within a thread. This matches the behavior
+         * of mulog's Flakes.
+         */
+        public static final Generator DEFAULT = new Generator(false, false);
+
+        public Generator withLazyRandomness(boolean lazyRandomness) {
+            return new Generator(lazyRandomness, this.globalOrdering);
+        }
+
+        public Generator withGlobalOrdering(boolean globalOrdering) {
+            return new Generator(this.lazyRandomness, globalOrdering);
+        }
+
+        /**
+         * @return A new Flake produced according to this generator's settings.
+         */
+        public Flake create() {
+            long time = nextTime();
+            ThreadLocalRandom tl = ThreadLocalRandom.current();
+            if (lazyRandomness) {
+                return new Flake(time, tl.nextLong(), 0, true);
+            } else {
+                return new Flake(time, tl.nextLong(), tl.nextLong());
+            }
+        }
+
+        /*
+         * The time component the next Flake from this generator should have.
+         */
+        long nextTime() {
+            return globalOrdering
+                    ? nextOrderedTime(NanoClock.currentTimeNanos())
+                    : NanoClock.currentTimeNanos();
+        }
+
+        private static long nextOrderedTime(long now) {
+            var last = LAST_ORDERED_TIMES;
+            long floor = 0;
+            for (int stripe = 1; stripe <= ORDERING_STRIPES; stripe++) {
+                floor = Math.max(floor, last.get(stripe * LONGS_PER_CACHE_LINE));
+            }
+            int hash = System.identityHashCode(Thread.currentThread()) * 0x9e3779b9;
+            int cell = ((hash >>> 16 & (ORDERING_STRIPES - 1)) + 1) * LONGS_PER_CACHE_LINE;
+            while (true) {
+                long previous = last.get(cell);
+                long next = Math.max(now, Math.max(floor, previous) + 1);
+                if (last.compareAndSet(cell, previous, next)) {
+                    return next;
+                }
+            }
+        }
     }
 
 }
\ No newline at end of file
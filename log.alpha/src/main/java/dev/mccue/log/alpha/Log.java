@@ -2,6 +2,7 @@ package dev.mccue.log.alpha;
 
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.function.Supplier;
@@ -50,6 +51,8 @@ public record Log(
      * Constructs a log defaulting to the current lexical context, the current thread, the current time,
      * and a newly generated flake.
      *
+     * <p>The clock is only read once: the time the log happened at is the timestamp of its flake.</p>
+     *
      * @param level The level of the log.
      * @param category The category of the log.
      * @param entries The entries to include in the log.
@@ -59,7 +62,16 @@ public record Log(
             Category category,
             List<Log.Entry> entries
     ) {
-        this(Context.current(), Thread.currentThread(), Flake.create(), new Occurrence.PointInTime(Instant.now()), level, category, entries);
+        this(Flake.create(), level, category, entries);
+    }
+
+    private Log(
+            Flake flake,
+            Level level,
+            Category category,
+            List<Log.Entry> entries
+    ) {
+        this(Context.current(), Thread.currentThread(), flake, new Occurrence.PointInTime(flake.getTimestampInstant()), level, category, entries);
     }
 
 
@@ -69,6 +81,9 @@ public record Log(
      *
      * <p>Context is not propagated across threads at this time.</p>
      *
+     * <p>Entries are copied with {@link List#copyOf}, so a list made by {@link List#of} or
+     * {@link List#copyOf} is kept as it is rather than copied again.</p>
+     *
      * {@snippet :
      * var response = Log.withContext(
      *         List.of(
@@ -143,21 +158,57 @@ public record Log(
      * @param <T> The type returned by the block of code.
      */
     public static <T> T withContext(List<Log.Entry> entries, Supplier<T> code) {
-        var localContext = LOCAL_CONTEXT.get();
+        var localContext = enterContext(entries);
         try {
-            LOCAL_CONTEXT.set(new Context.Child(
-                    Thread.currentThread(),
-                    Instant.now(),
-                    Flake.create(),
-                    entries,
-                    localContext == null ? GLOBAL_CONTEXT.get() : localContext
-            ));
             return code.get();
         } finally {
-            LOCAL_CONTEXT.set(localContext);
+            exitContext(localContext);
         }
     }
 
+    /*
+     * Makes a new child of the current context the current context for this thread, returning
+     * the local context it replaced. That value must be handed back to exitContext on the same
+     * thread when the scope ends.
+     *
+     * Only the time and a random seed are taken here. The child's flake and timestamp are made
+     * from them if someone asks.
+     */
+    static Context.Child enterContext(List<Log.Entry> entries) {
+        var entriesCopy = List.copyOf(Objects.requireNonNull(entries, "entries must not be null"));
+        var localContext = LOCAL_CONTEXT.get();
+        LOCAL_CONTEXT.set(new Context.Child(
+                Thread.currentThread(),
+                Flake.generator().nextTime(),
+                ThreadLocalRandom.current().nextLong(),
+                null,
+                entriesCopy,
+                localContext == null ? GLOBAL_CONTEXT.get() : localContext
+        ));
+        return localContext;
+    }
+
+    /*
+     * Like enterContext(List), for a scope which already has a flake.
+     */
+    static Context.Child enterContext(Flake flake, List<Log.Entry> entries) {
+        var entriesCopy = List.copyOf(Objects.requireNonNull(entries, "entries must not be null"));
+        var localContext = LOCAL_CONTEXT.get();
+        LOCAL_CONTEXT.set(new Context.Child(
+                Thread.currentThread(),
+                flake.getTimestampNanos(),
+                0,
+                flake,
+                entriesCopy,
+                localContext == null ? GLOBAL_CONTEXT.get() : localContext
+        ));
+        return localContext;
+    }
+
+    static void exitContext(Context.Child localContext) {
+        LOCAL_CONTEXT.set(localContext);
+    }
+
     /**
      * Variant of withContext that doesn't produce a value.
      *
@@ -166,12 +217,12 @@ public record Log(
      * @param code The block of code to execute.
      */
     public static void withContext(List<Log.Entry> entries, Runnable code) {
-        withContext(
-                entries,
-                () -> {
-                    code.run();
-                    return null;
-                });
+        var localContext = enterContext(entries);
+        try {
+            code.run();
+        } finally {
+            exitContext(localContext);
+        }
     }
 
     /**
@@ -272,13 +323,25 @@ public record Log(
             static final Global EMPTY = new Global(List.of());
         }
 
-        record Child(
-                Thread thread,
-                Instant timestamp,
-                Flake flake,
-                List<Log.Entry> entries,
-                Context parent
-        ) implements Context {
+        /**
+         * The context of a {@link Log#withContext(List, Supplier)} block or a span.
+         *
+         * <p>Entering a block only reads the clock and draws a random seed. The flake and
+         * timestamp are made from those the first time they are asked for, since most contexts
+         * are only ever looked at for their entries.</p>
+         */
+        final class Child implements Context {
+            private final Thread thread;
+            private final long time;
+            private final long seed;
+            private final List<Log.Entry> entries;
+            private final Context parent;
+
+            // Made on first use. Both are immutable and made the same way every time, so a race
+            // between threads only makes one twice.
+            private Flake flake;
+            private Instant timestamp;
+
             public Child(
                     Thread thread,
                     Instant timestamp,
@@ -286,11 +349,89 @@ public record Log(
                     List<Log.Entry> entries,
                     Context parent
             ) {
-                this.thread = Objects.requireNonNull(thread, "thread must not be null");
+                this(
+                        Objects.requireNonNull(thread, "thread must not be null"),
+                        Objects.requireNonNull(flake, "flake must not be null").getTimestampNanos(),
+                        0,
+                        flake,
+                        List.copyOf(Objects.requireNonNull(entries, "entries must not be null")),
+                        Objects.requireNonNull(parent, "parent must not be null")
+                );
                 this.timestamp = Objects.requireNonNull(timestamp, "timestamp must not be null");
-                this.flake = Objects.requireNonNull(flake, "flake must not be null");
-                this.entries = List.copyOf(Objects.requireNonNull(entries, "entries must not be null"));
-                this.parent = Objects.requireNonNull(parent, "parent must not be null");
+            }
+
+            /*
+             * Trusts its arguments: entries must already be immutable and free of nulls. When
+             * flake is null, one is made from time and seed.
+             *
+             * This stays package-private. A caller handing over a list it still changes would
+             * change a context other threads' logs read. The List.copyOf in withContext returns a
+             * list from List.of or List.copyOf as it is, so those callers only pay for the check.
+             */
+            Child(Thread thread, long time, long seed, Flake flake, List<Log.Entry> entries, Context parent) {
+                this.thread = thread;
+                this.time = time;
+                this.seed = seed;
+                this.flake = flake;
+                this.entries = entries;
+                this.parent = parent;
+            }
+
+            public Thread thread() {
+                return thread;
+            }
+
+            /**
+             * @return When the context was entered.
+             */
+            public Instant timestamp() {
+                var timestamp = this.timestamp;
+                if (timestamp == null) {
+                    timestamp = Instant.ofEpochSecond(0, time);
+                    this.timestamp = timestamp;
+                }
+                return timestamp;
+            }
+
+            public Flake flake() {
+                var flake = this.flake;
+                if (flake == null) {
+                    flake = Flake.fromSeed(time, seed);
+                    this.flake = flake;
+                }
+                return flake;
+            }
+
+            public List<Log.Entry> entries() {
+                return entries;
+            }
+
+            public Context parent() {
+                return parent;
+            }
+
+            @Override
+            public boolean equals(Object o) {
+                return o instanceof Child child
+                        && thread.equals(child.thread)
+                        && timestamp().equals(child.timestamp())
+                        && flake().equals(child.flake())
+                        && entries.equals(child.entries)
+                        && parent.equals(child.parent);
+            }
+
+            @Override
+            public int hashCode() {
+                return Objects.hash(thread, timestamp(), flake(), entries, parent);
+            }
+
+            @Override
+            public String toString() {
+                return "Child[thread=" + thread
+                        + ", timestamp=" + timestamp()
+                        + ", flake=" + flake()
+                        + ", entries=" + entries
+                        + ", parent=" + parent + "]";
             }
         }
     }
@@ -0,0 +1,84 @@
+package dev.mccue.log.alpha;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A predicate over the parts of a log, which can be checked before the log is built.
+ *
+ * <p>Filters are usually compiled from a small expression language.</p>
+ *
+ * {@snippet :
+ * var filter = LogFilter.compile(
+ *         "level >= WARN and namespace startsWith \"com.example\" and not (http.status < 500)"
+ * );
+ * var logger = LoggerFactory.getLogger().filtered(filter);
+ * }
+ *
+ * <p>The language has these forms.</p>
+ * <ul>
+ *     <li>{@code level op LEVEL} compares levels, where LEVEL is one of TRACE, DEBUG, INFO, WARN and
+ *     ERROR in any case.</li>
+ *     <li>{@code namespace op "string"} and {@code name op "string"} compare the category. Only
+ *     {@code ==}, {@code !=} and {@code startsWith} are allowed.</li>
+ *     <li>{@code key op literal} compares the value of the first entry with that key, looking at the
+ *     log's own entries and then out through its context. Keys may contain letters, digits and
+ *     {@code _ . - /}. Keys which clash with a keyword can be written in backticks, like
+ *     {@code `level`}. Literals are numbers, "strings", true, false and null. An entry which is
+ *     missing or has a value of a different kind only matches {@code !=}, or {@code == null}.</li>
+ *     <li>{@code has(key)} checks that an entry with the key is present.</li>
+ *     <li>{@code and}, {@code or}, {@code not} and parentheses combine the above. {@code &&},
+ *     {@code ||} and {@code !} can be used too.</li>
+ * </ul>
+ *
+ * <p>The operators are {@code ==}, {@code !=}, {@code <}, {@code <=}, {@code >}, {@code >=} and
+ * {@code startsWith}. Compiled filters are trees of closures and do not allocate when tested,
+ * except to realize lazy entry values.</p>
+ */
+@FunctionalInterface
+public interface LogFilter {
+    /**
+     * A filter which lets every log through.
+     */
+    LogFilter ALL = (level, category, entries, context) -> true;
+
+    /**
+     * @param level The level of the log.
+     * @param category The category of the log.
+     * @param entries The log's own entries.
+     * @param context The context the log is made in.
+     * @return Whether the log should be kept.
+     */
+    boolean test(Log.Level level, Log.Category category, List<Log.Entry> entries, Log.Context context);
+
+    default boolean test(Log log) {
+        return test(log.level(), log.category(), log.entries(), log.context());
+    }
+
+    default LogFilter and(LogFilter other) {
+        Objects.requireNonNull(other, "other must not be null");
+        return (level, category, entries, context) ->
+                test(level, category, entries, context) && other.test(level, category, entries, context);
+    }
+
+    default LogFilter or(LogFilter other) {
+        Objects.requireNonNull(other, "other must not be null");
+        return (level, category, entries, context) ->
+                test(level, category, entries, context) || other.test(level, category, entries, context);
+    }
+
+    default LogFilter negate() {
+        return (level, category, entries, context) -> !test(level, category, entries, context);
+    }
+
+    /**
+     * Compiles a filter expression.
+     *
+     * @param expression The expression to compile.
+     * @return The compiled filter.
+     * @throws IllegalArgumentException If the expression is not valid.
+     */
+    static LogFilter compile(String expression) {
+        return LogFilterCompiler.compile(Objects.requireNonNull(expression, "expression must not be null"));
+    }
+}
@@ -0,0 +1,490 @@
+package dev.mccue.log.alpha;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Parses the expression language described on {@link LogFilter} and compiles it into a tree of
+ * closures.
+ *
+ * <p>All the work of interpreting the expression, like resolving level names and parsing number
+ * literals, happens once here. What is left for the closures is comparing against the log.</p>
+ */
+final class LogFilterCompiler {
+    private final String source;
+    private int position;
+
+    private LogFilterCompiler(String source) {
+        this.source = source;
+        this.position = 0;
+    }
+
+    static LogFilter compile(String expression) {
+        var compiler = new LogFilterCompiler(expression);
+        var filter = compiler.parseOr();
+        compiler.skipWhitespace();
+        if (compiler.position != expression.length()) {
+            throw compiler.error("Unexpected input");
+        }
+        return filter;
+    }
+
+    private enum Operator {
+        EQ("=="),
+        NE("!="),
+        LT("<"),
+        LE("<="),
+        GT(">"),
+        GE(">="),
+        STARTS_WITH("startsWith");
+
+        final String symbol;
+
+        Operator(String symbol) {
+            this.symbol = symbol;
+        }
+
+        boolean holds(int comparison) {
+            return switch (this) {
+                case EQ -> comparison == 0;
+                case NE -> comparison != 0;
+                case LT -> comparison < 0;
+                case LE -> comparison <= 0;
+                case GT -> comparison > 0;
+                case GE -> comparison >= 0;
+                case STARTS_WITH -> throw new IllegalStateException();
+            };
+        }
+    }
+
+    // or := and (("or" | "||") and)*
+    private LogFilter parseOr() {
+        var filter = parseAnd();
+        while (acceptKeyword("or") || accept("||")) {
+            var left = filter;
+            var right = parseAnd();
+            filter = (level, category, entries, context) ->
+                    left.test(level, category, entries, context) || right.test(level, category, entries, context);
+        }
+        return filter;
+    }
+
+    // and := unary (("and" | "&&") unary)*
+    private LogFilter parseAnd() {
+        var filter = parseUnary();
+        while (acceptKeyword("and") || accept("&&")) {
+            var left = filter;
+            var right = parseUnary();
+            filter = (level, category, entries, context) ->
+                    left.test(level, category, entries, context) && right.test(level, category, entries, context);
+        }
+        return filter;
+    }
+
+    // unary := ("not" | "!") unary | "(" or ")" | "has" "(" key ")" | comparison
+    private LogFilter parseUnary() {
+        skipWhitespace();
+        if (acceptKeyword("not") || (peek('!') && !peekAt(1, '=') && accept("!"))) {
+            var inner = parseUnary();
+            return (level, category, entries, context) -> !inner.test(level, category, entries, context);
+        }
+        if (accept("(")) {
+            var inner = parseOr();
+            expect(")");
+            return inner;
+        }
+        if (acceptKeyword("has")) {
+            expect("(");
+            var key = parseKey();
+            expect(")");
+            return (level, category, entries, context) -> find(key, entries, context) != null;
+        }
+        return parseComparison();
+    }
+
+    // comparison := ("level" | "namespace" | "name" | key) operator literal
+    private LogFilter parseComparison() {
+        if (acceptKeyword("level")) {
+            return compileLevel(parseOperator());
+        }
+        if (acceptKeyword("namespace")) {
+            var operator = parseOperator();
+            var value = parseString();
+            return compileText(operator, value, true);
+        }
+        if (acceptKeyword("name")) {
+            var operator = parseOperator();
+            var value = parseString();
+            return compileText(operator, value, false);
+        }
+        var key = parseKey();
+        var operator = parseOperator();
+        return compileEntry(key, operator);
+    }
+
+    private LogFilter compileLevel(Operator operator) {
+        if (operator == Operator.STARTS_WITH) {
+            throw error("startsWith cannot be used with level");
+        }
+        skipWhitespace();
+        int start = position;
+        String name;
+        if (peek('"')) {
+            name = parseStringLiteral();
+        } else {
+            name = parseWord();
+        }
+        Log.Level threshold;
+        try {
+            threshold = Log.Level.valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            position = start;
+            throw error("Unknown level " + name);
+        }
+        return (level, category, entries, context) -> operator.holds(level.compareTo(threshold));
+    }
+
+    private LogFilter compileText(Operator operator, String value, boolean namespace) {
+        return switch (operator) {
+            case EQ -> namespace
+                    ? (level, category, entries, context) -> category.namespace().equals(value)
+                    : (level, category, entries, context) -> category.name().equals(value);
+            case NE -> namespace
+                    ? (level, category, entries, context) -> !category.namespace().equals(value)
+                    : (level, category, entries, context) -> !category.name().equals(value);
+            case STARTS_WITH -> namespace
+                    ? (level, category, entries, context) -> category.namespace().startsWith(value)
+                    : (level, category, entries, context) -> category.name().startsWith(value);
+            default -> throw error(operator.symbol + " cannot be used with " + (namespace ? "namespace" : "name"));
+        };
+    }
+
+    private LogFilter compileEntry(String key, Operator operator) {
+        skipWhitespace();
+        if (peek('"')) {
+            var literal = parseStringLiteral();
+            return (level, category, entries, context) -> {
+                var value = find(key, entries, context);
+                if (value == null) {
+                    return operator == Operator.NE;
+                }
+                var text = text(value);
+                if (text == null) {
+                    return operator == Operator.NE;
+                }
+                if (operator == Operator.STARTS_WITH) {
+                    return text.startsWith(literal);
+                }
+                return operator.holds(text.compareTo(literal));
+            };
+        }
+        if (operator == Operator.STARTS_WITH) {
+            throw error("startsWith can only be used with a string");
+        }
+        if (acceptKeyword("null")) {
+            if (operator != Operator.EQ && operator != Operator.NE) {
+                throw error(operator.symbol + " cannot be used with null");
+            }
+            boolean wantNull = operator == Operator.EQ;
+            return (level, category, entries, context) -> {
+                var value = find(key, entries, context);
+                return (value == null || value == Log.Entry.Value.Null.INSTANCE) == wantNull;
+            };
+        }
+        boolean isTrue = acceptKeyword("true");
+        if (isTrue || acceptKeyword("false")) {
+            if (operator != Operator.EQ && operator != Operator.NE) {
+                throw error(operator.symbol + " cannot be used with a boolean");
+            }
+            boolean literal = isTrue;
+            return (level, category, entries, context) -> {
+                var value = find(key, entries, context);
+                if (value instanceof Log.Entry.Value.Boolean b) {
+                    return (b.value() == literal) == (operator == Operator.EQ);
+                }
+                return operator == Operator.NE;
+            };
+        }
+
+        int start = position;
+        var word = parseNumber();
+        boolean integral = word.indexOf('.') < 0 && word.indexOf('e') < 0 && word.indexOf('E') < 0;
+        long longLiteral;
+        double doubleLiteral;
+        try {
+            doubleLiteral = Double.parseDouble(word);
+            longLiteral = integral ? Long.parseLong(word) : (long) doubleLiteral;
+        } catch (NumberFormatException e) {
+            position = start;
+            throw error("Expected a literal");
+        }
+        if (integral) {
+            return (level, category, entries, context) -> {
+                var value = find(key, entries, context);
+                if (value == null) {
+                    return operator == Operator.NE;
+                }
+                return compareIntegral(operator, value, longLiteral, doubleLiteral);
+            };
+        } else {
+            return (level, category, entries, context) -> {
+                var value = find(key, entries, context);
+                if (value == null) {
+                    return operator == Operator.NE;
+                }
+                return compareDecimal(operator, value, doubleLiteral);
+            };
+        }
+    }
+
+    /*
+     * Compares a number against an integral literal. Integral values are compared exactly and
+     * floating point ones against the literal as a double. Anything else only matches !=.
+     */
+    private static boolean compareIntegral(
+            Operator operator,
+            Log.Entry.Value value,
+            long longLiteral,
+            double doubleLiteral
+    ) {
+        if (value instanceof Log.Entry.Value.Byte b) {
+            return operator.holds(Long.compare(b.value(), longLiteral));
+        }
+        else if (value instanceof Log.Entry.Value.Short s) {
+            return operator.holds(Long.compare(s.value(), longLiteral));
+        }
+        else if (value instanceof Log.Entry.Value.Integer i) {
+            return operator.holds(Long.compare(i.value(), longLiteral));
+        }
+        else if (value instanceof Log.Entry.Value.Long l) {
+            return operator.holds(Long.compare(l.value(), longLiteral));
+        }
+        else if (value instanceof Log.Entry.Value.Float f) {
+            return operator.holds(Double.compare(f.value(), doubleLiteral));
+        }
+        else if (value instanceof Log.Entry.Value.Double d) {
+            return operator.holds(Double.compare(d.value(), doubleLiteral));
+        }
+        else {
+            return operator == Operator.NE;
+        }
+    }
+
+    /*
+     * Compares a number against a literal with a fractional part. Anything else only matches !=.
+     */
+    private static boolean compareDecimal(Operator operator, Log.Entry.Value value, double doubleLiteral) {
+        if (value instanceof Log.Entry.Value.Byte b) {
+            return operator.holds(Double.compare(b.value(), doubleLiteral));
+        }
+        else if (value instanceof Log.Entry.Value.Short s) {
+            return operator.holds(Double.compare(s.value(), doubleLiteral));
+        }
+        else if (value instanceof Log.Entry.Value.Integer i) {
+            return operator.holds(Double.compare(i.value(), doubleLiteral));
+        }
+        else if (value instanceof Log.Entry.Value.Long l) {
+            return operator.holds(Double.compare(l.value(), doubleLiteral));
+        }
+        else if (value instanceof Log.Entry.Value.Float f) {
+            return operator.holds(Double.compare(f.value(), doubleLiteral));
+        }
+        else if (value instanceof Log.Entry.Value.Double d) {
+            return operator.holds(Double.compare(d.value(), doubleLiteral));
+        }
+        else {
+            return operator == Operator.NE;
+        }
+    }
+
+    /**
+     * Finds the value of the first entry with the key, looking at the log's own entries and then
+     * out through its context. Lazy values are realized.
+     *
+     * <p>This uses indexed loops so that nothing is allocated.</p>
+     */
+    static Log.Entry.Value find(String key, List<Log.Entry> entries, Log.Context context) {
+        var value = find(key, entries);
+        while (value == null && context != null) {
+            if (context instanceof Log.Context.Child child) {
+                value = find(key, child.entries());
+                context = child.parent();
+            }
+            else if (context instanceof Log.Context.Global global) {
+                value = find(key, global.entries());
+                context = null;
+            }
+        }
+        while (value instanceof Log.Entry.Value.Lazy lazy) {
+            value = lazy.value();
+        }
+        return value;
+    }
+
+    private static Log.Entry.Value find(String key, List<Log.Entry> entries) {
+        for (int i = 0; i < entries.size(); i++) {
+            var entry = entries.get(i);
+            if (entry.key().equals(key)) {
+                return entry.value();
+            }
+        }
+        return null;
+    }
+
+    private static String text(Log.Entry.Value value) {
+        if (value instanceof Log.Entry.Value.String s) {
+            return s.value();
+        }
+        else if (value instanceof Log.Entry.Value.URI uri) {
+            return uri.value().toString();
+        }
+        else if (value instanceof Log.Entry.Value.UUID uuid) {
+            return uuid.value().toString();
+        }
+        else {
+            return null;
+        }
+    }
+
+    private Operator parseOperator() {
+        skipWhitespace();
+        for (var symbol : new String[] { "==", "!=", "<=", ">=", "<", ">" }) {
+            if (accept(symbol)) {
+                for (var operator : Operator.values()) {
+                    if (operator.symbol.equals(symbol)) {
+                        return operator;
+                    }
+                }
+            }
+        }
+        if (acceptKeyword("startsWith")) {
+            return Operator.STARTS_WITH;
+        }
+        throw error("Expected an operator");
+    }
+
+    private String parseKey() {
+        skipWhitespace();
+        if (peek('`')) {
+            int start = ++position;
+            int end = source.indexOf('`', start);
+            if (end < 0) {
+                position = start - 1;
+                throw error("Unterminated key");
+            }
+            position = end + 1;
+            return source.substring(start, end);
+        }
+        int start = position;
+        while (position < source.length() && isKeyPart(source.charAt(position))) {
+            position++;
+        }
+        if (position == start) {
+            throw error("Expected a key");
+        }
+        return source.substring(start, position);
+    }
+
+    private String parseString() {
+        skipWhitespace();
+        if (!peek('"')) {
+            throw error("Expected a string");
+        }
+        return parseStringLiteral();
+    }
+
+    private String parseStringLiteral() {
+        int start = position;
+        position++;
+        var builder = new StringBuilder();
+        while (position < source.length()) {
+            char c = source.charAt(position++);
+            if (c == '"') {
+                return builder.toString();
+            }
+            if (c == '\\' && position < source.length()) {
+                c = source.charAt(position++);
+            }
+            builder.append(c);
+        }
+        position = start;
+        throw error("Unterminated string");
+    }
+
+    private String parseWord() {
+        int start = position;
+        while (position < source.length() && Character.isLetter(source.charAt(position))) {
+            position++;
+        }
+        if (position == start) {
+            throw error("Expected a word");
+        }
+        return source.substring(start, position);
+    }
+
+    private String parseNumber() {
+        int start = position;
+        while (position < source.length()) {
+            char c = source.charAt(position);
+            if (Character.isDigit(c) || c == '.' || c == '-' || c == '+' || c == 'e' || c == 'E') {
+                position++;
+            } else {
+                break;
+            }
+        }
+        if (position == start) {
+            throw error("Expected a literal");
+        }
+        return source.substring(start, position);
+    }
+
+    private static boolean isKeyPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '.' || c == '-' || c == '/';
+    }
+
+    private void skipWhitespace() {
+        while (position < source.length() && Character.isWhitespace(source.charAt(position))) {
+            position++;
+        }
+    }
+
+    private boolean peek(char c) {
+        return peekAt(0, c);
+    }
+
+    private boolean peekAt(int offset, char c) {
+        return position + offset < source.length() && source.charAt(position + offset) == c;
+    }
+
+    private boolean accept(String symbol) {
+        skipWhitespace();
+        if (source.startsWith(symbol, position)) {
+            position += symbol.length();
+            return true;
+        }
+        return false;
+    }
+
+    private boolean acceptKeyword(String keyword) {
+        skipWhitespace();
+        int end = position + keyword.length();
+        if (source.startsWith(keyword, position)
+                && (end == source.length() || !isKeyPart(source.charAt(end)))) {
+            position = end;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(String symbol) {
+        if (!accept(symbol)) {
+            throw error("Expected " + symbol);
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(
+                message + " at position " + position + " in filter expression: " + source
+        );
+    }
+}
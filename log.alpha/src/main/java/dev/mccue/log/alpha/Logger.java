@@ -1,6 +1,7 @@
 package dev.mccue.log.alpha;
 
 import java.util.List;
+import java.util.Objects;
 
 /**
  * A logger.
@@ -943,6 +944,19 @@ public interface Logger {
         return new NamespacedLogger(namespace, this);
     }
 
+    /**
+     * Wraps this logger so that logs which do not pass the filter are dropped.
+     *
+     * <p>When logging through {@link #log(Log.Level, Log.Category, List)}, or any of the methods
+     * which delegate to it, the filter is checked before the log is built.</p>
+     *
+     * @param filter The filter logs must pass.
+     * @return A filtered logger wrapping this one.
+     */
+    default Logger filtered(LogFilter filter) {
+        return new FilteredLogger(this, filter);
+    }
+
     /**
      * A logger with the namespace of its category already filled in.
      *
@@ -959,6 +973,39 @@ public interface Logger {
          */
         void log(Log.Level level, String name, List<Log.Entry> entries);
 
+        /**
+         * Opens a span of time which is logged once, when it is closed.
+         *
+         * <p>While the span is open its entries are part of the context of any logs and spans
+         * made on the same thread, so nested spans inherit the span's flake as their parent.</p>
+         *
+         * {@snippet :
+         * try (var __ = log.span("load-user", Log.Entry.of("user-id", userId))) {
+         *     return userRepository.find(userId);
+         * }
+         * }
+         *
+         * @param level The level to log at.
+         * @param name The name of the event.
+         * @param entries The entries to attach to the log and to the context of the span.
+         * @return An open span. It must be closed on the thread that opened it.
+         */
+        Span span(Log.Level level, String name, List<Log.Entry> entries);
+
+        /**
+         * @see Logger.Namespaced#span(Log.Level, String, List)
+         */
+        default Span span(String name, List<Log.Entry> entries) {
+            return span(Log.Level.INFO, name, entries);
+        }
+
+        /**
+         * @see Logger.Namespaced#span(Log.Level, String, List)
+         */
+        default Span span(String name, Log.Entry... entries) {
+            return span(Log.Level.INFO, name, List.of(entries));
+        }
+
         default void log(Log.Level level, String name, Log.Entry... entries) {
             log(level, name, List.of(entries));
         }
@@ -1803,4 +1850,30 @@ record NamespacedLogger(String namespace, Logger logger) implements Logger.Names
     public void log(Log.Level level, String name, List<Log.Entry> entries) {
         logger.log(level, new Log.Category(namespace, name), entries);
     }
+
+    @Override
+    public Span span(Log.Level level, String name, List<Log.Entry> entries) {
+        return Span.open(logger, level, namespace, name, entries);
+    }
+}
+
+record FilteredLogger(Logger logger, LogFilter filter) implements Logger {
+    FilteredLogger {
+        Objects.requireNonNull(logger, "logger must not be null");
+        Objects.requireNonNull(filter, "filter must not be null");
+    }
+
+    @Override
+    public void log(Log log) {
+        if (filter.test(log)) {
+            logger.log(log);
+        }
+    }
+
+    @Override
+    public void log(Log.Level level, Log.Category category, List<Log.Entry> logEntries) {
+        if (filter.test(level, category, logEntries, Log.Context.current())) {
+            logger.log(level, category, logEntries);
+        }
+    }
 }
@@ -0,0 +1,37 @@
+package dev.mccue.log.alpha;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The logger factory picked by {@link LoggerFactory#create()}, resolved once, and the registry of
+ * namespaced loggers made from it.
+ */
+final class LoggerFactories {
+    private LoggerFactories() {}
+
+    private static final ConcurrentHashMap<String, Logger.Namespaced> NAMESPACED = new ConcurrentHashMap<>();
+
+    // The holder is only initialized, and the services only scanned, on first use.
+    private static final class Holder {
+        static final LoggerFactory FACTORY = LoggerFactory.create();
+    }
+
+    static LoggerFactory factory() {
+        return Holder.FACTORY;
+    }
+
+    static Logger.Namespaced namespaced(String namespace) {
+        Objects.requireNonNull(namespace, "namespace must not be null");
+        var logger = NAMESPACED.get(namespace);
+        if (logger != null) {
+            return logger;
+        }
+        return NAMESPACED.computeIfAbsent(namespace, __ -> factory().createLogger().namespaced(namespace));
+    }
+
+    static Map<String, Logger.Namespaced> namespacedLoggers() {
+        return Map.copyOf(NAMESPACED);
+    }
+}
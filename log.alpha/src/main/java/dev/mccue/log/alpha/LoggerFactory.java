@@ -1,11 +1,27 @@
 package dev.mccue.log.alpha;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Map;
 import java.util.ServiceLoader;
-import java.util.concurrent.ThreadLocalRandom;
 
 @FunctionalInterface
 public interface LoggerFactory {
+    /**
+     * The system property which can name the class of the logger factory to pick when more than
+     * one is supplied.
+     */
+    String FACTORY_PROPERTY = "dev.mccue.log.alpha.LoggerFactory";
+
+    /**
+     * Finds a logger factory with the {@link ServiceLoader}.
+     *
+     * <p>If multiple factories are supplied the one named by {@link #FACTORY_PROPERTY} is picked,
+     * falling back to the first by class name.</p>
+     *
+     * <p>This scans for services on every call. The static {@code getLogger} methods only call it
+     * once and reuse the result.</p>
+     */
     static LoggerFactory create() {
         var loggerFactories = ServiceLoader.load(LoggerFactory.class).iterator();
         if (!loggerFactories.hasNext()) {
@@ -20,9 +36,23 @@ public interface LoggerFactory {
                 while (loggerFactories.hasNext()) {
                     services.add(loggerFactories.next());
                 }
+                services.sort(Comparator.comparing(factory -> factory.getClass().getName()));
+
+                var preferred = System.getProperty(FACTORY_PROPERTY);
+                var picked = services.get(0);
+                for (var factory : services) {
+                    if (factory.getClass().getName().equals(preferred)) {
+                        picked = factory;
+                    }
+                }
 
-                System.err.printf("Multiple logger factories supplied: %s. Picking one at random.%n", services);
-                return services.get(ThreadLocalRandom.current().nextInt(0, services.size()));
+                System.err.printf(
+                        "Multiple logger factories supplied: %s. Picking %s. Set %s to choose.%n",
+                        services,
+                        picked,
+                        FACTORY_PROPERTY
+                );
+                return picked;
             } else {
                 return service;
             }
@@ -30,15 +60,29 @@ public interface LoggerFactory {
     }
 
     static Logger getLogger() {
-        return create().createLogger();
+        return LoggerFactories.factory().createLogger();
     }
 
+    /**
+     * Gets the logger for a namespace.
+     *
+     * <p>Loggers are kept in a registry, so asking for the same namespace again returns the same
+     * logger.</p>
+     */
     static Logger.Namespaced getLogger(String namespace) {
-        return getLogger().namespaced(namespace);
+        return LoggerFactories.namespaced(namespace);
     }
 
     static Logger.Namespaced getLogger(Class<?> klass) {
-        return getLogger().namespaced(klass.getCanonicalName());
+        var namespace = klass.getCanonicalName();
+        return getLogger(namespace == null ? klass.getName() : namespace);
+    }
+
+    /**
+     * @return A snapshot of the registry of namespaced loggers, keyed by namespace.
+     */
+    static Map<String, Logger.Namespaced> namespacedLoggers() {
+        return LoggerFactories.namespacedLoggers();
     }
 
     Logger createLogger();
@@ -1,5 +1,10 @@
 package dev.mccue.log.alpha;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
 // Taken from mulog
 
 /**
@@ -23,6 +28,16 @@ package dev.mccue.log.alpha;
  * **However the monotonic clock pauses when process suspended
  * therefore over time they will diverge.**
  * <p>
+ * To bound that divergence the clock re-reads the wall clock about once per
+ * second, on whichever call first notices the calibration is stale. When the
+ * wall clock is ahead the estimate steps forward. When it is behind the
+ * estimate is slewed instead, running about 0.1% slower until it has caught
+ * up, so readings on a thread never go backwards.
+ * <p>
+ * In coarse mode a daemon ticker thread publishes the current time at a fixed
+ * interval and readers just load that value. Timestamps then have the
+ * resolution of the ticker but cost a single volatile read.
+ * <p>
  * It is not to be used as a replacement for the wall clock.
  * <p>
  * Another consideration is that by storing such high precision clock into
@@ -39,25 +54,48 @@ package dev.mccue.log.alpha;
  */
 final class NanoClock {
 
-    private final static NanoClock _clock;
+    private static final long RESYNC_INTERVAL_NANOS = 1_000_000_000L;
+    // While slewing the clock gives up 1 nanosecond every 2^SLEW_SHIFT nanoseconds.
+    private static final int SLEW_SHIFT = 10;
 
-    static {
-        _clock = new NanoClock();
-    }
+    private static final AtomicReference<Calibration> CALIBRATION =
+            new AtomicReference<>(Calibration.initial());
 
-    // Wall clock set at initialization time
-    private final long tw0;
-    // monotonic clock start to calculate offset
-    private final long tm0;
+    private static volatile Ticker ticker;
 
     private NanoClock() {
-        tw0 = System.currentTimeMillis() * 1000000;
-        // typically 36 nanos, between these two lines.
-        tm0 = System.nanoTime();
+    }
+
+    /**
+     * A wall clock reading `tw0` taken together with the monotonic reading `tm0`,
+     * plus how many nanoseconds still have to be slewed away.
+     */
+    record Calibration(long tw0, long tm0, long slew) {
+        static Calibration initial() {
+            long tw0 = wallClockNanos();
+            // typically 36 nanos, between these two lines.
+            long tm0 = System.nanoTime();
+            return new Calibration(tw0, tm0, 0);
+        }
+
+        long at(long tm) {
+            // A reading taken before this calibration would slew backwards, so it counts as none.
+            long elapsed = Math.max(0, tm - tm0);
+            return tw0 + elapsed - Math.min(elapsed >>> SLEW_SHIFT, slew);
+        }
+    }
+
+    private static long wallClockNanos() {
+        var now = Instant.now();
+        return now.getEpochSecond() * 1_000_000_000L + now.getNano();
     }
 
     public static long currentTimeNanos() {
-        return _clock.tw0 + (System.nanoTime() - _clock.tm0);
+        var t = ticker;
+        if (t != null) {
+            return t.now;
+        }
+        return preciseTimeNanos();
     }
 
     public static long currentTimeMicros() {
@@ -67,4 +105,77 @@ final class NanoClock {
     public static long currentTimeMillis() {
         return currentTimeNanos() / 1000000;
     }
+
+    static long preciseTimeNanos() {
+        // The calibration is read first, so the monotonic reading can't be older than it.
+        var calibration = CALIBRATION.get();
+        long tm = System.nanoTime();
+        if (tm - calibration.tm0 >= RESYNC_INTERVAL_NANOS) {
+            calibration = resync(calibration);
+            tm = System.nanoTime();
+        }
+        return calibration.at(tm);
+    }
+
+    private static Calibration resync(Calibration stale) {
+        long wall = wallClockNanos();
+        long tm = System.nanoTime();
+        long estimate = stale.at(tm);
+        var fresh = wall >= estimate
+                ? new Calibration(wall, tm, 0)
+                : new Calibration(estimate, tm, estimate - wall);
+        if (CALIBRATION.compareAndSet(stale, fresh)) {
+            return fresh;
+        } else {
+            return CALIBRATION.get();
+        }
+    }
+
+    /**
+     * Switches to coarse mode, where a ticker thread publishes the time every `resolution`.
+     */
+    static synchronized void useCoarse(Duration resolution) {
+        long periodNanos = resolution.toNanos();
+        if (periodNanos <= 0) {
+            throw new IllegalArgumentException("resolution must be positive");
+        }
+        var previous = ticker;
+        var next = new Ticker(periodNanos);
+        next.start();
+        ticker = next;
+        if (previous != null) {
+            previous.interrupt();
+        }
+    }
+
+    /**
+     * Switches back to reading the monotonic timer on every call.
+     */
+    static synchronized void usePrecise() {
+        var previous = ticker;
+        ticker = null;
+        if (previous != null) {
+            previous.interrupt();
+        }
+    }
+
+    private static final class Ticker extends Thread {
+        private final long periodNanos;
+        private volatile long now;
+
+        Ticker(long periodNanos) {
+            super("log.alpha-coarse-clock");
+            this.periodNanos = periodNanos;
+            this.now = preciseTimeNanos();
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (!isInterrupted()) {
+                now = preciseTimeNanos();
+                LockSupport.parkNanos(periodNanos);
+            }
+        }
+    }
 }
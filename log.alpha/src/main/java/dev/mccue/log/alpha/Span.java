@@ -0,0 +1,92 @@
+package dev.mccue.log.alpha;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * An open span of time, made by {@link Logger.Namespaced#span(Log.Level, String, List)}.
+ *
+ * <p>When closed, a single log with a {@link Log.Occurrence.SpanOfTime} occurrence is logged.
+ * The span starts at the timestamp of its flake and lasts for the time measured by
+ * {@link System#nanoTime()} between opening and closing.</p>
+ *
+ * <p>Each span has its own handle, so closing one twice, such as explicitly and again at the end
+ * of a try-with-resources block, only logs it once. Opening a span allocates the handle, its flake
+ * and the context its children see.</p>
+ */
+public final class Span implements AutoCloseable {
+    private final Logger logger;
+    private final Log.Level level;
+    private final String namespace;
+    private final String name;
+    private final List<Log.Entry> entries;
+    private final Flake flake;
+    private final Log.Context.Child parentContext;
+    private final long startedAtNanos;
+    private boolean open;
+
+    private Span(
+            Logger logger,
+            Log.Level level,
+            String namespace,
+            String name,
+            List<Log.Entry> entries
+    ) {
+        this.logger = Objects.requireNonNull(logger, "logger must not be null");
+        this.level = Objects.requireNonNull(level, "level must not be null");
+        this.namespace = Objects.requireNonNull(namespace, "namespace must not be null");
+        this.name = Objects.requireNonNull(name, "name must not be null");
+        this.entries = Objects.requireNonNull(entries, "entries must not be null");
+        this.flake = Flake.create();
+        this.parentContext = Log.enterContext(flake, entries);
+        this.open = true;
+        this.startedAtNanos = System.nanoTime();
+    }
+
+    static Span open(
+            Logger logger,
+            Log.Level level,
+            String namespace,
+            String name,
+            List<Log.Entry> entries
+    ) {
+        return new Span(logger, level, namespace, name, entries);
+    }
+
+    /**
+     * @return The flake of the span. Logs made while the span is open have it in their context.
+     */
+    public Flake flake() {
+        return flake;
+    }
+
+    /**
+     * Ends the span, restores the context which was current when it was opened and logs it.
+     * Closing an already closed span does nothing.
+     */
+    @Override
+    public void close() {
+        if (!open) {
+            return;
+        }
+        var lasted = Duration.ofNanos(System.nanoTime() - startedAtNanos);
+        open = false;
+        Log.exitContext(parentContext);
+
+        logger.log(new Log(
+                parentContext == null ? Log.Context.current() : parentContext,
+                Thread.currentThread(),
+                flake,
+                new Log.Occurrence.SpanOfTime(flake.getTimestampInstant(), lasted),
+                level,
+                new Log.Category(namespace, name),
+                entries
+        ));
+    }
+
+    @Override
+    public String toString() {
+        return "Span[namespace=" + namespace + ", name=" + name + ", open=" + open + "]";
+    }
+}
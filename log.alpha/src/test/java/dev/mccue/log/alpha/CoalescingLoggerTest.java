@@ -0,0 +1,81 @@
+package dev.mccue.log.alpha;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class CoalescingLoggerTest {
+    private static final Log.Category CATEGORY = new Log.Category("test", "coalescing");
+
+    private static Log.Entry.Value find(Log log, String key) {
+        for (var entry : log.entries()) {
+            if (entry.key().equals(key)) {
+                return entry.value();
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void collapsesARunIntoOneSummary() {
+        var logged = new ArrayList<Log>();
+        var logger = new CoalescingLogger(logged::add, Duration.ofMinutes(1));
+
+        for (int i = 0; i < 5; i++) {
+            logger.info(CATEGORY, Log.Entry.of("message", "disk full"));
+        }
+        assertEquals(1, logged.size());
+        assertNull(find(logged.get(0), "log.alpha/repeat-count"));
+
+        logger.flush();
+        assertEquals(2, logged.size());
+        assertEquals(new Log.Entry.Value.Long(4), find(logged.get(1), "log.alpha/repeat-count"));
+    }
+
+    @Test
+    public void aDifferentLogEndsTheRun() {
+        var logged = new ArrayList<Log>();
+        var logger = new CoalescingLogger(logged::add, Duration.ofMinutes(1));
+
+        logger.info(CATEGORY, Log.Entry.of("message", "a"));
+        logger.info(CATEGORY, Log.Entry.of("message", "a"));
+        logger.info(CATEGORY, Log.Entry.of("message", "b"));
+
+        assertEquals(3, logged.size());
+        assertEquals(new Log.Entry.Value.String("a"), find(logged.get(0), "message"));
+        assertEquals(new Log.Entry.Value.Long(1), find(logged.get(1), "log.alpha/repeat-count"));
+        assertEquals(new Log.Entry.Value.String("b"), find(logged.get(2), "message"));
+    }
+
+    @Test
+    public void throwablesAreComparedByContent() {
+        var logged = new ArrayList<Log>();
+        var logger = new CoalescingLogger(logged::add, Duration.ofMinutes(1));
+
+        for (int i = 0; i < 3; i++) {
+            logger.error(CATEGORY, Log.Entry.of("error", new IllegalStateException("boom")));
+        }
+        logger.error(CATEGORY, Log.Entry.of("error", new IllegalStateException("bang")));
+
+        assertEquals(3, logged.size());
+        assertEquals(new Log.Entry.Value.Long(2), find(logged.get(1), "log.alpha/repeat-count"));
+    }
+
+    @Test
+    public void nestedValuesAreCompared() {
+        var logged = new ArrayList<Log>();
+        var logger = new CoalescingLogger(logged::add, Duration.ofMinutes(1));
+
+        logger.info(CATEGORY, Log.Entry.of("tags", List.of(new Log.Entry.Value.String("x"), new Log.Entry.Value.String("y"))));
+        logger.info(CATEGORY, Log.Entry.of("tags", List.of(new Log.Entry.Value.String("x"), new Log.Entry.Value.String("y"))));
+        logger.info(CATEGORY, Log.Entry.of("tags", List.of(new Log.Entry.Value.String("x"), new Log.Entry.Value.String("z"))));
+
+        assertEquals(3, logged.size());
+        assertEquals(new Log.Entry.Value.Long(1), find(logged.get(1), "log.alpha/repeat-count"));
+    }
+}
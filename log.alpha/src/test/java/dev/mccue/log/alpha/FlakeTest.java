@@ -0,0 +1,114 @@
+package dev.mccue.log.alpha;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FlakeTest {
+    @AfterEach
+    public void restoreDefaults() {
+        Flake.setGenerator(Flake.Generator.DEFAULT);
+        Flake.usePreciseClock();
+    }
+
+    @Test
+    public void flakesOnOneThreadIncrease() {
+        for (var generator : List.of(
+                Flake.Generator.DEFAULT,
+                Flake.Generator.DEFAULT.withLazyRandomness(true),
+                Flake.Generator.DEFAULT.withGlobalOrdering(true)
+        )) {
+            var previous = generator.create();
+            for (int i = 0; i < 100_000; i++) {
+                var next = generator.create();
+                assertTrue(next.compareTo(previous) > 0, generator + ": " + next + " <= " + previous);
+                previous = next;
+            }
+        }
+    }
+
+    @Test
+    public void globalOrderingHoldsAcrossThreadsOnACoarseClock() throws InterruptedException {
+        Flake.useCoarseClock(Duration.ofMillis(10));
+        Flake.setGenerator(Flake.Generator.DEFAULT.withGlobalOrdering(true));
+
+        // Each flake is created and appended under the lock, so list order is happens-before order.
+        var flakes = new ArrayList<Flake>();
+        var threads = new ArrayList<Thread>();
+        for (int t = 0; t < 8; t++) {
+            var thread = new Thread(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    synchronized (flakes) {
+                        flakes.add(Flake.create());
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (var thread : threads) {
+            thread.join();
+        }
+
+        for (int i = 1; i < flakes.size(); i++) {
+            assertTrue(
+                    flakes.get(i).getTimestampNanos() > flakes.get(i - 1).getTimestampNanos(),
+                    "flake " + i + " is not later than the one before it"
+            );
+        }
+    }
+
+    @Test
+    public void lazyFlakesRoundTripAndHash() {
+        var generator = Flake.Generator.DEFAULT.withLazyRandomness(true);
+        var seen = new HashSet<Flake>();
+        for (int i = 0; i < 10_000; i++) {
+            var flake = generator.create();
+            var parsed = Flake.parseFlake(flake.toString());
+            assertEquals(flake, parsed);
+            assertEquals(flake.hashCode(), parsed.hashCode());
+            assertEquals(flake, Flake.makeFlake(flake.getBytes()));
+            assertTrue(seen.add(flake));
+        }
+    }
+
+    @Test
+    public void aSeededFlakeIsTheSameEveryTime() {
+        var flake = Flake.fromSeed(1_700_000_000_000_000_000L, 42);
+        assertEquals(flake, Flake.fromSeed(1_700_000_000_000_000_000L, 42));
+        assertEquals(flake.hashCode(), Flake.fromSeed(1_700_000_000_000_000_000L, 42).hashCode());
+        assertEquals(1_700_000_000_000_000_000L, flake.getTimestampNanos());
+        assertEquals(flake, Flake.parseFlake(flake.toString()));
+        assertNotEquals(flake, Flake.fromSeed(1_700_000_000_000_000_000L, 43));
+    }
+
+    @Test
+    public void nextTimeIsWhatTheGeneratorWouldStampAFlakeWith() {
+        var generator = Flake.Generator.DEFAULT.withGlobalOrdering(true);
+        long previous = generator.nextTime();
+        for (int i = 0; i < 10_000; i++) {
+            long time = generator.nextTime();
+            assertTrue(time > previous);
+            var flake = generator.create();
+            assertTrue(flake.getTimestampNanos() > time);
+            previous = flake.getTimestampNanos();
+        }
+    }
+
+    @Test
+    public void hashCodeCoversTheWholeRandomComponent() {
+        var a = Flake.makeFlake(1, 2, 3);
+        var b = Flake.makeFlake(1, 2, 4);
+        assertNotEquals(a, b);
+        assertNotEquals(a.hashCode(), b.hashCode());
+        assertEquals(a.hashCode(), Flake.makeFlake(1, 2, 3).hashCode());
+    }
+}
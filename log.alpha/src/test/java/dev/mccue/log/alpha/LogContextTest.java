@@ -0,0 +1,85 @@
+package dev.mccue.log.alpha;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LogContextTest {
+    @AfterEach
+    public void restoreDefaults() {
+        Flake.setGenerator(Flake.Generator.DEFAULT);
+    }
+
+    private static Log.Context.Child current() {
+        return (Log.Context.Child) Log.Context.current();
+    }
+
+    @Test
+    public void anImmutableListOfEntriesIsNotCopied() {
+        var entries = List.of(Log.Entry.of("request-id", "r1"));
+        Log.withContext(entries, () -> assertSame(entries, current().entries()));
+    }
+
+    @Test
+    public void aMutableListOfEntriesIsCopied() {
+        var entries = new ArrayList<>(List.of(Log.Entry.of("request-id", "r1")));
+        Log.withContext(entries, () -> {
+            entries.add(Log.Entry.of("user-id", "u1"));
+            assertEquals(1, current().entries().size());
+        });
+    }
+
+    @Test
+    public void theFlakeAndTimestampAreMadeOnceAndAgree() {
+        Log.withContext(List.of(), () -> {
+            var context = current();
+            var flake = context.flake();
+            assertSame(flake, context.flake());
+            assertEquals(flake.getTimestampInstant(), context.timestamp());
+            assertEquals(context, context);
+            assertEquals(context.hashCode(), context.hashCode());
+        });
+    }
+
+    @Test
+    public void eachScopeHasItsOwnFlake() {
+        var flakes = new ArrayList<Flake>();
+        for (int i = 0; i < 1_000; i++) {
+            Log.withContext(List.of(), () -> flakes.add(current().flake()));
+        }
+        assertEquals(1_000, flakes.stream().distinct().count());
+    }
+
+    @Test
+    public void nestedScopesAreOrderedUnderGlobalOrdering() {
+        Flake.setGenerator(Flake.Generator.DEFAULT.withGlobalOrdering(true));
+        Log.withContext(List.of(Log.Entry.of("outer", true)), () -> {
+            var outer = current();
+            Log.withContext(List.of(Log.Entry.of("inner", true)), () -> {
+                var inner = current();
+                assertSame(outer, inner.parent());
+                assertTrue(inner.flake().compareTo(outer.flake()) > 0);
+                assertNotEquals(outer, inner);
+            });
+        });
+    }
+
+    @Test
+    public void aSpanScopeUsesTheSpansFlake() {
+        var flake = Flake.create();
+        var previous = Log.enterContext(flake, List.of());
+        try {
+            assertSame(flake, current().flake());
+            assertEquals(flake.getTimestampInstant(), current().timestamp());
+        } finally {
+            Log.exitContext(previous);
+        }
+    }
+}
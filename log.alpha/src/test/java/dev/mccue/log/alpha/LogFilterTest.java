@@ -0,0 +1,76 @@
+package dev.mccue.log.alpha;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LogFilterTest {
+    private static final Log.Category CATEGORY = new Log.Category("com.example.http", "requests");
+
+    private static boolean test(String expression, Log.Level level, Log.Entry... entries) {
+        return LogFilter.compile(expression).test(level, CATEGORY, List.of(entries), Log.Context.Global.EMPTY);
+    }
+
+    @Test
+    public void comparesLevelsAndCategories() {
+        assertTrue(test("level >= WARN", Log.Level.ERROR));
+        assertFalse(test("level >= warn", Log.Level.INFO));
+        assertTrue(test("namespace startsWith \"com.example\" and name == \"requests\"", Log.Level.INFO));
+        assertFalse(test("namespace == \"com.example\"", Log.Level.INFO));
+    }
+
+    @Test
+    public void comparesNumbersOfEveryWidth() {
+        assertTrue(test("http.status >= 500", Log.Level.INFO, Log.Entry.of("http.status", 503)));
+        assertTrue(test("http.status >= 500", Log.Level.INFO, Log.Entry.of("http.status", 503L)));
+        assertTrue(test("http.status >= 500", Log.Level.INFO, Log.Entry.of("http.status", (short) 503)));
+        assertFalse(test("http.status >= 500", Log.Level.INFO, Log.Entry.of("http.status", 499.5)));
+        assertTrue(test("latency < 0.25", Log.Level.INFO, Log.Entry.of("latency", 0.2)));
+        assertTrue(test("latency < 0.25", Log.Level.INFO, Log.Entry.of("latency", 0)));
+        assertFalse(test("latency < 0.25", Log.Level.INFO, Log.Entry.of("latency", 1L)));
+    }
+
+    @Test
+    public void otherKindsOfValueOnlyMatchNotEqual() {
+        assertFalse(test("http.status >= 500", Log.Level.INFO, Log.Entry.of("http.status", "503")));
+        assertTrue(test("http.status != 500", Log.Level.INFO, Log.Entry.of("http.status", "500")));
+        assertTrue(test("http.status != 500", Log.Level.INFO));
+    }
+
+    @Test
+    public void comparesText() {
+        assertTrue(test("uri startsWith \"https://\"", Log.Level.INFO, Log.Entry.of("uri", URI.create("https://example.com"))));
+        assertTrue(test("user == \"ada\"", Log.Level.INFO, Log.Entry.of("user", "ada")));
+        assertFalse(test("user == \"ada\"", Log.Level.INFO, Log.Entry.of("user", "grace")));
+    }
+
+    @Test
+    public void looksOutThroughTheContext() {
+        var filter = LogFilter.compile("tenant == \"acme\" and has(request-id)");
+        Log.withContext(List.of(Log.Entry.of("tenant", "acme")), () -> {
+            Log.withContext(List.of(Log.Entry.of("request-id", "r1")), () -> {
+                assertTrue(filter.test(Log.Level.INFO, CATEGORY, List.of(), Log.Context.current()));
+            });
+            assertFalse(filter.test(Log.Level.INFO, CATEGORY, List.of(), Log.Context.current()));
+        });
+    }
+
+    @Test
+    public void combinesWithBooleanOperators() {
+        assertTrue(test("not (level < WARN) || has(force)", Log.Level.WARN));
+        assertTrue(test("level < WARN or has(force)", Log.Level.ERROR, Log.Entry.of("force", true)));
+        assertFalse(test("level < WARN && has(force)", Log.Level.INFO));
+    }
+
+    @Test
+    public void rejectsMalformedExpressions() {
+        assertThrows(IllegalArgumentException.class, () -> LogFilter.compile("level >="));
+        assertThrows(IllegalArgumentException.class, () -> LogFilter.compile("namespace < \"a\""));
+        assertThrows(IllegalArgumentException.class, () -> LogFilter.compile("(level == INFO"));
+    }
+}
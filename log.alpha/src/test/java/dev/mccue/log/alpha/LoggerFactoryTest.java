@@ -0,0 +1,59 @@
+package dev.mccue.log.alpha;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LoggerFactoryTest {
+    /**
+     * Supplied as a service by this module's tests, along with {@link Second}.
+     */
+    public static final class First implements LoggerFactory {
+        @Override
+        public Logger createLogger() {
+            return __ -> {};
+        }
+    }
+
+    public static final class Second implements LoggerFactory {
+        @Override
+        public Logger createLogger() {
+            return __ -> {};
+        }
+    }
+
+    @AfterEach
+    public void clearProperty() {
+        System.clearProperty(LoggerFactory.FACTORY_PROPERTY);
+    }
+
+    @Test
+    public void picksTheFirstFactoryByClassName() {
+        assertEquals(First.class, LoggerFactory.create().getClass());
+    }
+
+    @Test
+    public void picksTheFactoryNamedByTheProperty() {
+        System.setProperty(LoggerFactory.FACTORY_PROPERTY, Second.class.getName());
+        assertEquals(Second.class, LoggerFactory.create().getClass());
+    }
+
+    @Test
+    public void keepsOneLoggerPerNamespace() {
+        var logger = LoggerFactory.getLogger("test.registry");
+        assertSame(logger, LoggerFactory.getLogger("test.registry"));
+        assertSame(logger, LoggerFactory.namespacedLoggers().get("test.registry"));
+    }
+
+    @Test
+    public void classesWithoutACanonicalNameUseTheirBinaryName() {
+        var anonymous = new Object() {}.getClass();
+        LoggerFactory.getLogger(anonymous);
+        assertTrue(LoggerFactory.namespacedLoggers().containsKey(anonymous.getName()));
+        LoggerFactory.getLogger(LoggerFactoryTest.class);
+        assertTrue(LoggerFactory.namespacedLoggers().containsKey("dev.mccue.log.alpha.LoggerFactoryTest"));
+    }
+}
@@ -0,0 +1,80 @@
+package dev.mccue.log.alpha;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NanoClockTest {
+    @AfterEach
+    public void restoreDefaults() {
+        NanoClock.usePrecise();
+    }
+
+    @Test
+    public void aReadingOlderThanTheCalibrationDoesNotSlewBackwards() {
+        // Another thread can install a calibration taken after this thread read the timer.
+        var calibration = new NanoClock.Calibration(1_000_000_000L, 5_000L, 1_000L);
+        assertEquals(1_000_000_000L, calibration.at(4_990L));
+        assertTrue(calibration.at(4_990L) <= calibration.at(5_000L));
+        assertTrue(calibration.at(5_000L) <= calibration.at(6_024L));
+    }
+
+    @Test
+    public void readingsOnEachThreadNeverGoBackwards() throws InterruptedException {
+        var failure = new AtomicReference<String>();
+        var threads = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t++) {
+            var thread = new Thread(() -> {
+                long previous = NanoClock.preciseTimeNanos();
+                for (int i = 0; i < 1_000_000 && failure.get() == null; i++) {
+                    long now = NanoClock.preciseTimeNanos();
+                    if (now < previous) {
+                        failure.set("went back " + (previous - now) + "ns");
+                    }
+                    previous = now;
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (var thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+    }
+
+    @Test
+    public void tracksTheWallClock() {
+        long wall = Instant.now().toEpochMilli();
+        long clock = NanoClock.currentTimeMillis();
+        assertTrue(Math.abs(clock - wall) < 1_000, "clock is " + (clock - wall) + "ms off the wall clock");
+    }
+
+    @Test
+    public void coarseReadingsNeverGoBackwards() {
+        NanoClock.useCoarse(Duration.ofMillis(1));
+        long previous = NanoClock.currentTimeNanos();
+        long until = System.nanoTime() + 100_000_000L;
+        while (System.nanoTime() < until) {
+            long now = NanoClock.currentTimeNanos();
+            assertTrue(now >= previous);
+            previous = now;
+        }
+    }
+
+    @Test
+    public void aLogReadsTheClockOnce() {
+        var log = new Log(Log.Level.INFO, new Log.Category("test", "clock"), List.of());
+        var pointInTime = (Log.Occurrence.PointInTime) log.occurrence();
+        assertEquals(log.flake().getTimestampInstant(), pointInTime.happenedAt());
+    }
+}
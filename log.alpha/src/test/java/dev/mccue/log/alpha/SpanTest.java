@@ -0,0 +1,91 @@
+package dev.mccue.log.alpha;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SpanTest {
+    @Test
+    public void closingLogsOneSpanOfTime() throws InterruptedException {
+        var logged = new ArrayList<Log>();
+        var log = ((Logger) logged::add).namespaced("test");
+
+        Flake flake;
+        try (var span = log.span(Log.Level.WARN, "load-user", List.of(Log.Entry.of("user-id", "u1")))) {
+            flake = span.flake();
+            Thread.sleep(20);
+            assertTrue(logged.isEmpty());
+        }
+
+        assertEquals(1, logged.size());
+        var spanLog = logged.get(0);
+        assertSame(flake, spanLog.flake());
+        assertEquals(Log.Level.WARN, spanLog.level());
+        assertEquals(new Log.Category("test", "load-user"), spanLog.category());
+        assertEquals(List.of(Log.Entry.of("user-id", "u1")), spanLog.entries());
+        var occurrence = (Log.Occurrence.SpanOfTime) spanLog.occurrence();
+        assertEquals(flake.getTimestampInstant(), occurrence.startedAt());
+        assertTrue(occurrence.lasted().toMillis() >= 20, "lasted " + occurrence.lasted());
+        assertSame(Log.Context.current(), spanLog.context());
+    }
+
+    @Test
+    public void logsInsideASpanHaveItInTheirContext() {
+        var logged = new ArrayList<Log>();
+        var log = ((Logger) logged::add).namespaced("test");
+
+        try (var outer = log.span("outer", Log.Entry.of("request-id", "r1"))) {
+            try (var inner = log.span("inner")) {
+                log.info("step");
+                var context = (Log.Context.Child) Log.Context.current();
+                assertSame(inner.flake(), context.flake());
+                assertSame(outer.flake(), ((Log.Context.Child) context.parent()).flake());
+            }
+        }
+
+        assertEquals(3, logged.size());
+        var step = logged.get(0);
+        var stepEntries = new ArrayList<Log.Entry>();
+        step.forEach(stepEntries::add);
+        assertTrue(stepEntries.contains(Log.Entry.of("request-id", "r1")));
+
+        var inner = logged.get(1);
+        var outer = logged.get(2);
+        assertEquals("inner", inner.category().name());
+        assertEquals(outer.flake(), ((Log.Context.Child) inner.context()).flake());
+    }
+
+    @Test
+    public void closingTwiceLogsOnce() {
+        var logged = new ArrayList<Log>();
+        var log = ((Logger) logged::add).namespaced("test");
+
+        var span = log.span("once");
+        span.close();
+        span.close();
+        assertEquals(1, logged.size());
+    }
+
+    @Test
+    public void closingAStaleHandleDoesNotCloseALaterSpan() {
+        var logged = new ArrayList<Log>();
+        var log = ((Logger) logged::add).namespaced("test");
+
+        var first = log.span("first");
+        first.close();
+        var second = log.span("second");
+        first.close();
+
+        assertEquals(1, logged.size());
+        assertSame(second.flake(), ((Log.Context.Child) Log.Context.current()).flake());
+
+        second.close();
+        assertEquals(2, logged.size());
+        assertEquals("second", logged.get(1).category().name());
+    }
+}